@@ -0,0 +1,340 @@
+package health.myvita.spring_ai_demo.spring_ai.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import health.myvita.spring_ai_demo.spring_ai.config.CoachCacheProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.HealthCoachResponse;
+import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reuses health coach advice for messages that say the same thing in other words.
+ *
+ * The normalized message is embedded together with a description of the user's cohort and
+ * looked up in an {@link HnswIndex}. Stored advice is reused when its cosine similarity reaches
+ * the threshold and it was given to the same cohort; the cohort check is exact, the embedding
+ * only brings same-cohort neighbours to the top. Advice for a cohort is generated from the
+ * cohort's canonical profile, like the other caches, so it is valid for every member.
+ *
+ * Entries expire after the TTL and the oldest go first beyond the maximum size. The index is
+ * rebuilt without them once removed nodes outnumber live ones. The cache is written to disk
+ * periodically and on shutdown, and read back on startup.
+ *
+ * Metrics: coach.semantic-cache.requests counted by result (hit, miss), the similarity of the
+ * best same-cohort match per lookup as the coach.semantic-cache.similarity histogram, and the
+ * coach.semantic-cache.size gauge.
+ */
+@Component
+public class CoachAdviceCache implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoachAdviceCache.class);
+
+    private static final int FILE_VERSION = 1;
+    private static final String ANONYMOUS_SCOPE = "anonymous";
+
+    // Nearest neighbours checked for a same-cohort entry
+    private static final int CANDIDATES = 10;
+
+    private final CoachCacheProperties properties;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final Path file;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final DistributionSummary similarities;
+
+    // Guarded by this
+    private HnswIndex index;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    // Live ids in insertion order, oldest first
+    private final ArrayDeque<Integer> order = new ArrayDeque<>();
+    private boolean dirty;
+
+    public CoachAdviceCache(CoachCacheProperties properties, ObjectProvider<EmbeddingModel> embeddingModels,
+                            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.embeddingModel = embeddingModels.getIfUnique();
+        this.objectMapper = objectMapper;
+        this.file = Paths.get(properties.getFile());
+
+        this.hits = meterRegistry.counter("coach.semantic-cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("coach.semantic-cache.requests", "result", "miss");
+        this.similarities = DistributionSummary.builder("coach.semantic-cache.similarity")
+                .description("Cosine similarity of the best same-cohort match per lookup")
+                .serviceLevelObjectives(0.8, 0.85, 0.9, properties.getSimilarityThreshold(), 0.95, 0.98)
+                .publishPercentiles(0.5, 0.9)
+                .register(meterRegistry);
+        meterRegistry.gauge("coach.semantic-cache.size", this, CoachAdviceCache::size);
+
+        if (isEnabled()) {
+            load();
+        } else if (properties.isEnabled()) {
+            logger.warn("No unique EmbeddingModel available; the coach semantic cache is disabled");
+        }
+    }
+
+    /**
+     * The outcome of a lookup, carried over to {@link #put} so the message is embedded once.
+     *
+     * @param promptProfile Profile to build the prompt from: the cohort's canonical profile when
+     *                      the advice may be cached, otherwise the user's own
+     * @param scope Cohort the advice is stored under
+     * @param vector Embedding of message and cohort, or null if nothing can be cached
+     * @param response Stored advice for a similar message, or null on a miss
+     */
+    public record Lookup(UserProfileDto promptProfile, String scope, float[] vector, HealthCoachResponse response) {}
+
+    private record Entry(String scope, HealthCoachResponse response, long createdAt) {}
+
+    public boolean isEnabled() {
+        return properties.isEnabled() && embeddingModel != null;
+    }
+
+    /**
+     * Looks for stored advice on a similar message from the same cohort.
+     */
+    public Lookup lookup(String message, UserProfileDto userProfile) {
+        if (!isEnabled()) {
+            return new Lookup(userProfile, null, null, null);
+        }
+        UserProfileDto cohort = userProfile != null ? userProfile.toCohortProfile() : null;
+        // Activity level is not part of the cohort key but is part of the coaching prompt
+        String scope = cohort != null ? cohort.getCohortKey() + "|activity=" + cohort.getActivityLevel() : ANONYMOUS_SCOPE;
+
+        float[] vector;
+        try {
+            vector = embeddingModel.embed(describeCohort(cohort) + "\n" + normalizeMessage(message));
+        } catch (RuntimeException e) {
+            logger.warn("Could not embed coaching message, skipping the semantic cache: {}", e.getMessage());
+            return new Lookup(cohort, scope, null, null);
+        }
+
+        Entry match = null;
+        float similarity = 0;
+        synchronized (this) {
+            expire();
+            if (index != null && index.dimensions() != vector.length) {
+                logger.info("Embedding size changed from {} to {}; clearing the coach semantic cache", index.dimensions(), vector.length);
+                clear();
+            }
+            if (index != null) {
+                for (HnswIndex.Neighbor neighbor : index.search(vector, CANDIDATES, properties.getEfSearch())) {
+                    Entry entry = entries.get(neighbor.id());
+                    if (entry != null && entry.scope().equals(scope)) {
+                        match = entry;
+                        similarity = neighbor.similarity();
+                        break;
+                    }
+                }
+            }
+        }
+
+        similarities.record(Math.max(0, similarity));
+        if (match != null && similarity >= properties.getSimilarityThreshold()) {
+            hits.increment();
+            logger.debug("Reusing coach advice for a similar message (similarity {})", similarity);
+            return new Lookup(cohort, scope, vector, match.response());
+        }
+        misses.increment();
+        return new Lookup(cohort, scope, vector, null);
+    }
+
+    /**
+     * Stores the advice generated after a miss.
+     */
+    public void put(Lookup lookup, HealthCoachResponse response) {
+        if (lookup.vector() == null || response == null) {
+            return;
+        }
+        synchronized (this) {
+            if (index == null) {
+                index = newIndex(lookup.vector().length);
+            } else if (index.dimensions() != lookup.vector().length) {
+                return;
+            }
+            int id = index.add(lookup.vector());
+            entries.put(id, new Entry(lookup.scope(), response, System.currentTimeMillis()));
+            order.addLast(id);
+            dirty = true;
+            expire();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${coach.semantic-cache.persist-interval:10m}",
+               initialDelayString = "${coach.semantic-cache.persist-interval:10m}")
+    public void persist() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                // Write to a temp file and move it into place so a crash never leaves a partial file
+                Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    write(out);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                dirty = false;
+            } catch (IOException e) {
+                logger.warn("Failed to persist coach semantic cache to {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        persist();
+    }
+
+    private HnswIndex newIndex(int dimensions) {
+        return new HnswIndex(dimensions, properties.getM(), properties.getEfConstruction(), properties.isQuantized());
+    }
+
+    /**
+     * Drops expired entries and the oldest beyond the maximum size; rebuilds the index once
+     * removed nodes outnumber live ones.
+     */
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - properties.getTtl().toMillis();
+        while (!order.isEmpty()
+                && (order.size() > properties.getMaxSize() || entries.get(order.peekFirst()).createdAt() < cutoff)) {
+            int id = order.pollFirst();
+            entries.remove(id);
+            index.remove(id);
+            dirty = true;
+        }
+
+        if (index != null && index.removedCount() > 64 && index.removedCount() > entries.size()) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        HnswIndex rebuilt = newIndex(index.dimensions());
+        Map<Integer, Entry> live = new HashMap<>(entries);
+        List<Integer> ids = List.copyOf(order);
+        entries.clear();
+        order.clear();
+        for (int oldId : ids) {
+            int newId = rebuilt.add(index.vector(oldId));
+            entries.put(newId, live.get(oldId));
+            order.addLast(newId);
+        }
+        index = rebuilt;
+    }
+
+    private void clear() {
+        index = null;
+        entries.clear();
+        order.clear();
+        dirty = true;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeBoolean(index != null);
+        if (index == null) {
+            return;
+        }
+        index.writeTo(out);
+        out.writeInt(order.size());
+        for (int id : order) {
+            Entry entry = entries.get(id);
+            out.writeInt(id);
+            out.writeLong(entry.createdAt());
+            out.writeUTF(entry.scope());
+            byte[] json = objectMapper.writeValueAsBytes(entry.response());
+            out.writeInt(json.length);
+            out.write(json);
+        }
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION || !in.readBoolean()) {
+                return;
+            }
+            HnswIndex loaded = HnswIndex.readFrom(in);
+            if (loaded.isQuantized() != properties.isQuantized()) {
+                logger.info("Coach semantic cache at {} was written with different quantization; starting empty", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                long createdAt = in.readLong();
+                String scope = in.readUTF();
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+                entries.put(id, new Entry(scope, objectMapper.readValue(json, HealthCoachResponse.class), createdAt));
+                order.addLast(id);
+            }
+            index = loaded;
+            expire();
+            logger.info("Loaded {} coach semantic cache entries from {}", entries.size(), file);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load coach semantic cache from {}: {}", file, e.getMessage());
+            clear();
+        }
+    }
+
+    /**
+     * Lower-cases the message and reduces it to words separated by single spaces, so casing,
+     * punctuation and spacing do not move the embedding.
+     */
+    static String normalizeMessage(String message) {
+        return message.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}']+", " ").trim();
+    }
+
+    private static String describeCohort(UserProfileDto cohort) {
+        if (cohort == null) {
+            return "profile: none";
+        }
+        return "profile: age " + cohort.getAge()
+                + ", " + cohort.getGender()
+                + ", conditions " + cohort.getHealthConditions()
+                + ", allergies " + cohort.getAllergies()
+                + ", diet " + cohort.getDietaryPreference()
+                + ", goal " + cohort.getHealthGoals()
+                + ", activity " + cohort.getActivityLevel();
+    }
+}
@@ -0,0 +1,142 @@
+package health.myvita.spring_ai_demo.spring_ai.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate top-K frequent keys in fixed memory.
+ *
+ * Frequencies are estimated with a count-min sketch (never under-counted, over-counted by
+ * collisions only), and the K keys with the highest estimates are kept in an ordered set.
+ * Sketch updates are lock-free; the top-K set is only locked when a key's estimate reaches
+ * the current K-th count, which for a skewed stream is rare once the set is full.
+ */
+public class HeavyHitters {
+
+    private static final Comparator<HeavyHitter> BY_COUNT =
+            Comparator.comparingLong(HeavyHitter::count).thenComparing(HeavyHitter::key);
+
+    private final int width;
+    private final int depth;
+    private final AtomicIntegerArray counters;
+    private final int capacity;
+
+    private final Map<String, Long> topCounts = new HashMap<>();
+    private final TreeSet<HeavyHitter> topOrdered = new TreeSet<>(BY_COUNT);
+
+    // Smallest count in a full top-K set; 0 while it still has room
+    private volatile long threshold;
+
+    /**
+     * @param capacity number of top keys to keep (K)
+     * @param width sketch columns per row, rounded up to a power of two
+     * @param depth sketch rows (independent hash functions)
+     */
+    public HeavyHitters(int capacity, int width, int depth) {
+        if (capacity < 1 || width < 1 || depth < 1) {
+            throw new IllegalArgumentException("capacity, width and depth must be positive");
+        }
+        this.capacity = capacity;
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.counters = new AtomicIntegerArray(this.width * depth);
+    }
+
+    /**
+     * Counts one or more occurrences of a key.
+     *
+     * @return the key's estimated count after the update
+     */
+    public long add(String key, long increment) {
+        int hash = key.hashCode();
+        int h1 = mix(hash);
+        int h2 = mix(hash ^ 0x9E3779B9) | 1;
+        int delta = (int) Math.min(increment, Integer.MAX_VALUE);
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = (h1 + row * h2) & (width - 1);
+            int updated = counters.addAndGet(row * width + column, delta);
+            // A saturated counter wraps negative; treat it as the maximum
+            estimate = Math.min(estimate, updated < 0 ? Integer.MAX_VALUE : updated);
+        }
+
+        if (estimate >= threshold) {
+            offer(key, estimate);
+        }
+        return estimate;
+    }
+
+    /**
+     * @return the current top keys, highest count first
+     */
+    public synchronized List<HeavyHitter> top() {
+        return new ArrayList<>(topOrdered.descendingSet());
+    }
+
+    /**
+     * Halves every count so that old popularity fades out.
+     */
+    public synchronized void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, value -> value >>> 1);
+        }
+        List<HeavyHitter> previous = new ArrayList<>(topOrdered);
+        topOrdered.clear();
+        topCounts.clear();
+        for (HeavyHitter hitter : previous) {
+            if (hitter.count() > 1) {
+                HeavyHitter halved = new HeavyHitter(hitter.key(), hitter.count() / 2);
+                topOrdered.add(halved);
+                topCounts.put(halved.key(), halved.count());
+            }
+        }
+        updateThreshold();
+    }
+
+    private synchronized void offer(String key, long estimate) {
+        Long current = topCounts.get(key);
+        if (current != null) {
+            if (current >= estimate) {
+                return;
+            }
+            topOrdered.remove(new HeavyHitter(key, current));
+        } else if (topCounts.size() >= capacity) {
+            HeavyHitter smallest = topOrdered.first();
+            if (smallest.count() >= estimate) {
+                return;
+            }
+            topOrdered.pollFirst();
+            topCounts.remove(smallest.key());
+        }
+        topOrdered.add(new HeavyHitter(key, estimate));
+        topCounts.put(key, estimate);
+        updateThreshold();
+    }
+
+    private void updateThreshold() {
+        threshold = topCounts.size() >= capacity ? topOrdered.first().count() : 0;
+    }
+
+    /**
+     * Murmur3 finalizer, spreads String.hashCode over all bits.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * A key and its estimated count.
+     */
+    public record HeavyHitter(String key, long count) {}
+}
\ No newline at end of file
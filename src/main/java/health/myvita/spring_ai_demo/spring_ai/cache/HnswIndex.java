@@ -0,0 +1,456 @@
+package health.myvita.spring_ai_demo.spring_ai.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Approximate nearest-neighbour index over float vectors by cosine similarity (HNSW).
+ *
+ * Vectors are normalized on insert, so cosine similarity is a dot product. Each vector is a
+ * node in a stack of proximity graphs: every node is on level 0, and on each level above with
+ * probability 1/M. A search walks greedily down from the single top-level entry point and runs
+ * a best-first search of width ef on level 0. New nodes are linked to up to M neighbours per
+ * level chosen with the diversity heuristic from the HNSW paper, and neighbour lists that grow
+ * past their cap (2M on level 0, M above) are pruned the same way.
+ *
+ * With quantization each vector is stored as one signed byte per dimension plus a scale,
+ * about a quarter of the memory; similarities are then computed against the dequantized
+ * vectors and are approximate to roughly 1e-2.
+ *
+ * Removal only marks a node: it keeps routing searches but is never returned. Owners rebuild
+ * the index once removed nodes pile up.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int MAX_LEVEL = 16;
+
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final boolean quantized;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom();
+
+    private final List<Node> nodes = new ArrayList<>();
+    private int entryPoint = -1;
+    private int topLevel = -1;
+    private int removed;
+
+    /**
+     * @param dimensions Vector length
+     * @param m Neighbours per node and level; 2m on level 0
+     * @param efConstruction Search width when linking a new node
+     * @param quantized Store vectors as int8 instead of float
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, boolean quantized) {
+        this.dimensions = dimensions;
+        this.m = Math.max(2, m);
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.quantized = quantized;
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+    }
+
+    /**
+     * A search result.
+     *
+     * @param id Id returned by {@link #add(float[])}
+     * @param similarity Cosine similarity to the query, -1 to 1
+     */
+    public record Neighbor(int id, float similarity) {}
+
+    /**
+     * Adds a vector.
+     *
+     * @return its id; ids are consecutive from 0
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        float[] query = normalize(vector);
+        int level = Math.min(MAX_LEVEL, (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier));
+        Node node = new Node(query, quantized, level);
+        int id = nodes.size();
+        nodes.add(node);
+
+        if (entryPoint < 0) {
+            entryPoint = id;
+            topLevel = level;
+            return id;
+        }
+
+        int current = entryPoint;
+        for (int l = topLevel; l > level; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        for (int l = Math.min(level, topLevel); l >= 0; l--) {
+            List<Neighbor> found = searchLevel(query, current, efConstruction, l);
+            int[] selected = selectNeighbors(query, found, m);
+            node.neighbors[l] = selected;
+            for (int neighbor : selected) {
+                link(neighbor, id, l);
+            }
+            current = found.get(0).id();
+        }
+
+        if (level > topLevel) {
+            entryPoint = id;
+            topLevel = level;
+        }
+        return id;
+    }
+
+    /**
+     * Finds up to k live vectors most similar to the query, most similar first.
+     *
+     * @param ef Search width; larger is more accurate and slower, at least k is used
+     */
+    public List<Neighbor> search(float[] vector, int k, int ef) {
+        if (entryPoint < 0 || vector.length != dimensions) {
+            return List.of();
+        }
+        float[] query = normalize(vector);
+        int current = entryPoint;
+        for (int l = topLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+
+        List<Neighbor> results = new ArrayList<>(k);
+        for (Neighbor candidate : searchLevel(query, current, Math.max(ef, k), 0)) {
+            if (!nodes.get(candidate.id()).removed) {
+                results.add(candidate);
+                if (results.size() == k) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Excludes a vector from search results.
+     */
+    public void remove(int id) {
+        Node node = nodes.get(id);
+        if (!node.removed) {
+            node.removed = true;
+            removed++;
+        }
+    }
+
+    /**
+     * The stored (normalized, and with quantization approximate) vector.
+     */
+    public float[] vector(int id) {
+        return nodes.get(id).vector();
+    }
+
+    /**
+     * Number of vectors added, including removed ones.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    public int removedCount() {
+        return removed;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = nodes.get(current).similarity(query);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : nodes.get(current).neighborsAt(level)) {
+                float similarity = nodes.get(neighbor).similarity(query);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search on one level.
+     *
+     * @return up to ef nodes, most similar first; removed nodes included
+     */
+    private List<Neighbor> searchLevel(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>((a, b) -> Float.compare(b.similarity(), a.similarity()));
+        PriorityQueue<Neighbor> results = new PriorityQueue<>((a, b) -> Float.compare(a.similarity(), b.similarity()));
+
+        Neighbor first = new Neighbor(start, nodes.get(start).similarity(query));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Neighbor candidate = candidates.poll();
+            if (results.size() >= ef && candidate.similarity() < results.peek().similarity()) {
+                break;
+            }
+            for (int neighbor : nodes.get(candidate.id()).neighborsAt(level)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float similarity = nodes.get(neighbor).similarity(query);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Neighbor next = new Neighbor(neighbor, similarity);
+                    candidates.add(next);
+                    results.add(next);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort((a, b) -> Float.compare(b.similarity(), a.similarity()));
+        return sorted;
+    }
+
+    /**
+     * Picks up to max neighbours from candidates sorted by similarity, preferring candidates
+     * that are closer to the base than to any neighbour already picked; that keeps links
+     * spread over different directions instead of one dense cluster. Remaining slots are
+     * filled with the closest skipped candidates.
+     */
+    private int[] selectNeighbors(float[] base, List<Neighbor> candidates, int max) {
+        List<Neighbor> selected = new ArrayList<>(max);
+        List<float[]> selectedVectors = new ArrayList<>(max);
+        List<Neighbor> skipped = new ArrayList<>();
+        for (Neighbor candidate : candidates) {
+            if (selected.size() == max) {
+                break;
+            }
+            float[] candidateVector = nodes.get(candidate.id()).vector();
+            boolean diverse = true;
+            for (float[] chosen : selectedVectors) {
+                if (dot(candidateVector, chosen) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+                selectedVectors.add(candidateVector);
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected.stream().mapToInt(Neighbor::id).toArray();
+    }
+
+    private void link(int from, int to, int level) {
+        Node node = nodes.get(from);
+        int[] current = node.neighborsAt(level);
+        int[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = to;
+
+        int cap = level == 0 ? 2 * m : m;
+        if (extended.length <= cap) {
+            node.neighbors[level] = extended;
+            return;
+        }
+
+        float[] base = node.vector();
+        List<Neighbor> candidates = new ArrayList<>(extended.length);
+        for (int neighbor : extended) {
+            candidates.add(new Neighbor(neighbor, nodes.get(neighbor).similarity(base)));
+        }
+        candidates.sort((a, b) -> Float.compare(b.similarity(), a.similarity()));
+        node.neighbors[level] = selectNeighbors(base, candidates, cap);
+    }
+
+    /**
+     * Writes the index, graph included, so it can be read back without re-linking.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(dimensions);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeBoolean(quantized);
+        out.writeInt(entryPoint);
+        out.writeInt(topLevel);
+        out.writeInt(nodes.size());
+        for (Node node : nodes) {
+            out.writeBoolean(node.removed);
+            if (quantized) {
+                out.writeFloat(node.scale);
+                out.write(node.codes);
+            } else {
+                for (float value : node.floats) {
+                    out.writeFloat(value);
+                }
+            }
+            out.writeByte(node.neighbors.length - 1);
+            for (int[] level : node.neighbors) {
+                out.writeShort(level.length);
+                for (int neighbor : level) {
+                    out.writeInt(neighbor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(DataOutputStream)}.
+     */
+    public static HnswIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an HNSW index");
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), in.readInt(), in.readBoolean());
+        index.entryPoint = in.readInt();
+        index.topLevel = in.readInt();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            boolean removed = in.readBoolean();
+            Node node;
+            if (index.quantized) {
+                float scale = in.readFloat();
+                byte[] codes = new byte[index.dimensions];
+                in.readFully(codes);
+                node = new Node(codes, scale, in.readUnsignedByte());
+            } else {
+                float[] floats = new float[index.dimensions];
+                for (int d = 0; d < floats.length; d++) {
+                    floats[d] = in.readFloat();
+                }
+                node = new Node(floats, false, in.readUnsignedByte());
+            }
+            for (int l = 0; l < node.neighbors.length; l++) {
+                int[] level = new int[in.readUnsignedShort()];
+                for (int n = 0; n < level.length; n++) {
+                    level[n] = in.readInt();
+                }
+                node.neighbors[l] = level;
+            }
+            node.removed = removed;
+            if (removed) {
+                index.removed++;
+            }
+            index.nodes.add(node);
+        }
+        return index;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                normalized[i] = (float) (vector[i] / norm);
+            }
+        }
+        return normalized;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static final class Node {
+        private static final int[] NONE = new int[0];
+
+        // Exactly one of floats and codes is set
+        final float[] floats;
+        final byte[] codes;
+        final float scale;
+        // Neighbour ids per level, 0 to the node's level
+        final int[][] neighbors;
+        boolean removed;
+
+        Node(float[] normalized, boolean quantize, int level) {
+            if (quantize) {
+                float max = 0;
+                for (float value : normalized) {
+                    max = Math.max(max, Math.abs(value));
+                }
+                this.scale = max > 0 ? max / 127f : 1f;
+                this.codes = new byte[normalized.length];
+                for (int i = 0; i < normalized.length; i++) {
+                    codes[i] = (byte) Math.round(normalized[i] / scale);
+                }
+                this.floats = null;
+            } else {
+                this.floats = normalized;
+                this.codes = null;
+                this.scale = 1f;
+            }
+            this.neighbors = emptyLevels(level);
+        }
+
+        Node(byte[] codes, float scale, int level) {
+            this.floats = null;
+            this.codes = codes;
+            this.scale = scale;
+            this.neighbors = emptyLevels(level);
+        }
+
+        private static int[][] emptyLevels(int level) {
+            int[][] levels = new int[level + 1][];
+            Arrays.fill(levels, NONE);
+            return levels;
+        }
+
+        int[] neighborsAt(int level) {
+            return level < neighbors.length ? neighbors[level] : NONE;
+        }
+
+        float similarity(float[] query) {
+            if (floats != null) {
+                return dot(floats, query);
+            }
+            float sum = 0;
+            for (int i = 0; i < codes.length; i++) {
+                sum += codes[i] * query[i];
+            }
+            return sum * scale;
+        }
+
+        float[] vector() {
+            if (floats != null) {
+                return floats;
+            }
+            float[] vector = new float[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                vector[i] = codes[i] * scale;
+            }
+            return vector;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package health.myvita.spring_ai_demo.spring_ai.cache;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Recent values keyed by 64-bit perceptual hash, searchable by Hamming distance.
+ *
+ * Entries live in one BK-tree per scope, so a lookup only ever sees values stored under the
+ * same scope. The index keeps at most maxEntries values for at most ttl; evicted and expired
+ * entries are tombstoned in their tree and the trees are rebuilt once tombstones outnumber
+ * live entries, so dead nodes never dominate a search.
+ *
+ * All methods are synchronized: lookups are microseconds next to the model calls they save.
+ *
+ * @param <V> cached value type
+ */
+public class NearDuplicateIndex<V> {
+
+    private final int maxEntries;
+    private final Duration ttl;
+
+    private final Map<String, Node<V>> roots = new HashMap<>();
+    // Live entries in insertion order, oldest first
+    private final ArrayDeque<Node<V>> entries = new ArrayDeque<>();
+    private int tombstones;
+
+    public NearDuplicateIndex(int maxEntries, Duration ttl) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttl = ttl;
+    }
+
+    /**
+     * Finds the closest live value within maxDistance of the hash in the given scope.
+     *
+     * @return the value and its distance, or empty if nothing is close enough
+     */
+    public synchronized Optional<Match<V>> findNearest(String scope, long hash, int maxDistance) {
+        expire();
+        Node<V> root = roots.get(scope);
+        if (root == null) {
+            return Optional.empty();
+        }
+
+        Node<V> best = null;
+        int bestDistance = maxDistance + 1;
+        List<Node<V>> pending = new ArrayList<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Node<V> node = pending.remove(pending.size() - 1);
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (!node.removed && distance < bestDistance) {
+                best = node;
+                bestDistance = distance;
+            }
+            if (node.children == null) {
+                continue;
+            }
+            // Triangle inequality: only children at |distance - radius| .. distance + radius can match
+            int radius = bestDistance - 1;
+            for (Map.Entry<Integer, Node<V>> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= radius) {
+                    pending.add(child.getValue());
+                }
+            }
+        }
+        return best == null ? Optional.empty() : Optional.of(new Match<>(best.value, bestDistance));
+    }
+
+    /**
+     * Stores a value; an existing entry with the exact same hash in the scope is replaced.
+     */
+    public synchronized void put(String scope, long hash, V value) {
+        expire();
+        entries.addLast(insert(scope, hash, value, System.currentTimeMillis()));
+
+        while (entries.size() > maxEntries) {
+            remove(entries.pollFirst());
+        }
+        compactIfNeeded();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Adds the value to its scope's tree and returns the node holding it. The caller appends
+     * that node to the entry queue.
+     */
+    private Node<V> insert(String scope, long hash, V value, long createdAtMillis) {
+        Node<V> current = roots.get(scope);
+        if (current == null) {
+            Node<V> node = new Node<>(scope, hash, value, createdAtMillis);
+            roots.put(scope, node);
+            return node;
+        }
+        while (true) {
+            int distance = Long.bitCount(current.hash ^ hash);
+            if (distance == 0) {
+                // Same hash: reuse the node, moving it to the back of the queue
+                if (current.removed) {
+                    tombstones--;
+                } else {
+                    entries.remove(current);
+                }
+                current.removed = false;
+                current.value = value;
+                current.createdAtMillis = createdAtMillis;
+                return current;
+            }
+            if (current.children == null) {
+                current.children = new HashMap<>();
+            }
+            Node<V> child = current.children.get(distance);
+            if (child == null) {
+                Node<V> node = new Node<>(scope, hash, value, createdAtMillis);
+                current.children.put(distance, node);
+                return node;
+            }
+            current = child;
+        }
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - ttl.toMillis();
+        while (!entries.isEmpty() && entries.peekFirst().createdAtMillis < cutoff) {
+            remove(entries.pollFirst());
+        }
+        compactIfNeeded();
+    }
+
+    private void remove(Node<V> node) {
+        if (!node.removed) {
+            node.removed = true;
+            node.value = null;
+            tombstones++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (tombstones <= entries.size()) {
+            return;
+        }
+        List<Node<V>> live = new ArrayList<>(entries);
+        roots.clear();
+        entries.clear();
+        tombstones = 0;
+        for (Node<V> node : live) {
+            entries.addLast(insert(node.scope, node.hash, node.value, node.createdAtMillis));
+        }
+    }
+
+    /**
+     * A value found near the queried hash.
+     */
+    public record Match<V>(V value, int distance) {}
+
+    private static final class Node<V> {
+        final String scope;
+        final long hash;
+        V value;
+        long createdAtMillis;
+        boolean removed;
+        Map<Integer, Node<V>> children;
+
+        Node(String scope, long hash, V value, long createdAtMillis) {
+            this.scope = scope;
+            this.hash = hash;
+            this.value = value;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package health.myvita.spring_ai_demo.spring_ai.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import health.myvita.spring_ai_demo.spring_ai.config.PopularityProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Tracks the most scanned barcodes across restarts.
+ *
+ * Every scan is counted in a {@link HeavyHitters} sketch. The top K are written to a JSON file
+ * periodically and on shutdown, and read back on startup so the next node knows which products
+ * to warm before taking traffic.
+ */
+@Component
+public class PopularBarcodeTracker implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PopularBarcodeTracker.class);
+
+    private final PopularityProperties properties;
+    private final ObjectMapper objectMapper;
+    private final HeavyHitters heavyHitters;
+    private final Path file;
+
+    // Top barcodes as persisted by the previous run, highest count first
+    private final List<HeavyHitters.HeavyHitter> persisted;
+
+    public PopularBarcodeTracker(PopularityProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.file = Paths.get(properties.getFile());
+        this.heavyHitters = new HeavyHitters(properties.getTopK(), properties.getSketchWidth(), properties.getSketchDepth());
+        this.persisted = properties.isEnabled() ? load() : List.of();
+
+        // Seed the sketch so popularity carries over instead of restarting from zero
+        persisted.forEach(hitter -> heavyHitters.add(hitter.key(), hitter.count()));
+
+        meterRegistry.gauge("barcode.popularity.tracked", heavyHitters, hh -> hh.top().size());
+    }
+
+    /**
+     * Counts a scan of the barcode. Cheap enough for the request path.
+     */
+    public void record(String barcode) {
+        if (properties.isEnabled() && barcode != null) {
+            heavyHitters.add(barcode, 1);
+        }
+    }
+
+    /**
+     * @return the top barcodes persisted by the previous run, highest count first
+     */
+    public List<HeavyHitters.HeavyHitter> getPersistedTop() {
+        return persisted;
+    }
+
+    /**
+     * @return the current top barcodes, highest count first
+     */
+    public List<HeavyHitters.HeavyHitter> getTop() {
+        return heavyHitters.top();
+    }
+
+    @Scheduled(fixedDelayString = "${barcode.popularity.persist-interval:5m}",
+               initialDelayString = "${barcode.popularity.persist-interval:5m}")
+    public void persist() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<HeavyHitters.HeavyHitter> top = heavyHitters.top();
+        if (top.isEmpty()) {
+            // Nothing scanned yet; keep the previous file for the next restart
+            return;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // Write to a temp file and move it into place so a crash never leaves a partial file
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            objectMapper.writeValue(temp.toFile(), top);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to persist popular barcodes to {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${barcode.popularity.decay-interval:24h}",
+               initialDelayString = "${barcode.popularity.decay-interval:24h}")
+    public void decay() {
+        if (properties.isEnabled()) {
+            heavyHitters.decay();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        persist();
+    }
+
+    private List<HeavyHitters.HeavyHitter> load() {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        try {
+            List<HeavyHitters.HeavyHitter> loaded = objectMapper.readValue(file.toFile(), new TypeReference<>() {});
+            logger.info("Loaded {} popular barcodes from {}", loaded.size(), file);
+            return loaded.stream()
+                    .filter(hitter -> hitter.key() != null && hitter.count() > 0)
+                    .limit(properties.getTopK())
+                    .toList();
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable popular barcodes file {}: {}", file, e.getMessage());
+            return List.of();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,301 @@
+package health.myvita.spring_ai_demo.spring_ai.cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import health.myvita.spring_ai_demo.spring_ai.config.ProductCacheProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Two-tier cache for OpenFoodFacts product lookups.
+ *
+ * The first tier is a bounded in-memory Caffeine cache, the second a directory of
+ * JSON files that survives restarts. Both tiers also remember "not found" answers,
+ * but only for the (shorter) negative TTL so newly catalogued products show up quickly.
+ *
+ * Expired files are deleted when they are read, and by a periodic sweep that also keeps the
+ * directory within its entry and size budgets, oldest files first, so barcodes scanned once
+ * do not stay on disk forever.
+ */
+@Component
+public class ProductCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCache.class);
+
+    private static final String METRIC_REQUESTS = "barcode.product.cache.requests";
+    private static final String METRIC_EVICTIONS = "barcode.product.cache.evictions";
+
+    // Temp files older than this were left behind by an interrupted write
+    private static final Duration STALE_TEMP_FILE_AGE = Duration.ofHours(1);
+
+    private final ProductCacheProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CachedProduct> memory;
+    private final Path diskDirectory;
+
+    private final Counter memoryHits;
+    private final Counter memoryMisses;
+    private final Counter diskHits;
+    private final Counter diskMisses;
+    private final Counter memoryEvictions;
+    private final Counter diskEvictions;
+
+    public ProductCache(ProductCacheProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+
+        this.memoryHits = requestCounter(meterRegistry, "memory", "hit");
+        this.memoryMisses = requestCounter(meterRegistry, "memory", "miss");
+        this.diskHits = requestCounter(meterRegistry, "disk", "hit");
+        this.diskMisses = requestCounter(meterRegistry, "disk", "miss");
+        this.memoryEvictions = meterRegistry.counter(METRIC_EVICTIONS, "tier", "memory");
+        this.diskEvictions = meterRegistry.counter(METRIC_EVICTIONS, "tier", "disk");
+
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(properties.getMemory().getMaxSize())
+                .expireAfter(new RemainingLifetimeExpiry())
+                .evictionListener((String key, CachedProduct value, RemovalCause cause) ->
+                        memoryEvictions.increment())
+                .build();
+        meterRegistry.gaugeMapSize("barcode.product.cache.size", List.of(), memory.asMap());
+
+        this.diskDirectory = properties.getDisk().isEnabled() ? Paths.get(properties.getDisk().getDirectory()) : null;
+    }
+
+    /**
+     * Looks a barcode up in memory first, then on disk.
+     *
+     * @param barcode Product barcode
+     * @return the cached entry (which may be a "not found" marker), or empty on a miss
+     */
+    public Optional<CachedProduct> get(String barcode) {
+        CachedProduct cached = memory.getIfPresent(barcode);
+        if (cached != null) {
+            memoryHits.increment();
+            return Optional.of(cached);
+        }
+        memoryMisses.increment();
+
+        cached = readFromDisk(barcode);
+        if (cached != null) {
+            diskHits.increment();
+            memory.put(barcode, cached);
+            return Optional.of(cached);
+        }
+        diskMisses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Stores a lookup result in both tiers.
+     *
+     * @param barcode Product barcode
+     * @param productInfo Product information, or null to record that the product was not found
+     */
+    public void put(String barcode, BarcodeAnalysisResponse.ProductInfo productInfo) {
+        CachedProduct entry = new CachedProduct(productInfo, System.currentTimeMillis());
+        memory.put(barcode, entry);
+        writeToDisk(barcode, entry);
+    }
+
+    private CachedProduct readFromDisk(String barcode) {
+        Path file = diskFile(barcode);
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        try {
+            CachedProduct entry = objectMapper.readValue(file.toFile(), CachedProduct.class);
+            if (remainingLifetime(entry, diskTtl(entry)).isNegative()) {
+                Files.deleteIfExists(file);
+                diskEvictions.increment();
+                return null;
+            }
+            return entry;
+        } catch (IOException e) {
+            logger.warn("Discarding unreadable product cache file {}: {}", file, e.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Best effort - the next write replaces it anyway
+            }
+            return null;
+        }
+    }
+
+    private void writeToDisk(String barcode, CachedProduct entry) {
+        Path file = diskFile(barcode);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            // Write to a temp file and move it into place so readers never see a partial file
+            Path temp = Files.createTempFile(file.getParent(), barcode, ".tmp");
+            objectMapper.writeValue(temp.toFile(), entry);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to persist product cache entry for barcode {}: {}", barcode, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes disk entries past the disk TTL and leftover temp files, then the oldest entries
+     * until the tier is within max-entries and max-size. File ages come from their modification
+     * time, which is when the entry was written; "not found" markers past the shorter negative
+     * TTL are left to the read path, which deletes them.
+     */
+    @Scheduled(fixedDelayString = "${barcode.cache.disk.cleanup-interval:10m}")
+    public void cleanUp() {
+        if (diskDirectory == null || !Files.isDirectory(diskDirectory)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiredBefore = now - properties.getDisk().getTtl().toMillis();
+        long staleTempBefore = now - STALE_TEMP_FILE_AGE.toMillis();
+        List<DiskEntry> entries = new ArrayList<>();
+        long totalBytes = 0;
+        int expired = 0;
+
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(diskDirectory, Files::isDirectory)) {
+            for (Path shard : shards) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+                    for (Path file : files) {
+                        try {
+                            long modified = Files.getLastModifiedTime(file).toMillis();
+                            boolean isEntry = file.getFileName().toString().endsWith(".json");
+                            if (modified < (isEntry ? expiredBefore : staleTempBefore)) {
+                                if (Files.deleteIfExists(file) && isEntry) {
+                                    expired++;
+                                }
+                            } else if (isEntry) {
+                                long size = Files.size(file);
+                                entries.add(new DiskEntry(file, modified, size));
+                                totalBytes += size;
+                            }
+                        } catch (IOException e) {
+                            logger.debug("Could not check product cache file {}: {}", file.getFileName(), e.getMessage());
+                        }
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Failed to clean up the product cache in {}: {}", diskDirectory, e.getMessage());
+            return;
+        }
+
+        // Over budget: drop the oldest entries first
+        long maxEntries = properties.getDisk().getMaxEntries();
+        long maxBytes = properties.getDisk().getMaxSize().toBytes();
+        int overBudget = 0;
+        if (entries.size() > maxEntries || totalBytes > maxBytes) {
+            entries.sort(Comparator.comparingLong(DiskEntry::modifiedMillis));
+            long count = entries.size();
+            for (DiskEntry entry : entries) {
+                if (count <= maxEntries && totalBytes <= maxBytes) {
+                    break;
+                }
+                try {
+                    if (Files.deleteIfExists(entry.file())) {
+                        overBudget++;
+                    }
+                } catch (IOException e) {
+                    logger.debug("Could not delete product cache file {}: {}", entry.file().getFileName(), e.getMessage());
+                }
+                count--;
+                totalBytes -= entry.size();
+            }
+        }
+
+        diskEvictions.increment(expired + overBudget);
+        if (expired + overBudget > 0) {
+            logger.debug("Deleted {} expired and {} over-budget product cache files", expired, overBudget);
+        }
+    }
+
+    private record DiskEntry(Path file, long modifiedMillis, long size) {}
+
+    /**
+     * Files are sharded by the last two digits of the barcode to keep directories small.
+     * Anything that is not a plain digit string never reaches the filesystem.
+     */
+    private Path diskFile(String barcode) {
+        if (diskDirectory == null || barcode == null || !barcode.matches("\\d{2,14}")) {
+            return null;
+        }
+        return diskDirectory.resolve(barcode.substring(barcode.length() - 2)).resolve(barcode + ".json");
+    }
+
+    private Duration diskTtl(CachedProduct entry) {
+        return entry.found() ? properties.getDisk().getTtl() : properties.getNegativeTtl();
+    }
+
+    private Duration memoryTtl(CachedProduct entry) {
+        return entry.found() ? properties.getMemory().getTtl() : properties.getNegativeTtl();
+    }
+
+    private static Duration remainingLifetime(CachedProduct entry, Duration ttl) {
+        long age = System.currentTimeMillis() - entry.storedAtMillis();
+        return ttl.minusMillis(age);
+    }
+
+    private static Counter requestCounter(MeterRegistry registry, String tier, String result) {
+        return registry.counter(METRIC_REQUESTS, "tier", tier, "result", result);
+    }
+
+    /**
+     * Memory entries live for the memory TTL, but never longer than what is left of their
+     * overall lifetime, so entries promoted from disk do not outlive the disk TTL.
+     */
+    private class RemainingLifetimeExpiry implements Expiry<String, CachedProduct> {
+        @Override
+        public long expireAfterCreate(String key, CachedProduct value, long currentTime) {
+            long remaining = remainingLifetime(value, diskTtl(value)).toNanos();
+            return Math.max(0, Math.min(memoryTtl(value).toNanos(), remaining));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedProduct value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedProduct value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * A cached lookup result. A null productInfo means OpenFoodFacts did not know the barcode.
+     */
+    public record CachedProduct(BarcodeAnalysisResponse.ProductInfo productInfo, long storedAtMillis) {
+        @JsonIgnore
+        public boolean found() {
+            return productInfo != null;
+        }
+    }
+}
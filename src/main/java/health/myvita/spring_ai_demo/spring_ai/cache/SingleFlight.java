@@ -0,0 +1,80 @@
+package health.myvita.spring_ai_demo.spring_ai.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical calls into one.
+ *
+ * The first caller for a key runs the loader; callers arriving while it is still running
+ * wait for and share its result (or its exception). Nothing is remembered once the call
+ * completes - pair this with a cache if results should outlive the call.
+ *
+ * @param <K> key identifying identical work
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter collapsed;
+
+    /**
+     * @param name value of the "name" tag on the singleflight.calls metric
+     * @param meterRegistry registry for the executed/collapsed counters
+     */
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executed = meterRegistry.counter("singleflight.calls", "name", name, "result", "executed");
+        this.collapsed = meterRegistry.counter("singleflight.calls", "name", name, "result", "collapsed");
+        meterRegistry.gaugeMapSize("singleflight.in.flight", Tags.of("name", name), inFlight);
+    }
+
+    /**
+     * Runs the loader unless an identical call is already in flight, in which case its result is shared.
+     *
+     * @param key identifies identical work
+     * @param loader produces the value; runs on the calling thread
+     * @return the loader's value, possibly computed by another thread
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            collapsed.increment();
+            return await(existing);
+        }
+
+        executed.increment();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package health.myvita.spring_ai_demo.spring_ai.concurrency;
+
+import health.myvita.spring_ai_demo.spring_ai.config.ConcurrencyLimitProperties;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit for one endpoint that adapts to the latency it observes.
+ *
+ * Gradient-style: two exponential moving averages of request latency are kept, a short one
+ * that follows current conditions and a long one that acts as the no-load baseline. After
+ * every request the limit moves towards limit * gradient + sqrt(limit), where the gradient is
+ * baseline * tolerance / current, capped at 1. While latency stays near the baseline the
+ * sqrt(limit) headroom lets the limit grow; once requests queue up downstream and latency
+ * climbs, the gradient drops below 1 and the limit shrinks until latency recovers. Failed
+ * requests (5xx, or 429 from upstream) cut the limit multiplicatively instead, since their
+ * latency says nothing about capacity.
+ *
+ * Requests over the limit wait in a bounded queue for a bounded time and are rejected after.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // Samples averaged by the short and long windows
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 500;
+
+    // Limit multiplier after a failed request
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final double tolerance;
+    private final double smoothing;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition slotFreed = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double shortLatencyNanos;
+    private double longLatencyNanos;
+
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        this.minLimit = Math.max(1, properties.getMinLimit());
+        this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+        this.maxQueueSize = Math.max(0, properties.getMaxQueueSize());
+        this.tolerance = properties.getTolerance();
+        this.smoothing = properties.getSmoothing();
+        this.limit = Math.clamp(properties.getInitialLimit(), minLimit, maxLimit);
+    }
+
+    /**
+     * Takes a slot, waiting up to maxWait for one to free up.
+     *
+     * @return true if the caller holds a slot and must call release; false if it was shed
+     */
+    public boolean acquire(Duration maxWait) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < currentLimit()) {
+                inFlight++;
+                return true;
+            }
+            if (queued >= maxQueueSize) {
+                return false;
+            }
+
+            queued++;
+            try {
+                long remaining = maxWait.toNanos();
+                while (inFlight >= currentLimit()) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot and feeds the request's outcome into the limit.
+     *
+     * @param latencyNanos Time from acquiring the slot to completion
+     * @param failed true if the request failed in a way that suggests overload
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (failed) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+            } else {
+                update(latencyNanos);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long latencyNanos) {
+        if (longLatencyNanos == 0) {
+            shortLatencyNanos = latencyNanos;
+            longLatencyNanos = latencyNanos;
+            return;
+        }
+        shortLatencyNanos += (latencyNanos - shortLatencyNanos) * 2.0 / (SHORT_WINDOW + 1);
+        longLatencyNanos += (latencyNanos - longLatencyNanos) * 2.0 / (LONG_WINDOW + 1);
+
+        // Let the baseline recover quickly once a slow period is over
+        if (longLatencyNanos > shortLatencyNanos * 2) {
+            longLatencyNanos *= 0.95;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatencyNanos / shortLatencyNanos));
+        // Only grow when the limit is actually being used; an idle endpoint says nothing about capacity
+        double headroom = inFlight + 1 >= limit / 2 ? Math.sqrt(limit) : 0;
+        double estimate = limit * gradient + headroom;
+        limit = Math.clamp(limit * (1 - smoothing) + estimate * smoothing, minLimit, maxLimit);
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Current typical latency, for telling shed clients when to come back.
+     */
+    public Duration getTypicalLatency() {
+        lock.lock();
+        try {
+            return Duration.ofNanos((long) shortLatencyNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
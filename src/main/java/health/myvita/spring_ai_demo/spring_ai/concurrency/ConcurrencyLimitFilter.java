@@ -0,0 +1,171 @@
+package health.myvita.spring_ai_demo.spring_ai.concurrency;
+
+import health.myvita.spring_ai_demo.spring_ai.config.ConcurrencyLimitProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Puts an {@link AdaptiveConcurrencyLimiter} in front of each configured endpoint.
+ *
+ * A request that gets no slot within the configured wait is answered with 429 and a
+ * Retry-After of about one typical request duration, before any multipart parsing or model
+ * call happens. Streaming endpoints hold their slot until the async response completes.
+ *
+ * Metrics per endpoint: http.concurrency.limit, http.concurrency.inflight and
+ * http.concurrency.queue gauges, and http.concurrency.requests counted by result
+ * (accepted or shed).
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private final ConcurrencyLimitProperties properties;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+
+    public ConcurrencyLimitFilter(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        for (String path : properties.getEndpoints()) {
+            endpoints.put(path, new Endpoint(path, new AdaptiveConcurrencyLimiter(properties), meterRegistry));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || !endpoints.containsKey(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Endpoint endpoint = endpoints.get(request.getRequestURI());
+
+        boolean acquired;
+        try {
+            acquired = endpoint.limiter.acquire(properties.getMaxQueueWait());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            endpoint.shed.increment();
+            shed(endpoint, response);
+            return;
+        }
+        endpoint.accepted.increment();
+
+        Release release = new Release(endpoint.limiter, response);
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(release);
+                async = true;
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            release.run(true);
+            throw e;
+        } finally {
+            if (!async) {
+                release.run(false);
+            }
+        }
+    }
+
+    private void shed(Endpoint endpoint, HttpServletResponse response) throws IOException {
+        long retryAfterSeconds = Math.max(1, (endpoint.limiter.getTypicalLatency().toMillis() + 999) / 1000);
+        logger.debug("Shedding request to {}: limit {}, queued {}",
+                endpoint.path, endpoint.limiter.getLimit(), endpoint.limiter.getQueued());
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Server is busy, please retry later\"}");
+    }
+
+    /**
+     * Returns the slot exactly once, whichever of the synchronous path or the async listener
+     * gets there first.
+     */
+    private static final class Release implements AsyncListener {
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final HttpServletResponse response;
+        private final long started = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Release(AdaptiveConcurrencyLimiter limiter, HttpServletResponse response) {
+            this.limiter = limiter;
+            this.response = response;
+        }
+
+        void run(boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                int status = response.getStatus();
+                // Upstream rate limits and server errors say the endpoint is overloaded
+                boolean overloaded = failed || status >= 500 || status == HttpStatus.TOO_MANY_REQUESTS.value();
+                limiter.release(System.nanoTime() - started, overloaded);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            run(false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            run(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            run(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Keep listening if the request goes async again
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private static final class Endpoint {
+        final String path;
+        final AdaptiveConcurrencyLimiter limiter;
+        final Counter accepted;
+        final Counter shed;
+
+        Endpoint(String path, AdaptiveConcurrencyLimiter limiter, MeterRegistry meterRegistry) {
+            this.path = path;
+            this.limiter = limiter;
+            Tags tags = Tags.of("endpoint", path);
+            this.accepted = meterRegistry.counter("http.concurrency.requests", tags.and("result", "accepted"));
+            this.shed = meterRegistry.counter("http.concurrency.requests", tags.and("result", "shed"));
+            meterRegistry.gauge("http.concurrency.limit", tags, limiter, AdaptiveConcurrencyLimiter::getLimit);
+            meterRegistry.gauge("http.concurrency.inflight", tags, limiter, AdaptiveConcurrencyLimiter::getInFlight);
+            meterRegistry.gauge("http.concurrency.queue", tags, limiter, AdaptiveConcurrencyLimiter::getQueued);
+        }
+    }
+}
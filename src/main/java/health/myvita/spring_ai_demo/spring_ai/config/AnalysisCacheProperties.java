@@ -0,0 +1,27 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the cache of barcode analyses keyed by (barcode, profile cohort).
+ *
+ * Bound from the "barcode.analysis-cache" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "barcode.analysis-cache")
+public class AnalysisCacheProperties {
+
+    private boolean enabled = true;
+    private long maxSize = 50_000;
+    private Duration ttl = Duration.ofHours(24);
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public long getMaxSize() { return maxSize; }
+    public void setMaxSize(long maxSize) { this.maxSize = maxSize; }
+
+    public Duration getTtl() { return ttl; }
+    public void setTtl(Duration ttl) { this.ttl = ttl; }
+}
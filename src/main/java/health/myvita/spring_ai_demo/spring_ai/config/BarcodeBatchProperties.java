@@ -0,0 +1,24 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the batch barcode scan endpoint.
+ *
+ * Bound from the "barcode.batch" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "barcode.batch")
+public class BarcodeBatchProperties {
+
+    // Items of one batch processed concurrently
+    private int parallelism = 8;
+
+    // Largest accepted batch
+    private int maxSize = 200;
+
+    public int getParallelism() { return parallelism; }
+    public void setParallelism(int parallelism) { this.parallelism = parallelism; }
+
+    public int getMaxSize() { return maxSize; }
+    public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+}
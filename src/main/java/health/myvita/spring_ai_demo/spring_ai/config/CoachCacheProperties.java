@@ -0,0 +1,63 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for reusing health coach advice across paraphrased messages.
+ *
+ * Bound from the "coach.semantic-cache" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "coach.semantic-cache")
+public class CoachCacheProperties {
+
+    private boolean enabled = true;
+
+    // Cosine similarity between message embeddings above which stored advice is reused
+    private double similarityThreshold = 0.92;
+
+    private int maxSize = 10_000;
+    private Duration ttl = Duration.ofHours(24);
+
+    // Store embeddings as int8 instead of float, a quarter of the memory
+    private boolean quantized = true;
+
+    // HNSW graph parameters: links per node, and search widths when inserting and looking up
+    private int m = 16;
+    private int efConstruction = 100;
+    private int efSearch = 64;
+
+    private String file = "data/coach-semantic-cache.bin";
+    private Duration persistInterval = Duration.ofMinutes(10);
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public double getSimilarityThreshold() { return similarityThreshold; }
+    public void setSimilarityThreshold(double similarityThreshold) { this.similarityThreshold = similarityThreshold; }
+
+    public int getMaxSize() { return maxSize; }
+    public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+
+    public Duration getTtl() { return ttl; }
+    public void setTtl(Duration ttl) { this.ttl = ttl; }
+
+    public boolean isQuantized() { return quantized; }
+    public void setQuantized(boolean quantized) { this.quantized = quantized; }
+
+    public int getM() { return m; }
+    public void setM(int m) { this.m = m; }
+
+    public int getEfConstruction() { return efConstruction; }
+    public void setEfConstruction(int efConstruction) { this.efConstruction = efConstruction; }
+
+    public int getEfSearch() { return efSearch; }
+    public void setEfSearch(int efSearch) { this.efSearch = efSearch; }
+
+    public String getFile() { return file; }
+    public void setFile(String file) { this.file = file; }
+
+    public Duration getPersistInterval() { return persistInterval; }
+    public void setPersistInterval(Duration persistInterval) { this.persistInterval = persistInterval; }
+}
@@ -0,0 +1,87 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for routing health coach requests to a model by how involved they are.
+ *
+ * Bound from the "coach.routing" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "coach.routing")
+public class CoachRoutingProperties {
+
+    // When off, every request goes to the last tier
+    private boolean enabled = true;
+
+    // Score weights: one point per this many message characters, and per symptom, health
+    // condition in the profile, and red flag mentioned negated ("no chest pain")
+    private int charactersPerPoint = 300;
+    private double symptomWeight = 1.0;
+    private double conditionWeight = 1.5;
+    private double negatedRedFlagWeight = 2.0;
+
+    // Policy table, simplest tier first; a request goes to the last tier whose min-score it reaches,
+    // and to the last tier outright when it contains a red flag
+    private List<Tier> tiers = new ArrayList<>(List.of(
+            new Tier("simple", 0, "gpt-4.1-mini", 0.3, null),
+            new Tier("moderate", 3, "o4-mini", 1.0, "low"),
+            new Tier("complex", 6, "o4-mini", 1.0, "high")));
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getCharactersPerPoint() { return charactersPerPoint; }
+    public void setCharactersPerPoint(int charactersPerPoint) { this.charactersPerPoint = charactersPerPoint; }
+
+    public double getSymptomWeight() { return symptomWeight; }
+    public void setSymptomWeight(double symptomWeight) { this.symptomWeight = symptomWeight; }
+
+    public double getConditionWeight() { return conditionWeight; }
+    public void setConditionWeight(double conditionWeight) { this.conditionWeight = conditionWeight; }
+
+    public double getNegatedRedFlagWeight() { return negatedRedFlagWeight; }
+    public void setNegatedRedFlagWeight(double negatedRedFlagWeight) { this.negatedRedFlagWeight = negatedRedFlagWeight; }
+
+    public List<Tier> getTiers() { return tiers; }
+    public void setTiers(List<Tier> tiers) { this.tiers = tiers; }
+
+    /**
+     * One row of the policy table.
+     */
+    public static class Tier {
+        private String name;
+        private double minScore;
+        private String model;
+        private Double temperature;
+        // Reasoning models only (low, medium, high); leave empty for other models
+        private String reasoningEffort;
+
+        public Tier() {}
+
+        public Tier(String name, double minScore, String model, Double temperature, String reasoningEffort) {
+            this.name = name;
+            this.minScore = minScore;
+            this.model = model;
+            this.temperature = temperature;
+            this.reasoningEffort = reasoningEffort;
+        }
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public double getMinScore() { return minScore; }
+        public void setMinScore(double minScore) { this.minScore = minScore; }
+
+        public String getModel() { return model; }
+        public void setModel(String model) { this.model = model; }
+
+        public Double getTemperature() { return temperature; }
+        public void setTemperature(Double temperature) { this.temperature = temperature; }
+
+        public String getReasoningEffort() { return reasoningEffort; }
+        public void setReasoningEffort(String reasoningEffort) { this.reasoningEffort = reasoningEffort; }
+    }
+}
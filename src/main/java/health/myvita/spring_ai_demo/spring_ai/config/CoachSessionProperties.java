@@ -0,0 +1,71 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for multi-turn health coach sessions and their conversation memory.
+ *
+ * Bound from the "coach.session" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "coach.session")
+public class CoachSessionProperties {
+
+    private boolean enabled = true;
+
+    // Tokens of conversation memory sent with each turn: running summary plus recent messages.
+    // Older messages are compacted into the summary beyond this.
+    private int tokenBudget = 2000;
+
+    // Most recent messages never compacted, so the last exchanges stay verbatim
+    private int keepRecentMessages = 4;
+
+    // Model writing the running summary, and its length limit
+    private String summaryModel = "gpt-4.1-mini";
+    private int summaryMaxTokens = 400;
+
+    // Store bounds; least recently used sessions are evicted beyond them
+    private int maxSessions = 10_000;
+    private long maxTotalTokens = 5_000_000;
+
+    private Duration idleTimeout = Duration.ofHours(2);
+    private Duration cleanupInterval = Duration.ofMinutes(5);
+
+    // Sessions are written here periodically and on shutdown, and read back on startup; empty keeps them in memory only
+    private String file = "";
+    private Duration persistInterval = Duration.ofMinutes(5);
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getTokenBudget() { return tokenBudget; }
+    public void setTokenBudget(int tokenBudget) { this.tokenBudget = tokenBudget; }
+
+    public int getKeepRecentMessages() { return keepRecentMessages; }
+    public void setKeepRecentMessages(int keepRecentMessages) { this.keepRecentMessages = keepRecentMessages; }
+
+    public String getSummaryModel() { return summaryModel; }
+    public void setSummaryModel(String summaryModel) { this.summaryModel = summaryModel; }
+
+    public int getSummaryMaxTokens() { return summaryMaxTokens; }
+    public void setSummaryMaxTokens(int summaryMaxTokens) { this.summaryMaxTokens = summaryMaxTokens; }
+
+    public int getMaxSessions() { return maxSessions; }
+    public void setMaxSessions(int maxSessions) { this.maxSessions = maxSessions; }
+
+    public long getMaxTotalTokens() { return maxTotalTokens; }
+    public void setMaxTotalTokens(long maxTotalTokens) { this.maxTotalTokens = maxTotalTokens; }
+
+    public Duration getIdleTimeout() { return idleTimeout; }
+    public void setIdleTimeout(Duration idleTimeout) { this.idleTimeout = idleTimeout; }
+
+    public Duration getCleanupInterval() { return cleanupInterval; }
+    public void setCleanupInterval(Duration cleanupInterval) { this.cleanupInterval = cleanupInterval; }
+
+    public String getFile() { return file; }
+    public void setFile(String file) { this.file = file; }
+
+    public Duration getPersistInterval() { return persistInterval; }
+    public void setPersistInterval(Duration persistInterval) { this.persistInterval = persistInterval; }
+}
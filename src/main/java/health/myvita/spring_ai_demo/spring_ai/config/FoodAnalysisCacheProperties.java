@@ -0,0 +1,34 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for reusing food image analyses across near-duplicate uploads.
+ *
+ * Bound from the "food.analysis-cache" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "food.analysis-cache")
+public class FoodAnalysisCacheProperties {
+
+    private boolean enabled = true;
+
+    // Largest Hamming distance between 64-bit image hashes that still counts as the same photo
+    private int maxDistance = 6;
+
+    private int maxSize = 5_000;
+    private Duration ttl = Duration.ofHours(24);
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getMaxDistance() { return maxDistance; }
+    public void setMaxDistance(int maxDistance) { this.maxDistance = maxDistance; }
+
+    public int getMaxSize() { return maxSize; }
+    public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+
+    public Duration getTtl() { return ttl; }
+    public void setTtl(Duration ttl) { this.ttl = ttl; }
+}
@@ -0,0 +1,19 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for how food image analyses are requested from the vision model.
+ *
+ * Bound from the "food.analysis" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "food.analysis")
+public class FoodAnalysisProperties {
+
+    // Request the response DTO's JSON schema as structured output instead of describing the JSON in
+    // the prompt; the streaming endpoint always uses it
+    private boolean structuredOutput = true;
+
+    public boolean isStructuredOutput() { return structuredOutput; }
+    public void setStructuredOutput(boolean structuredOutput) { this.structuredOutput = structuredOutput; }
+}
@@ -0,0 +1,49 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for normalizing uploaded food photos before they are sent to the vision model.
+ *
+ * Bound from the "food.image" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "food.image")
+public class ImageNormalizationProperties {
+
+    // Longest side of the image sent to the model, in pixels
+    private int maxEdge = 1536;
+
+    // JPEG quality for re-encoded images, 0.0 - 1.0
+    private float jpegQuality = 0.85f;
+
+    // Images within maxEdge, upright and no larger than this are sent unchanged
+    private DataSize passthroughMaxSize = DataSize.ofKilobytes(512);
+
+    // Worker pool for decode/resize/encode; 0 means one per CPU
+    private int workers = 0;
+
+    // Images waiting for a worker; beyond this uploads are sent unchanged
+    private int queueCapacity = 64;
+
+    // Where uploads are spooled while they are processed; empty means the system temp directory
+    private String spoolDirectory = "";
+
+    public int getMaxEdge() { return maxEdge; }
+    public void setMaxEdge(int maxEdge) { this.maxEdge = maxEdge; }
+
+    public float getJpegQuality() { return jpegQuality; }
+    public void setJpegQuality(float jpegQuality) { this.jpegQuality = jpegQuality; }
+
+    public DataSize getPassthroughMaxSize() { return passthroughMaxSize; }
+    public void setPassthroughMaxSize(DataSize passthroughMaxSize) { this.passthroughMaxSize = passthroughMaxSize; }
+
+    public int getWorkers() { return workers; }
+    public void setWorkers(int workers) { this.workers = workers; }
+
+    public int getQueueCapacity() { return queueCapacity; }
+    public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+    public String getSpoolDirectory() { return spoolDirectory; }
+    public void setSpoolDirectory(String spoolDirectory) { this.spoolDirectory = spoolDirectory; }
+}
@@ -0,0 +1,63 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for how food photos reach the vision model and where they are kept meanwhile.
+ *
+ * Bound from the "food.image-store" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "food.image-store")
+public class ImageStoreProperties {
+
+    /**
+     * How images are passed to the model.
+     */
+    public enum Mode {
+        // Base64 data URL in the request body
+        INLINE,
+        // Short-lived signed URL to this application, fetched by the model provider
+        URL
+    }
+
+    private Mode mode = Mode.INLINE;
+
+    // Where stored images are kept
+    private String directory = "data/images";
+
+    // Externally reachable base URL of this application, e.g. https://api.example.com; required for URL mode
+    private String publicBaseUrl = "";
+
+    // HMAC key for signed URLs; empty means a random key per process, so URLs only work on the issuing node
+    private String signingKey = "";
+
+    // How long a signed URL stays valid
+    private Duration urlTtl = Duration.ofMinutes(5);
+
+    // Stored images older than this are deleted
+    private Duration retention = Duration.ofMinutes(15);
+    private Duration cleanupInterval = Duration.ofMinutes(5);
+
+    public Mode getMode() { return mode; }
+    public void setMode(Mode mode) { this.mode = mode; }
+
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+
+    public String getPublicBaseUrl() { return publicBaseUrl; }
+    public void setPublicBaseUrl(String publicBaseUrl) { this.publicBaseUrl = publicBaseUrl; }
+
+    public String getSigningKey() { return signingKey; }
+    public void setSigningKey(String signingKey) { this.signingKey = signingKey; }
+
+    public Duration getUrlTtl() { return urlTtl; }
+    public void setUrlTtl(Duration urlTtl) { this.urlTtl = urlTtl; }
+
+    public Duration getRetention() { return retention; }
+    public void setRetention(Duration retention) { this.retention = retention; }
+
+    public Duration getCleanupInterval() { return cleanupInterval; }
+    public void setCleanupInterval(Duration cleanupInterval) { this.cleanupInterval = cleanupInterval; }
+}
@@ -0,0 +1,49 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the local OpenFoodFacts catalog built from a dump export.
+ *
+ * Bound from the "barcode.local-catalog" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "barcode.local-catalog")
+public class LocalCatalogProperties {
+
+    private boolean enabled = false;
+
+    // Holds products.dat and products.idx
+    private String directory = "data/openfoodfacts";
+
+    // Optional JSONL/CSV export (optionally .gz) imported at startup when no index exists yet
+    private String importFile;
+
+    // Delta files dropped here are applied on top of the existing index, in file name order
+    private String deltaInbox = "data/openfoodfacts/deltas";
+
+    private Duration deltaPollInterval = Duration.ofMinutes(5);
+
+    // Deltas append new versions and leave the old ones in products.dat; once superseded records
+    // make up this fraction of the file, it is rewritten with only the live records
+    private double compactionDeadRatio = 0.25;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+
+    public String getImportFile() { return importFile; }
+    public void setImportFile(String importFile) { this.importFile = importFile; }
+
+    public String getDeltaInbox() { return deltaInbox; }
+    public void setDeltaInbox(String deltaInbox) { this.deltaInbox = deltaInbox; }
+
+    public Duration getDeltaPollInterval() { return deltaPollInterval; }
+    public void setDeltaPollInterval(Duration deltaPollInterval) { this.deltaPollInterval = deltaPollInterval; }
+
+    public double getCompactionDeadRatio() { return compactionDeadRatio; }
+    public void setCompactionDeadRatio(double compactionDeadRatio) { this.compactionDeadRatio = compactionDeadRatio; }
+}
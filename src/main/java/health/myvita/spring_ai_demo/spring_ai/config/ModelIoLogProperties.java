@@ -0,0 +1,44 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings for the asynchronous log of model prompts and responses.
+ *
+ * Bound from the "model-io.log" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "model-io.log")
+public class ModelIoLogProperties {
+
+    private boolean enabled = true;
+
+    // Entries waiting for the writer thread; further entries are dropped and counted
+    private int bufferSize = 1024;
+
+    // Payloads are cut to this many characters
+    private int maxPayloadChars = 4000;
+
+    // Fraction of payloads logged, 0-1, for categories without their own rate
+    private double defaultSampleRate = 1.0;
+
+    // Per-category fraction, e.g. food-analysis=0.1
+    private Map<String, Double> sampleRates = new HashMap<>();
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getBufferSize() { return bufferSize; }
+    public void setBufferSize(int bufferSize) { this.bufferSize = bufferSize; }
+
+    public int getMaxPayloadChars() { return maxPayloadChars; }
+    public void setMaxPayloadChars(int maxPayloadChars) { this.maxPayloadChars = maxPayloadChars; }
+
+    public double getDefaultSampleRate() { return defaultSampleRate; }
+    public void setDefaultSampleRate(double defaultSampleRate) { this.defaultSampleRate = defaultSampleRate; }
+
+    public Map<String, Double> getSampleRates() { return sampleRates; }
+    public void setSampleRates(Map<String, Double> sampleRates) { this.sampleRates = sampleRates; }
+}
@@ -0,0 +1,37 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * Settings for the local USDA FoodData Central nutrient database.
+ *
+ * Bound from the "food.nutrient-db" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "food.nutrient-db")
+public class NutrientDatabaseProperties {
+
+    private boolean enabled = false;
+
+    // Unpacked FoodData Central CSV export: food.csv and food_nutrient.csv
+    private String directory = "data/usda";
+
+    // food.csv data_type values to load; branded foods add millions of rows for little gain here
+    private List<String> dataTypes = List.of("foundation_food", "sr_legacy_food", "survey_fndds_food");
+
+    // Trigram similarity (Dice, 0-1) a description needs to count as a match
+    private double minSimilarity = 0.5;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+
+    public List<String> getDataTypes() { return dataTypes; }
+    public void setDataTypes(List<String> dataTypes) { this.dataTypes = dataTypes; }
+
+    public double getMinSimilarity() { return minSimilarity; }
+    public void setMinSimilarity(double minSimilarity) { this.minSimilarity = minSimilarity; }
+}
@@ -0,0 +1,76 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for popular-barcode tracking and the startup product cache warm-up.
+ *
+ * Bound from the "barcode.popularity" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "barcode.popularity")
+public class PopularityProperties {
+
+    private boolean enabled = true;
+
+    // How many of the most scanned barcodes are tracked, persisted and warmed
+    private int topK = 1000;
+
+    // Count-min sketch dimensions; width is rounded up to a power of two
+    private int sketchWidth = 16_384;
+    private int sketchDepth = 4;
+
+    private String file = "data/popular-barcodes.json";
+    private Duration persistInterval = Duration.ofMinutes(5);
+
+    // Counts are halved at this interval so popularity follows recent traffic
+    private Duration decayInterval = Duration.ofHours(24);
+
+    private final Warmup warmup = new Warmup();
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getTopK() { return topK; }
+    public void setTopK(int topK) { this.topK = topK; }
+
+    public int getSketchWidth() { return sketchWidth; }
+    public void setSketchWidth(int sketchWidth) { this.sketchWidth = sketchWidth; }
+
+    public int getSketchDepth() { return sketchDepth; }
+    public void setSketchDepth(int sketchDepth) { this.sketchDepth = sketchDepth; }
+
+    public String getFile() { return file; }
+    public void setFile(String file) { this.file = file; }
+
+    public Duration getPersistInterval() { return persistInterval; }
+    public void setPersistInterval(Duration persistInterval) { this.persistInterval = persistInterval; }
+
+    public Duration getDecayInterval() { return decayInterval; }
+    public void setDecayInterval(Duration decayInterval) { this.decayInterval = decayInterval; }
+
+    public Warmup getWarmup() { return warmup; }
+
+    /**
+     * Startup warm-up: preloads the persisted top barcodes into the product cache.
+     */
+    public static class Warmup {
+        private boolean enabled = true;
+
+        // Upper bound on OpenFoodFacts fetches per second; cache and catalog hits are not throttled
+        private int fetchesPerSecond = 20;
+
+        // The node reports ready after this long even if the warm-up has not finished
+        private Duration maxDuration = Duration.ofMinutes(2);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getFetchesPerSecond() { return fetchesPerSecond; }
+        public void setFetchesPerSecond(int fetchesPerSecond) { this.fetchesPerSecond = fetchesPerSecond; }
+
+        public Duration getMaxDuration() { return maxDuration; }
+        public void setMaxDuration(Duration maxDuration) { this.maxDuration = maxDuration; }
+    }
+}
@@ -0,0 +1,72 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for the two-tier OpenFoodFacts product cache.
+ *
+ * Bound from the "barcode.cache" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "barcode.cache")
+public class ProductCacheProperties {
+
+    // How long a "product not found" answer is trusted, in both tiers
+    private Duration negativeTtl = Duration.ofMinutes(30);
+
+    private final Memory memory = new Memory();
+    private final Disk disk = new Disk();
+
+    public Duration getNegativeTtl() { return negativeTtl; }
+    public void setNegativeTtl(Duration negativeTtl) { this.negativeTtl = negativeTtl; }
+
+    public Memory getMemory() { return memory; }
+    public Disk getDisk() { return disk; }
+
+    /**
+     * In-memory tier: bounded by entry count, entries expire after the TTL.
+     */
+    public static class Memory {
+        private long maxSize = 10_000;
+        private Duration ttl = Duration.ofHours(6);
+
+        public long getMaxSize() { return maxSize; }
+        public void setMaxSize(long maxSize) { this.maxSize = maxSize; }
+
+        public Duration getTtl() { return ttl; }
+        public void setTtl(Duration ttl) { this.ttl = ttl; }
+    }
+
+    /**
+     * On-disk tier: one JSON file per barcode, survives restarts. A periodic sweep deletes
+     * expired files and then the oldest ones beyond the entry and size budgets.
+     */
+    public static class Disk {
+        private boolean enabled = true;
+        private String directory = "data/product-cache";
+        private Duration ttl = Duration.ofDays(7);
+        private long maxEntries = 100_000;
+        private DataSize maxSize = DataSize.ofMegabytes(500);
+        private Duration cleanupInterval = Duration.ofMinutes(10);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+
+        public Duration getTtl() { return ttl; }
+        public void setTtl(Duration ttl) { this.ttl = ttl; }
+
+        public long getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(long maxEntries) { this.maxEntries = maxEntries; }
+
+        public DataSize getMaxSize() { return maxSize; }
+        public void setMaxSize(DataSize maxSize) { this.maxSize = maxSize; }
+
+        public Duration getCleanupInterval() { return cleanupInterval; }
+        public void setCleanupInterval(Duration cleanupInterval) { this.cleanupInterval = cleanupInterval; }
+    }
+}
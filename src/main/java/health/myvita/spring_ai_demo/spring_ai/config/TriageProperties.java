@@ -0,0 +1,35 @@
+package health.myvita.spring_ai_demo.spring_ai.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the local red-flag triage that answers emergency messages without the model.
+ *
+ * Bound from the "coach.triage" prefix in application.properties.
+ */
+@ConfigurationProperties(prefix = "coach.triage")
+public class TriageProperties {
+
+    private boolean enabled = true;
+
+    // Spring resource location of the red-flag lexicon
+    private String lexicon = "classpath:triage/red-flags.txt";
+
+    // Words before a red-flag phrase, within the same clause, searched for a negation cue
+    private int negationWindow = 3;
+
+    // On the stream endpoint, follow the immediate triage answer with the model's advice
+    private boolean enrichStream = true;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getLexicon() { return lexicon; }
+    public void setLexicon(String lexicon) { this.lexicon = lexicon; }
+
+    public int getNegationWindow() { return negationWindow; }
+    public void setNegationWindow(int negationWindow) { this.negationWindow = negationWindow; }
+
+    public boolean isEnrichStream() { return enrichStream; }
+    public void setEnrichStream(boolean enrichStream) { this.enrichStream = enrichStream; }
+}
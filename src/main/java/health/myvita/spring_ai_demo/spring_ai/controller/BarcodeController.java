@@ -3,12 +3,20 @@ package health.myvita.spring_ai_demo.spring_ai.controller;
 import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
 import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
 import health.myvita.spring_ai_demo.spring_ai.service.BarcodeAnalysisService;
+import health.myvita.spring_ai_demo.spring_ai.service.BarcodeBatchScanService;
+import health.myvita.spring_ai_demo.spring_ai.service.BarcodeScanStreamService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
 
 /**
  * REST Controller for barcode scanning and food product analysis.
@@ -16,6 +24,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * 
  * Endpoints:
  * - POST /api/v1/barcode/scan - Analyze product by barcode with user profile
+ * - POST /api/v1/barcode/scan-stream - Same as /scan, streamed as Server-Sent Events
+ * - POST /api/v1/barcode/scan-batch - Analyze many barcodes, streamed back as NDJSON
+ * - GET /api/v1/barcode/lookup/{barcode} - Product info with a local assessment (no AI unless ?ai=true)
  * - GET /api/v1/barcode/health - Health check endpoint
  */
 @RestController
@@ -24,10 +35,19 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class BarcodeController {
     
     private final BarcodeAnalysisService barcodeAnalysisService;
+    private final BarcodeBatchScanService barcodeBatchScanService;
+    private final BarcodeScanStreamService barcodeScanStreamService;
+    private final ObjectMapper objectMapper;
     
     @Autowired
-    public BarcodeController(BarcodeAnalysisService barcodeAnalysisService) {
+    public BarcodeController(BarcodeAnalysisService barcodeAnalysisService,
+                             BarcodeBatchScanService barcodeBatchScanService,
+                             BarcodeScanStreamService barcodeScanStreamService,
+                             ObjectMapper objectMapper) {
         this.barcodeAnalysisService = barcodeAnalysisService;
+        this.barcodeBatchScanService = barcodeBatchScanService;
+        this.barcodeScanStreamService = barcodeScanStreamService;
+        this.objectMapper = objectMapper;
     }
     
     /**
@@ -96,15 +116,112 @@ public class BarcodeController {
     }
     
     /**
-     * Quick barcode lookup without user profile (basic product info only).
+     * Analyzes a product by barcode, streaming the result as Server-Sent Events.
+     * 
+     * POST /api/v1/barcode/scan-stream
+     * Content-Type: application/json
+     * Accept: text/event-stream
+     * 
+     * Request Body: same as /scan
+     * 
+     * Events:
+     * - product: product_info, recommendation and assessment, as soon as the product is fetched
+     * - analysis: {"text": "..."} chunks of the markdown analysis as the model writes it
+     * - complete: {"status": "complete"}
+     * - error: {"error": "..."} if the scan fails after the stream has started
+     * 
+     * @param request The barcode scan request containing barcode and user profile
+     * @return Event stream for the scan
+     */
+    @PostMapping(value = "/scan-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> scanBarcodeStream(@RequestBody BarcodeScanRequest request) {
+        
+        // Validate request
+        if (request == null || request.getBarcode() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        if (request.getUserProfile() == null || !request.getUserProfile().isValid()) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        String barcode = request.getBarcode().trim();
+        if (!barcode.matches("\\d{8,14}")) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        return ResponseEntity.ok(barcodeScanStreamService.streamScan(barcode, request.getUserProfile()));
+    }
+    
+    /**
+     * Analyzes many barcodes for one user profile in a single request.
+     * 
+     * POST /api/v1/barcode/scan-batch
+     * Content-Type: application/json
+     * 
+     * Request Body:
+     * {
+     *   "barcodes": ["3017624010701", "5449000000996"],
+     *   "user_profile": { ...same as /scan... }
+     * }
+     * 
+     * The response is NDJSON: one line per barcode, written as soon as that item completes,
+     * so lines arrive in completion order rather than request order. Each line is either
+     * {"barcode": "...", "status": "ok", "result": {...}} or
+     * {"barcode": "...", "status": "error", "error": "..."}; one failed item does not fail the batch.
+     * 
+     * @param request The batch request containing barcodes and user profile
+     * @return NDJSON stream of per-barcode results
+     */
+    @PostMapping(value = "/scan-batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> scanBarcodeBatch(@RequestBody BarcodeBatchScanRequest request) {
+        
+        // Validate request
+        if (request == null || request.getBarcodes() == null || request.getBarcodes().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        if (request.getBarcodes().size() > barcodeBatchScanService.getMaxBatchSize()) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        if (request.getUserProfile() == null || !request.getUserProfile().isValid()) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        // Individual barcodes are validated per item so one bad entry only fails its own line
+        StreamingResponseBody body = outputStream -> barcodeBatchScanService.scanBatch(
+            request.getBarcodes(),
+            request.getUserProfile(),
+            result -> {
+                outputStream.write(objectMapper.writeValueAsBytes(result));
+                outputStream.write('\n');
+                outputStream.flush();
+            }
+        );
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    /**
+     * Quick barcode lookup without user profile.
      * 
      * GET /api/v1/barcode/lookup/{barcode}
+     * GET /api/v1/barcode/lookup/{barcode}?ai=true
+     * 
+     * Returns product info and a rule-based assessment (Nutri-Score/NOVA interpretation,
+     * sugar/saturated fat/salt traffic lights, allergen and additive flags) without calling
+     * the AI model. Pass ai=true to also get the AI narrative for a general adult profile.
      * 
      * @param barcode The product barcode
-     * @return Basic product information from OpenFoodFacts
+     * @param includeAiAnalysis Whether to add the AI narrative
+     * @return Product information from OpenFoodFacts with a local assessment
      */
     @GetMapping("/lookup/{barcode}")
-    public ResponseEntity<BarcodeAnalysisResponse> lookupBarcode(@PathVariable String barcode) {
+    public ResponseEntity<BarcodeAnalysisResponse> lookupBarcode(@PathVariable String barcode,
+                                                                 @RequestParam(name = "ai", defaultValue = "false") boolean includeAiAnalysis) {
         
         try {
             // Validate barcode format
@@ -112,23 +229,12 @@ public class BarcodeController {
                 return ResponseEntity.badRequest().build();
             }
             
-            // Create minimal user profile for basic analysis
-            UserProfileDto basicProfile = new UserProfileDto();
-            basicProfile.setAge(30);
-            basicProfile.setGender("unspecified");
-            basicProfile.setHealthConditions("None");
-            basicProfile.setDietaryPreference("No specific preference");
-            basicProfile.setAllergies("None");
-            basicProfile.setHealthGoals("General health");
-            
-            // Call the service to get basic product info
-            BarcodeAnalysisResponse response = barcodeAnalysisService.analyzeProductByBarcode(
-                barcode, 
-                basicProfile
-            );
+            BarcodeAnalysisResponse response = barcodeAnalysisService.lookupProduct(barcode, includeAiAnalysis);
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -167,4 +273,30 @@ public class BarcodeController {
         public UserProfileDto getUserProfile() { return userProfile; }
         public void setUserProfile(UserProfileDto userProfile) { this.userProfile = userProfile; }
     }
+    
+    /**
+     * Request DTO for batch barcode scanning
+     */
+    public static class BarcodeBatchScanRequest {
+        private List<String> barcodes;
+        
+        @JsonProperty("user_profile")
+        private UserProfileDto userProfile;
+        
+        // Default constructor
+        public BarcodeBatchScanRequest() {}
+        
+        // Constructor
+        public BarcodeBatchScanRequest(List<String> barcodes, UserProfileDto userProfile) {
+            this.barcodes = barcodes;
+            this.userProfile = userProfile;
+        }
+        
+        // Getters and setters
+        public List<String> getBarcodes() { return barcodes; }
+        public void setBarcodes(List<String> barcodes) { this.barcodes = barcodes; }
+        
+        public UserProfileDto getUserProfile() { return userProfile; }
+        public void setUserProfile(UserProfileDto userProfile) { this.userProfile = userProfile; }
+    }
 } 
\ No newline at end of file
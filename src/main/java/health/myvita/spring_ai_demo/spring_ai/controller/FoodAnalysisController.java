@@ -3,11 +3,16 @@ package health.myvita.spring_ai_demo.spring_ai.controller;
 import health.myvita.spring_ai_demo.spring_ai.dto.NutritionAnalysisResponse;
 import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
 import health.myvita.spring_ai_demo.spring_ai.service.FoodAnalysisService;
+import health.myvita.spring_ai_demo.spring_ai.service.FoodAnalysisStreamService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
 
 /**
  * REST Controller for food image analysis using GPT-4 Vision.
@@ -20,12 +25,18 @@ import org.springframework.web.multipart.MultipartFile;
 @CrossOrigin(origins = "*") // Allow CORS for frontend integration
 public class FoodAnalysisController {
     
+    private static final long MAX_IMAGE_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_MEAL_IMAGES = 5;
+    
     private final FoodAnalysisService foodAnalysisService;
+    private final FoodAnalysisStreamService foodAnalysisStreamService;
     private final ObjectMapper objectMapper;
     
     @Autowired
-    public FoodAnalysisController(FoodAnalysisService foodAnalysisService) {
+    public FoodAnalysisController(FoodAnalysisService foodAnalysisService,
+                                  FoodAnalysisStreamService foodAnalysisStreamService) {
         this.foodAnalysisService = foodAnalysisService;
+        this.foodAnalysisStreamService = foodAnalysisStreamService;
         this.objectMapper = new ObjectMapper();
     }
     
@@ -45,20 +56,86 @@ public class FoodAnalysisController {
         
         try {
             // Validate file upload
-            if (image.isEmpty()) {
+            if (!isAcceptableImage(image)) {
                 return ResponseEntity.badRequest().build();
             }
             
-            // Check if file is an image
-            String contentType = image.getContentType();
-            if (contentType == null || !contentType.startsWith("image/")) {
-                return ResponseEntity.badRequest().build();
+            // Parse user profile from JSON string
+            UserProfileDto userProfile = null;
+            if (userProfileJson != null && !userProfileJson.trim().isEmpty()) {
+                try {
+                    userProfile = objectMapper.readValue(userProfileJson, UserProfileDto.class);
+                } catch (Exception e) {
+                    return ResponseEntity.badRequest().build();
+                }
             }
             
-            // File size limit (5MB)
-            if (image.getSize() > 5 * 1024 * 1024) {
+            // Call the service to analyze the food image
+            NutritionAnalysisResponse response = foodAnalysisService.analyzeFood(image, userProfile);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            // Log the error and return server error
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * Same as /analyze, streamed as Server-Sent Events: a "food_item" event per item as soon as
+     * the model has written it, then "complete" with the full response.
+     * 
+     * POST /api/v1/food/analyze-stream
+     * Content-Type: multipart/form-data
+     * 
+     * @param image The uploaded food image file
+     * @return Event stream; see FoodAnalysisStreamService for the events
+     */
+    @PostMapping(value = "/analyze-stream", consumes = "multipart/form-data", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> analyzeFoodImageStream(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("userProfile") String userProfileJson) {
+        
+        if (!isAcceptableImage(image)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        // Parse user profile from JSON string
+        UserProfileDto userProfile = null;
+        if (userProfileJson != null && !userProfileJson.trim().isEmpty()) {
+            try {
+                userProfile = objectMapper.readValue(userProfileJson, UserProfileDto.class);
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        
+        return ResponseEntity.ok(foodAnalysisStreamService.streamAnalysis(image, userProfile));
+    }
+    
+    /**
+     * Analyzes a meal photographed in several images (plate, side dish, drink) in one model call.
+     * 
+     * POST /api/v1/food/analyze-meal
+     * Content-Type: multipart/form-data
+     * 
+     * @param images The meal photos, one "images" part each; 1 to 5
+     * @return One merged analysis; each food item lists the photos it appears in as image_indexes
+     */
+    @PostMapping(value = "/analyze-meal", consumes = "multipart/form-data")
+    public ResponseEntity<NutritionAnalysisResponse> analyzeMeal(
+            @RequestParam("images") List<MultipartFile> images,
+            @RequestParam("userProfile") String userProfileJson) {
+        
+        try {
+            if (images.isEmpty() || images.size() > MAX_MEAL_IMAGES) {
                 return ResponseEntity.badRequest().build();
             }
+            for (MultipartFile image : images) {
+                if (!isAcceptableImage(image)) {
+                    return ResponseEntity.badRequest().build();
+                }
+            }
             
             // Parse user profile from JSON string
             UserProfileDto userProfile = null;
@@ -70,8 +147,7 @@ public class FoodAnalysisController {
                 }
             }
             
-            // Call the service to analyze the food image
-            NutritionAnalysisResponse response = foodAnalysisService.analyzeFood(image, userProfile);
+            NutritionAnalysisResponse response = foodAnalysisService.analyzeMeal(images, userProfile);
             
             return ResponseEntity.ok(response);
             
@@ -81,6 +157,16 @@ public class FoodAnalysisController {
         }
     }
     
+    /**
+     * Non-empty, declared as an image and within the per-image size limit (5MB).
+     */
+    private boolean isAcceptableImage(MultipartFile image) {
+        String contentType = image.getContentType();
+        return !image.isEmpty()
+                && contentType != null && contentType.startsWith("image/")
+                && image.getSize() <= MAX_IMAGE_SIZE;
+    }
+    
     /**
      * Health check endpoint for the food analysis service
      */
@@ -3,11 +3,17 @@ package health.myvita.spring_ai_demo.spring_ai.controller;
 import health.myvita.spring_ai_demo.spring_ai.dto.HealthCoachResponse;
 import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
 import health.myvita.spring_ai_demo.spring_ai.service.HealthCoachService;
+import health.myvita.spring_ai_demo.spring_ai.service.HealthCoachStreamService;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
 
 /**
  * REST Controller for health coaching conversation endpoints.
@@ -23,9 +29,11 @@ public class HealthCoachController {
     private static final Logger logger = LoggerFactory.getLogger(HealthCoachController.class);
     
     private final HealthCoachService healthCoachService;
+    private final HealthCoachStreamService healthCoachStreamService;
     
-    public HealthCoachController(HealthCoachService healthCoachService) {
+    public HealthCoachController(HealthCoachService healthCoachService, HealthCoachStreamService healthCoachStreamService) {
         this.healthCoachService = healthCoachService;
+        this.healthCoachStreamService = healthCoachStreamService;
     }
     
     /**
@@ -38,29 +46,27 @@ public class HealthCoachController {
      *   -H "Content-Type: application/json" \
      *   -d '{"message": "Today I felt bloated and had a mild headache after lunch"}'
      * 
+     * With a "session_id" from POST /sessions, the message continues that conversation.
+     * 
      * @param request Request containing the user's message
-     * @return HealthCoachResponse with structured advice
+     * @return HealthCoachResponse with structured advice, or 404 for an unknown or expired session
      */
     @PostMapping("/advice")
     public ResponseEntity<HealthCoachResponse> provideAdvice(@RequestBody AdviceRequest request) {
         try {
             logger.info("Received health coaching request");
-            logger.debug("User message: {}", request.getMessage());
             
             // Validate the request
-            if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
-                logger.warn("Empty message received");
+            if (!isValidMessage(request.getMessage())) {
                 return ResponseEntity.badRequest().build();
             }
-            
-            // Limit message length to prevent abuse
-            if (request.getMessage().length() > 1000) {
-                logger.warn("Message too long: {} characters", request.getMessage().length());
-                return ResponseEntity.badRequest().build();
+            if (!isKnownSession(request.getSessionId())) {
+                return ResponseEntity.notFound().build();
             }
             
             // Get advice from the health coach service
-            HealthCoachResponse response = healthCoachService.provideHealthAdvice(request.getMessage(), request.getUserProfile());
+            HealthCoachResponse response = healthCoachService.provideHealthAdvice(request.getMessage(), request.getUserProfile(),
+                    request.getSessionId());
             
             logger.info("Successfully provided health advice");
             return ResponseEntity.ok(response);
@@ -71,6 +77,83 @@ public class HealthCoachController {
         }
     }
     
+    /**
+     * POST /api/v1/coach/advice-stream
+     * 
+     * Same as /advice, streamed as Server-Sent Events: "summary", "possible_cause", "tip" and
+     * "urgency" events as the model writes each part, then "complete" with the full response.
+     * 
+     * @param request Request containing the user's message
+     * @return Event stream; see HealthCoachStreamService for the events
+     */
+    @PostMapping(value = "/advice-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> provideAdviceStream(@RequestBody AdviceRequest request) {
+        logger.info("Received streamed health coaching request");
+        
+        if (!isValidMessage(request.getMessage())) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!isKnownSession(request.getSessionId())) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        return ResponseEntity.ok(healthCoachStreamService.streamAdvice(request.getMessage(), request.getUserProfile(),
+                request.getSessionId()));
+    }
+    
+    /**
+     * POST /api/v1/coach/sessions
+     * 
+     * Starts a multi-turn coaching session. Pass the returned "session_id" with each message to
+     * /advice or /advice-stream; the coach then remembers the conversation. Sessions expire
+     * after a period of inactivity.
+     * 
+     * @return 201 with {"session_id": ...}, or 404 if sessions are disabled
+     */
+    @PostMapping("/sessions")
+    public ResponseEntity<Map<String, String>> startSession() {
+        if (!healthCoachService.isSessionSupportEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("session_id", healthCoachService.startSession()));
+    }
+    
+    /**
+     * DELETE /api/v1/coach/sessions/{sessionId}
+     * 
+     * Ends a session and forgets its conversation.
+     */
+    @DeleteMapping("/sessions/{sessionId}")
+    public ResponseEntity<Void> endSession(@PathVariable String sessionId) {
+        healthCoachService.endSession(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+    
+    private boolean isKnownSession(String sessionId) {
+        if (sessionId == null) {
+            return true;
+        }
+        if (!healthCoachService.isSessionSupportEnabled() || !healthCoachService.hasSession(sessionId)) {
+            logger.warn("Unknown or expired coaching session");
+            return false;
+        }
+        return true;
+    }
+    
+    private boolean isValidMessage(String message) {
+        if (message == null || message.trim().isEmpty()) {
+            logger.warn("Empty message received");
+            return false;
+        }
+        
+        // Limit message length to prevent abuse
+        if (message.length() > 1000) {
+            logger.warn("Message too long: {} characters", message.length());
+            return false;
+        }
+        return true;
+    }
+    
     /**
      * GET /api/v1/coach/health
      * 
@@ -92,6 +175,10 @@ public class HealthCoachController {
         @JsonProperty("user_profile")
         private UserProfileDto userProfile;
         
+        // Optional: session from POST /sessions to continue
+        @JsonProperty("session_id")
+        private String sessionId;
+        
         public AdviceRequest() {}
         
         public AdviceRequest(String message, UserProfileDto userProfile) {
@@ -104,5 +191,8 @@ public class HealthCoachController {
         
         public UserProfileDto getUserProfile() { return userProfile; }
         public void setUserProfile(UserProfileDto userProfile) { this.userProfile = userProfile; }
+        
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,63 @@
+package health.myvita.spring_ai_demo.spring_ai.controller;
+
+import health.myvita.spring_ai_demo.spring_ai.image.ImageStore;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Serves stored food photos to the vision model over signed, short-lived URLs.
+ *
+ * Endpoints:
+ * - GET /api/v1/images/{id}?expires=...&signature=... - The image, if the signature is valid and unexpired
+ */
+@RestController
+@RequestMapping("/api/v1/images")
+public class ImageController {
+
+    private final ImageStore imageStore;
+
+    public ImageController(ImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    /**
+     * GET /api/v1/images/{id}
+     *
+     * The URL is issued by the image store when an analysis runs in URL mode; it is not meant to
+     * be built by clients.
+     *
+     * @param id Stored image id
+     * @param expires Expiry in epoch seconds
+     * @param signature Signature over id and expiry
+     * @return The image bytes; 403 for a bad or expired signature, 404 once the image is gone
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Resource> getImage(@PathVariable String id,
+                                             @RequestParam long expires,
+                                             @RequestParam String signature) {
+        if (!imageStore.verify(id, expires, signature)) {
+            return ResponseEntity.status(403).build();
+        }
+
+        Optional<ImageStore.StoredImage> image = imageStore.get(id);
+        if (image.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Cacheable by the fetcher until the URL expires, never by shared caches
+        long secondsLeft = Math.max(0, expires - Instant.now().getEpochSecond());
+        return ResponseEntity.ok()
+                .contentType(MediaType.asMediaType(image.get().mimeType()))
+                .contentLength(image.get().size())
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(secondsLeft)).cachePrivate())
+                .body(image.get().content());
+    }
+}
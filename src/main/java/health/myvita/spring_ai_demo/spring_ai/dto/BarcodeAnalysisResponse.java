@@ -21,6 +21,9 @@ public class BarcodeAnalysisResponse {
     @JsonProperty("source")
     private String source;
     
+    @JsonProperty("assessment")
+    private ProductAssessment assessment;
+    
     // Default constructor
     public BarcodeAnalysisResponse() {}
     
@@ -46,6 +49,9 @@ public class BarcodeAnalysisResponse {
     public String getSource() { return source; }
     public void setSource(String source) { this.source = source; }
     
+    public ProductAssessment getAssessment() { return assessment; }
+    public void setAssessment(ProductAssessment assessment) { this.assessment = assessment; }
+    
     /**
      * Product information from OpenFoodFacts
      */
@@ -0,0 +1,53 @@
+package health.myvita.spring_ai_demo.spring_ai.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One line of the batch scan NDJSON stream.
+ * Carries either the analysis for the barcode or the reason it failed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BarcodeBatchResult {
+    
+    private String barcode;
+    
+    private String status; // ok | error
+    
+    @JsonProperty("result")
+    private BarcodeAnalysisResponse result;
+    
+    private String error;
+    
+    // Default constructor
+    public BarcodeBatchResult() {}
+    
+    // Constructor
+    public BarcodeBatchResult(String barcode, String status, BarcodeAnalysisResponse result, String error) {
+        this.barcode = barcode;
+        this.status = status;
+        this.result = result;
+        this.error = error;
+    }
+    
+    public static BarcodeBatchResult success(String barcode, BarcodeAnalysisResponse result) {
+        return new BarcodeBatchResult(barcode, "ok", result, null);
+    }
+    
+    public static BarcodeBatchResult failure(String barcode, String error) {
+        return new BarcodeBatchResult(barcode, "error", null, error);
+    }
+    
+    // Getters and setters
+    public String getBarcode() { return barcode; }
+    public void setBarcode(String barcode) { this.barcode = barcode; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public BarcodeAnalysisResponse getResult() { return result; }
+    public void setResult(BarcodeAnalysisResponse result) { this.result = result; }
+    
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
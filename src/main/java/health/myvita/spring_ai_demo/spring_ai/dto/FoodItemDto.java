@@ -1,7 +1,10 @@
 package health.myvita.spring_ai_demo.spring_ai.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+
 /**
  * Data Transfer Object representing a single food item detected in an image.
  * This matches the expected schema from the algo.md specification.
@@ -21,6 +24,11 @@ public class FoodItemDto {
     private Micros micros;
     private double confidence;
     
+    // Meal analysis only: 1-based positions of the photos the item appears in, in upload order
+    @JsonProperty("image_indexes")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Integer> imageIndexes;
+    
     // Default constructor for Jackson
     public FoodItemDto() {}
     
@@ -54,6 +62,9 @@ public class FoodItemDto {
     public double getConfidence() { return confidence; }
     public void setConfidence(double confidence) { this.confidence = confidence; }
     
+    public List<Integer> getImageIndexes() { return imageIndexes; }
+    public void setImageIndexes(List<Integer> imageIndexes) { this.imageIndexes = imageIndexes; }
+    
     /**
      * Macronutrients information
      */
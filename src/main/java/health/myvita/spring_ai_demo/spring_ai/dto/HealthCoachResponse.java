@@ -1,5 +1,6 @@
 package health.myvita.spring_ai_demo.spring_ai.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
@@ -17,6 +18,16 @@ public class HealthCoachResponse {
     
     private String urgency;  // none | low | medium | high
     
+    // Set when the local red-flag triage matched: ids of the emergency signs found in the message
+    @JsonProperty("red_flags")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> redFlags;
+    
+    // Set for session turns: the session the advice belongs to
+    @JsonProperty("session_id")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String sessionId;
+    
     // Default constructor
     public HealthCoachResponse() {}
     
@@ -41,4 +52,10 @@ public class HealthCoachResponse {
     
     public String getUrgency() { return urgency; }
     public void setUrgency(String urgency) { this.urgency = urgency; }
+    
+    public List<String> getRedFlags() { return redFlags; }
+    public void setRedFlags(List<String> redFlags) { this.redFlags = redFlags; }
+    
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
 } 
\ No newline at end of file
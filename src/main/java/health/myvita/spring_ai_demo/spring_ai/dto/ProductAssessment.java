@@ -0,0 +1,140 @@
+package health.myvita.spring_ai_demo.spring_ai.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * Data Transfer Object for a rule-based product assessment.
+ * Computed locally from OpenFoodFacts data without calling the AI model.
+ */
+public class ProductAssessment {
+
+    @JsonProperty("nutriscore")
+    private ScoreInterpretation nutriscore;
+
+    @JsonProperty("nova")
+    private ScoreInterpretation nova;
+
+    @JsonProperty("traffic_lights")
+    private List<TrafficLight> trafficLights;
+
+    @JsonProperty("allergen_flags")
+    private List<String> allergenFlags;
+
+    @JsonProperty("additive_flags")
+    private List<AdditiveFlag> additiveFlags;
+
+    @JsonProperty("summary")
+    private String summary;
+
+    // Default constructor
+    public ProductAssessment() {}
+
+    // Getters and setters
+    public ScoreInterpretation getNutriscore() { return nutriscore; }
+    public void setNutriscore(ScoreInterpretation nutriscore) { this.nutriscore = nutriscore; }
+
+    public ScoreInterpretation getNova() { return nova; }
+    public void setNova(ScoreInterpretation nova) { this.nova = nova; }
+
+    public List<TrafficLight> getTrafficLights() { return trafficLights; }
+    public void setTrafficLights(List<TrafficLight> trafficLights) { this.trafficLights = trafficLights; }
+
+    public List<String> getAllergenFlags() { return allergenFlags; }
+    public void setAllergenFlags(List<String> allergenFlags) { this.allergenFlags = allergenFlags; }
+
+    public List<AdditiveFlag> getAdditiveFlags() { return additiveFlags; }
+    public void setAdditiveFlags(List<AdditiveFlag> additiveFlags) { this.additiveFlags = additiveFlags; }
+
+    public String getSummary() { return summary; }
+    public void setSummary(String summary) { this.summary = summary; }
+
+    /**
+     * A score (Nutri-Score grade or NOVA group) with its meaning
+     */
+    public static class ScoreInterpretation {
+        @JsonProperty("value")
+        private String value;
+
+        @JsonProperty("meaning")
+        private String meaning;
+
+        // Default constructor
+        public ScoreInterpretation() {}
+
+        // Constructor
+        public ScoreInterpretation(String value, String meaning) {
+            this.value = value;
+            this.meaning = meaning;
+        }
+
+        // Getters and setters
+        public String getValue() { return value; }
+        public void setValue(String value) { this.value = value; }
+
+        public String getMeaning() { return meaning; }
+        public void setMeaning(String meaning) { this.meaning = meaning; }
+    }
+
+    /**
+     * Front-of-pack traffic light for one nutrient per 100g
+     */
+    public static class TrafficLight {
+        @JsonProperty("nutrient")
+        private String nutrient;
+
+        @JsonProperty("amount_g")
+        private Double amountG;
+
+        // green, amber, red or unknown
+        @JsonProperty("level")
+        private String level;
+
+        // Default constructor
+        public TrafficLight() {}
+
+        // Constructor
+        public TrafficLight(String nutrient, Double amountG, String level) {
+            this.nutrient = nutrient;
+            this.amountG = amountG;
+            this.level = level;
+        }
+
+        // Getters and setters
+        public String getNutrient() { return nutrient; }
+        public void setNutrient(String nutrient) { this.nutrient = nutrient; }
+
+        public Double getAmountG() { return amountG; }
+        public void setAmountG(Double amountG) { this.amountG = amountG; }
+
+        public String getLevel() { return level; }
+        public void setLevel(String level) { this.level = level; }
+    }
+
+    /**
+     * An additive worth pointing out, with the reason
+     */
+    public static class AdditiveFlag {
+        @JsonProperty("code")
+        private String code;
+
+        @JsonProperty("reason")
+        private String reason;
+
+        // Default constructor
+        public AdditiveFlag() {}
+
+        // Constructor
+        public AdditiveFlag(String code, String reason) {
+            this.code = code;
+            this.reason = reason;
+        }
+
+        // Getters and setters
+        public String getCode() { return code; }
+        public void setCode(String code) { this.code = code; }
+
+        public String getReason() { return reason; }
+        public void setReason(String reason) { this.reason = reason; }
+    }
+}
\ No newline at end of file
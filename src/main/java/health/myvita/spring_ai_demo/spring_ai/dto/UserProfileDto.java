@@ -1,13 +1,41 @@
 package health.myvita.spring_ai_demo.spring_ai.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
 /**
  * Data Transfer Object for user profile information.
  * Used to provide personalized nutritional analysis based on user's health profile.
  */
 public class UserProfileDto {
     
+    // Bucket widths used for cohort canonicalization
+    private static final int AGE_BAND_YEARS = 5;
+    private static final int WEIGHT_BAND_KG = 10;
+    private static final int HEIGHT_BAND_CM = 10;
+    
+    // Free-text answers that mean "nothing to report"
+    private static final Set<String> EMPTY_ANSWERS = Set.of(
+        "none", "no", "nothing", "n/a", "na", "nil", "null", "not applicable", "no known allergies", "no allergies"
+    );
+    
+    // Common spellings folded to one token so equivalent profiles share a cohort
+    private static final Map<String, String> SYNONYMS = Map.of(
+        "nut", "nuts",
+        "peanut", "peanuts",
+        "tree nuts", "nuts",
+        "diabetic", "diabetes",
+        "high blood pressure", "hypertension",
+        "lactose intolerant", "lactose intolerance",
+        "celiac disease", "celiac",
+        "coeliac", "celiac",
+        "gluten intolerance", "celiac"
+    );
+    
     private Integer age;
     private String gender;
     private Double weight; // in kg
@@ -103,4 +131,90 @@ public class UserProfileDto {
     public String getActivityLevelSafe() {
         return activityLevel != null ? activityLevel : "moderate";
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Returns a stable key identifying this profile's cohort: age band, gender, weight and height bands,
+     * condition and allergy token sets, dietary preference and health goal.
+     * Profiles with the same key share cached analyses.
+     */
+    @JsonIgnore
+    public String getCohortKey() {
+        UserProfileDto cohort = toCohortProfile();
+        return String.join("|",
+            "age=" + cohort.age,
+            "gender=" + cohort.gender,
+            "weight=" + cohort.weight,
+            "height=" + cohort.height,
+            "conditions=" + cohort.healthConditions,
+            "allergies=" + cohort.allergies,
+            "diet=" + cohort.dietaryPreference,
+            "goal=" + cohort.healthGoals
+        );
+    }
+    
+    /**
+     * Returns the canonical representative of this profile's cohort: numbers are replaced by the middle
+     * of their band and free text by sorted, de-duplicated tokens. Prompts built from this profile are
+     * valid for every member of the cohort, which is what makes sharing their answers safe.
+     */
+    @JsonIgnore
+    public UserProfileDto toCohortProfile() {
+        UserProfileDto cohort = new UserProfileDto();
+        cohort.age = age != null ? bandMidpoint(age, AGE_BAND_YEARS) : null;
+        cohort.gender = normalizePhrase(gender, "unspecified");
+        
+        // Body measurements only matter as a pair, like in the prompts
+        if (weight != null && height != null) {
+            cohort.weight = (double) bandMidpoint((int) Math.floor(weight), WEIGHT_BAND_KG);
+            cohort.height = (double) bandMidpoint((int) Math.floor(height), HEIGHT_BAND_CM);
+        }
+        
+        // Every empty answer ("", "none", "N/A") folds to the default for a missing one
+        cohort.healthConditions = canonicalTokenSet(healthConditions, "None");
+        cohort.allergies = canonicalTokenSet(allergies, "None");
+        cohort.dietaryPreference = normalizePhrase(dietaryPreference, getDietaryPreferenceSafe());
+        cohort.healthGoals = normalizePhrase(healthGoals, getHealthGoalsSafe());
+        cohort.activityLevel = normalizePhrase(activityLevel, getActivityLevelSafe());
+        return cohort;
+    }
+    
+    /**
+     * Number of distinct health conditions listed; answers like "none" or "n/a" count as zero.
+     */
+    @JsonIgnore
+    public int getHealthConditionCount() {
+        return canonicalTokens(healthConditions).size();
+    }
+    
+    private static int bandMidpoint(int value, int width) {
+        return (value / width) * width + width / 2;
+    }
+    
+    private static String normalizePhrase(String value, String defaultValue) {
+        String normalized = value == null ? "" : value.toLowerCase().replaceAll("[^\\p{L}\\p{N}/]+", " ").trim();
+        return normalized.isEmpty() ? defaultValue.toLowerCase() : normalized;
+    }
+    
+    /**
+     * Splits free text such as "Shellfish, Tree nuts and peanut" into a sorted token set ("nuts, peanuts, shellfish").
+     */
+    private static String canonicalTokenSet(String value, String defaultValue) {
+        Set<String> tokens = canonicalTokens(value);
+        return tokens.isEmpty() ? defaultValue.toLowerCase() : String.join(", ", tokens);
+    }
+    
+    private static Set<String> canonicalTokens(String value) {
+        Set<String> tokens = new TreeSet<>();
+        // Checked whole first: splitting would break "n/a" into "n" and "a"
+        if (value != null && !EMPTY_ANSWERS.contains(normalizePhrase(value, ""))) {
+            for (String part : value.toLowerCase().split("[,;/&+\\n]|\\band\\b")) {
+                String token = part.replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+                if (token.isEmpty() || EMPTY_ANSWERS.contains(token)) {
+                    continue;
+                }
+                tokens.add(SYNONYMS.getOrDefault(token, token));
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,89 @@
+package health.myvita.spring_ai_demo.spring_ai.image;
+
+import org.springframework.util.MimeType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+/**
+ * Builds "data:<mime>;base64,..." URLs for images sent to the model.
+ *
+ * Spring AI turns byte[] media into a data URL with Base64.encodeToString plus String.format,
+ * which holds the raw bytes, the encoded bytes, the encoded String, the formatter buffer and the
+ * final String at once. Media whose data is already a String URL is passed through as is, so
+ * building the URL here in one exactly sized buffer, streaming the source through the encoder,
+ * leaves a single large copy: the String itself.
+ */
+public final class ImageDataUrl {
+
+    // Multiple of 3 so every chunk encodes without padding
+    private static final int CHUNK_SIZE = 48 * 1024;
+
+    private ImageDataUrl() {}
+
+    public static String fromBytes(MimeType mimeType, byte[] data) {
+        DataUrlBuffer target = new DataUrlBuffer(mimeType, data.length);
+        try (OutputStream encoder = target.encoder()) {
+            encoder.write(data);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return target.toDataUrl();
+    }
+
+    public static String fromFile(MimeType mimeType, Path file) throws IOException {
+        DataUrlBuffer target = new DataUrlBuffer(mimeType, Files.size(file));
+        try (InputStream input = Files.newInputStream(file); OutputStream encoder = target.encoder()) {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = input.readNBytes(chunk, 0, chunk.length)) > 0) {
+                encoder.write(chunk, 0, read);
+            }
+        }
+        return target.toDataUrl();
+    }
+
+    /**
+     * Exactly sized buffer holding the URL prefix followed by the base64 text.
+     */
+    private static final class DataUrlBuffer {
+        private final ByteArrayOutputStream buffer;
+
+        DataUrlBuffer(MimeType mimeType, long sourceLength) {
+            byte[] prefix = ("data:" + mimeType + ";base64,").getBytes(StandardCharsets.US_ASCII);
+            long encodedLength = 4 * ((sourceLength + 2) / 3);
+            if (prefix.length + encodedLength > Integer.MAX_VALUE - 16) {
+                throw new IllegalArgumentException("Image too large for a data URL: " + sourceLength + " bytes");
+            }
+            this.buffer = new ByteArrayOutputStream((int) (prefix.length + encodedLength));
+            buffer.writeBytes(prefix);
+        }
+
+        OutputStream encoder() {
+            // Closing the encoder writes the final padding but leaves the buffer usable
+            return Base64.getEncoder().wrap(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    buffer.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    buffer.write(b, off, len);
+                }
+            });
+        }
+
+        String toDataUrl() {
+            // Decodes straight from the internal buffer, without the copy toByteArray() would make
+            return buffer.toString(StandardCharsets.ISO_8859_1);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,310 @@
+package health.myvita.spring_ai_demo.spring_ai.image;
+
+import health.myvita.spring_ai_demo.spring_ai.config.ImageNormalizationProperties;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.content.Media;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares uploaded photos for the vision model.
+ *
+ * Phone photos are often 4000px+ and several MB, while the model works from a much smaller
+ * image. Each upload is decoded, turned upright according to its EXIF orientation, scaled
+ * down to {@code food.image.max-edge} and re-encoded as JPEG, which also drops EXIF metadata.
+ * Images that are already small and upright and carry no EXIF segment are passed through
+ * untouched; a small photo with EXIF is re-encoded all the same, so its GPS position and
+ * device details never leave the server. Every decodable
+ * image also gets a perceptual hash so near-duplicate uploads can be recognized.
+ *
+ * Decoding and encoding are CPU and memory heavy, so they run on a bounded worker pool. When
+ * the pool is saturated, or the format cannot be decoded, the original upload is used.
+ *
+ * Uploads are handled as files: they are spooled to disk, decoded from there, and an upload
+ * sent unchanged is streamed from disk straight into its base64 data URL.
+ */
+@Component
+public class ImageNormalizer implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageNormalizer.class);
+
+    private static final String METRIC_DURATION = "food.image.normalization";
+
+    // APP1 (EXIF) segments are at most 64KB and follow at most a JFIF segment
+    private static final int EXIF_HEADER_BYTES = 70 * 1024;
+
+    // Short edge of the coarse decode used to hash images that are passed through
+    private static final int HASH_DECODE_MIN_EDGE = 64;
+
+    private final ImageNormalizationProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor workers;
+    private final DistributionSummary bytesIn;
+    private final DistributionSummary bytesOut;
+    private final Path spoolDirectory;
+
+    public ImageNormalizer(ImageNormalizationProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.spoolDirectory = Path.of(StringUtils.hasText(properties.getSpoolDirectory())
+                ? properties.getSpoolDirectory()
+                : System.getProperty("java.io.tmpdir"));
+
+        int threads = properties.getWorkers() > 0 ? properties.getWorkers() : Runtime.getRuntime().availableProcessors();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                Thread.ofPlatform().name("image-normalizer-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.bytesIn = DistributionSummary.builder("food.image.bytes").tag("direction", "in").baseUnit("bytes").register(meterRegistry);
+        this.bytesOut = DistributionSummary.builder("food.image.bytes").tag("direction", "out").baseUnit("bytes").register(meterRegistry);
+        meterRegistry.gauge("food.image.normalization.queue", workers, pool -> pool.getQueue().size());
+    }
+
+    /**
+     * Copies a multipart upload to a temporary file in the spool directory. Uploads above the
+     * multipart file-size threshold are already on disk and are moved rather than copied. The
+     * caller deletes the file once the image has been sent.
+     */
+    public Path spool(MultipartFile upload) throws IOException {
+        Path file = Files.createTempFile(spoolDirectory, "upload-", ".img");
+        try {
+            upload.transferTo(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Normalizes an uploaded image.
+     *
+     * The upload is read from disk: EXIF from the first few KB, pixels through a file-backed
+     * image stream with subsampling. An upload that is passed through is never loaded into the
+     * heap here; it is streamed into the data URL when the Media is built.
+     *
+     * @param file Encoded image as uploaded, spooled to disk
+     * @param mimeType Declared content type of the upload
+     * @return The image to send to the model; the original when no work was needed or possible
+     */
+    public NormalizedImage normalize(Path file, MimeType mimeType) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long sizeIn = Files.size(file);
+        bytesIn.record(sizeIn);
+        NormalizedImage result;
+        String outcome;
+
+        try {
+            Future<NormalizedImage> task = workers.submit(() -> process(file, sizeIn, mimeType));
+            result = task.get();
+            outcome = result.reencoded() ? "normalized" : "passthrough";
+        } catch (RejectedExecutionException e) {
+            logger.warn("Image normalization queue is full; sending the original {} byte upload", sizeIn);
+            result = NormalizedImage.original(file, sizeIn, mimeType);
+            outcome = "rejected";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = NormalizedImage.original(file, sizeIn, mimeType);
+            outcome = "failed";
+        } catch (ExecutionException e) {
+            logger.warn("Image normalization failed, sending the original: {}", e.getCause().getMessage());
+            result = NormalizedImage.original(file, sizeIn, mimeType);
+            outcome = "failed";
+        }
+
+        bytesOut.record(result.size());
+        long nanos = sample.stop(meterRegistry.timer(METRIC_DURATION, "result", outcome));
+        logger.debug("Image normalization {}: {} -> {} bytes in {} ms",
+                outcome, sizeIn, result.size(), nanos / 1_000_000);
+        return result;
+    }
+
+    private NormalizedImage process(Path file, long size, MimeType mimeType) throws IOException {
+        byte[] header = readHeader(file);
+        int orientation = JpegExif.readOrientation(header);
+
+        // File-backed stream: the decoder reads what it needs straight from disk
+        try (ImageInputStream input = new FileImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                // e.g. WebP or HEIC; the model accepts more formats than ImageIO decodes
+                return NormalizedImage.original(file, size, mimeType);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // Header only; no pixels are decoded yet
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int maxEdge = properties.getMaxEdge();
+
+                if (Math.max(width, height) <= maxEdge
+                        && orientation == JpegExif.ORIENTATION_NORMAL
+                        && size <= properties.getPassthroughMaxSize().toBytes()
+                        && !JpegExif.hasApp1(header)) {
+                    // The hash only needs a coarse image, so decode a heavily subsampled copy
+                    int hashSubsampling = Math.max(1, Math.min(width, height) / HASH_DECODE_MIN_EDGE);
+                    ImageReadParam hashParam = reader.getDefaultReadParam();
+                    hashParam.setSourceSubsampling(hashSubsampling, hashSubsampling, 0, 0);
+                    long hash = PerceptualHash.dHash(reader.read(0, hashParam));
+                    return new NormalizedImage(null, file, size, mimeType, width, height, false, hash);
+                }
+
+                // Let the decoder skip rows/columns first so a 12MP photo never lives in memory at full size
+                int subsampling = Math.max(1, Math.max(width, height) / maxEdge);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                BufferedImage normalized = orientAndScale(decoded, orientation, maxEdge);
+                byte[] encoded = encodeJpeg(normalized);
+                return new NormalizedImage(encoded, null, encoded.length, MimeTypeUtils.IMAGE_JPEG,
+                        normalized.getWidth(), normalized.getHeight(), true, PerceptualHash.dHash(normalized));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reads enough of the file to cover the JPEG metadata segments, which come before the pixels.
+     */
+    private static byte[] readHeader(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return input.readNBytes(EXIF_HEADER_BYTES);
+        }
+    }
+
+    /**
+     * Applies the EXIF orientation and the downscale in a single draw onto an RGB canvas.
+     */
+    private static BufferedImage orientAndScale(BufferedImage source, int orientation, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        boolean swapsSides = orientation >= 5;
+        int orientedWidth = swapsSides ? height : width;
+        int orientedHeight = swapsSides ? width : height;
+
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(orientedWidth, orientedHeight));
+        int targetWidth = Math.max(1, (int) Math.round(orientedWidth * scale));
+        int targetHeight = Math.max(1, (int) Math.round(orientedHeight * scale));
+
+        AffineTransform transform = AffineTransform.getScaleInstance(scale, scale);
+        transform.concatenate(orientationTransform(orientation, width, height));
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            // JPEG has no alpha; transparent areas become white rather than black
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, targetWidth, targetHeight);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Maps source pixels to upright pixels for EXIF orientations 1-8.
+     */
+    private static AffineTransform orientationTransform(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);       // mirrored horizontally
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height); // rotated 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);      // mirrored vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);            // transposed
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);      // needs 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width); // transversed
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);       // needs 90 counter-clockwise
+            default -> new AffineTransform();
+        };
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(properties.getJpegQuality());
+            // No metadata is passed, so nothing from the original EXIF is written
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * An image ready for the model: either re-encoded bytes in memory, or the upload on disk.
+     *
+     * @param data Re-encoded image, or null when the upload is used as is
+     * @param file The upload on disk when data is null; must exist until toMedia() is called
+     * @param size Size in bytes of whichever of data or file is used
+     * @param reencoded false if this is the upload unchanged
+     * @param perceptualHash 64-bit dHash of the upright image, or null if the image could not be decoded
+     */
+    public record NormalizedImage(byte[] data, Path file, long size, MimeType mimeType, int width, int height,
+                                  boolean reencoded, Long perceptualHash) {
+
+        static NormalizedImage original(Path file, long size, MimeType mimeType) {
+            return new NormalizedImage(null, file, size, mimeType, -1, -1, false, null);
+        }
+
+        /**
+         * Builds the Media for the model request, with the data URL already encoded so the
+         * image bytes are base64-encoded exactly once.
+         */
+        public Media toMedia() throws IOException {
+            String dataUrl = data != null ? ImageDataUrl.fromBytes(mimeType, data) : ImageDataUrl.fromFile(mimeType, file);
+            return Media.builder().mimeType(mimeType).data(dataUrl).build();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package health.myvita.spring_ai_demo.spring_ai.image;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Keeps food photos for a short while so the model can fetch them by URL instead of receiving
+ * the bytes inline.
+ */
+public interface ImageStore {
+
+    /**
+     * Stores the image. An image that was not re-encoded lives in its spooled file, which the
+     * store may move rather than copy; the caller must not rely on it afterwards.
+     *
+     * @return id of the stored image
+     */
+    String put(ImageNormalizer.NormalizedImage image) throws IOException;
+
+    /**
+     * URL the image can be fetched from without credentials until the configured TTL has passed.
+     */
+    String signedUrl(String id);
+
+    /**
+     * Checks a signature produced by {@link #signedUrl(String)}.
+     *
+     * @param expires Expiry in epoch seconds, as carried in the URL
+     * @return true if the signature matches and has not expired
+     */
+    boolean verify(String id, long expires, String signature);
+
+    /**
+     * @return the image, or empty if the id is unknown or the image has been cleaned up
+     */
+    Optional<StoredImage> get(String id);
+
+    /**
+     * @param mimeType Type the image was stored with
+     * @param size Size in bytes
+     * @param content The image bytes
+     */
+    record StoredImage(MimeType mimeType, long size, Resource content) {}
+}
@@ -0,0 +1,122 @@
+package health.myvita.spring_ai_demo.spring_ai.image;
+
+/**
+ * Minimal reader for the EXIF orientation tag of a JPEG, and for whether it has EXIF at all.
+ *
+ * ImageIO ignores EXIF, so photos taken in portrait come out sideways unless the
+ * orientation is applied by hand. Only the APP1 segment and IFD0 are looked at.
+ */
+final class JpegExif {
+
+    static final int ORIENTATION_NORMAL = 1;
+
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int TAG_ORIENTATION = 0x0112;
+
+    private JpegExif() {}
+
+    /**
+     * @param data Encoded image
+     * @return EXIF orientation 1-8, or 1 if the image is not a JPEG or has no valid tag
+     */
+    static int readOrientation(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return ORIENTATION_NORMAL;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) {
+                return ORIENTATION_NORMAL;
+            }
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                // Metadata segments all come before the image data
+                return ORIENTATION_NORMAL;
+            }
+            int length = readUnsignedShort(data, pos + 2, false);
+            int segmentEnd = Math.min(data.length, pos + 2 + length);
+            if (marker == MARKER_APP1 && length >= 14 && pos + 10 <= segmentEnd && isExifHeader(data, pos + 4)) {
+                return readTiffOrientation(data, pos + 10, segmentEnd);
+            }
+            pos += 2 + length;
+        }
+        return ORIENTATION_NORMAL;
+    }
+
+    /**
+     * Whether a JPEG carries an APP1 segment (EXIF or XMP), which can hold GPS coordinates and
+     * device serials.
+     *
+     * @param data Encoded image, or at least its metadata segments
+     * @return false if the image is not a JPEG or has no APP1 segment before the image data;
+     *         true if it has one, or if the segments run past the end of data
+     */
+    static boolean hasApp1(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return false;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) {
+                // Not a segment we understand; assume the worst
+                return true;
+            }
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                return false;
+            }
+            if (marker == MARKER_APP1) {
+                return true;
+            }
+            pos += 2 + readUnsignedShort(data, pos + 2, false);
+        }
+        return true;
+    }
+
+    private static boolean isExifHeader(byte[] data, int pos) {
+        return data[pos] == 'E' && data[pos + 1] == 'x' && data[pos + 2] == 'i' && data[pos + 3] == 'f'
+                && data[pos + 4] == 0 && data[pos + 5] == 0;
+    }
+
+    private static int readTiffOrientation(byte[] data, int tiffStart, int end) {
+        if (tiffStart + 8 > end) {
+            return ORIENTATION_NORMAL;
+        }
+        boolean littleEndian = data[tiffStart] == 'I' && data[tiffStart + 1] == 'I';
+        if (!littleEndian && !(data[tiffStart] == 'M' && data[tiffStart + 1] == 'M')) {
+            return ORIENTATION_NORMAL;
+        }
+        long ifdOffset = readUnsignedInt(data, tiffStart + 4, littleEndian);
+        if (ifdOffset < 8 || tiffStart + ifdOffset + 2 > end) {
+            return ORIENTATION_NORMAL;
+        }
+        int ifd = (int) (tiffStart + ifdOffset);
+        int entries = readUnsignedShort(data, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readUnsignedShort(data, entry, littleEndian) == TAG_ORIENTATION) {
+                // SHORT value stored inline at the start of the value field
+                int orientation = readUnsignedShort(data, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : ORIENTATION_NORMAL;
+            }
+        }
+        return ORIENTATION_NORMAL;
+    }
+
+    private static int readUnsignedShort(byte[] data, int pos, boolean littleEndian) {
+        int b0 = data[pos] & 0xFF;
+        int b1 = data[pos + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long readUnsignedInt(byte[] data, int pos, boolean littleEndian) {
+        long high = readUnsignedShort(data, littleEndian ? pos + 2 : pos, littleEndian);
+        long low = readUnsignedShort(data, littleEndian ? pos : pos + 2, littleEndian);
+        return (high << 16) | low;
+    }
+}
\ No newline at end of file
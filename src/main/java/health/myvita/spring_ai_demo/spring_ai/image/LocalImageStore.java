@@ -0,0 +1,176 @@
+package health.myvita.spring_ai_demo.spring_ai.image;
+
+import health.myvita.spring_ai_demo.spring_ai.config.ImageStoreProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * {@link ImageStore} on the local filesystem, served by this application's image endpoint.
+ *
+ * Ids are 128 random bits plus an extension that records the media type. URLs carry an expiry
+ * and an HMAC-SHA256 signature over id and expiry, so only URLs this application issued are
+ * served, and only until they expire. Files are deleted once they are older than the
+ * configured retention; the model fetches them within seconds of the request.
+ */
+@Component
+public class LocalImageStore implements ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalImageStore.class);
+
+    private static final String PATH = "/api/v1/images/";
+
+    private static final String HMAC = "HmacSHA256";
+
+    private static final Map<String, MimeType> EXTENSIONS = Map.of(
+            "jpg", MimeTypeUtils.IMAGE_JPEG,
+            "png", MimeTypeUtils.IMAGE_PNG,
+            "gif", MimeTypeUtils.IMAGE_GIF,
+            "webp", MimeType.valueOf("image/webp"));
+
+    // 22 base64url characters for 16 random bytes, then the extension
+    private static final Pattern ID = Pattern.compile("[A-Za-z0-9_-]{22}\\.(jpg|png|gif|webp)");
+
+    private final ImageStoreProperties properties;
+    private final Path directory;
+    private final SecretKeySpec signingKey;
+    private final SecureRandom random = new SecureRandom();
+
+    public LocalImageStore(ImageStoreProperties properties) {
+        this.properties = properties;
+        this.directory = Paths.get(properties.getDirectory());
+
+        byte[] key;
+        if (StringUtils.hasText(properties.getSigningKey())) {
+            key = properties.getSigningKey().getBytes(StandardCharsets.UTF_8);
+        } else {
+            key = new byte[32];
+            random.nextBytes(key);
+            if (properties.getMode() == ImageStoreProperties.Mode.URL) {
+                logger.warn("No food.image-store.signing-key set; image URLs are only valid on this instance until restart");
+            }
+        }
+        this.signingKey = new SecretKeySpec(key, HMAC);
+    }
+
+    @Override
+    public String put(ImageNormalizer.NormalizedImage image) throws IOException {
+        Files.createDirectories(directory);
+        String id = newId(image.mimeType());
+        Path target = directory.resolve(id);
+        if (image.data() != null) {
+            Files.write(target, image.data());
+        } else {
+            // The spooled upload is not needed once stored; a rename is cheaper than a copy
+            Files.move(image.file(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return id;
+    }
+
+    @Override
+    public String signedUrl(String id) {
+        long expires = Instant.now().plus(properties.getUrlTtl()).getEpochSecond();
+        String baseUrl = StringUtils.trimTrailingCharacter(properties.getPublicBaseUrl(), '/');
+        return baseUrl + PATH + id + "?expires=" + expires + "&signature=" + sign(id, expires);
+    }
+
+    @Override
+    public boolean verify(String id, long expires, String signature) {
+        if (signature == null || !ID.matcher(id).matches() || Instant.now().getEpochSecond() > expires) {
+            return false;
+        }
+        byte[] expected = sign(id, expires).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public Optional<StoredImage> get(String id) {
+        if (!ID.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        Path file = directory.resolve(id);
+        try {
+            long size = Files.size(file);
+            MimeType mimeType = EXTENSIONS.get(id.substring(id.lastIndexOf('.') + 1));
+            return Optional.of(new StoredImage(mimeType, size, new FileSystemResource(file)));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Deletes images older than the retention.
+     */
+    @Scheduled(fixedDelayString = "${food.image-store.cleanup-interval:5m}")
+    public void cleanUp() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(properties.getRetention());
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    logger.debug("Could not delete stored image {}: {}", file.getFileName(), e.getMessage());
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Failed to clean up stored images in {}: {}", directory, e.getMessage());
+        }
+        if (deleted > 0) {
+            logger.debug("Deleted {} stored images", deleted);
+        }
+    }
+
+    private String newId(MimeType mimeType) {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        String extension = EXTENSIONS.entrySet().stream()
+                .filter(entry -> entry.getValue().equalsTypeAndSubtype(mimeType))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse("jpg");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes) + "." + extension;
+    }
+
+    private String sign(String id, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(signingKey);
+            byte[] signature = mac.doFinal((id + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package health.myvita.spring_ai_demo.spring_ai.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 64-bit difference hash (dHash) of an image.
+ *
+ * The image is reduced to a 9x8 grid of mean luminances and each bit records whether a cell is
+ * brighter than its right-hand neighbour. Re-encoding, rescaling and small exposure changes
+ * flip few bits, so near-identical photos end up within a small Hamming distance.
+ */
+final class PerceptualHash {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+
+    // Samples per cell edge; plenty for a box mean and keeps the cost flat for large images
+    private static final int SAMPLES_PER_CELL = 16;
+
+    private PerceptualHash() {}
+
+    static long dHash(BufferedImage image) {
+        double[] luminance = cellLuminance(image);
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS - 1; column++) {
+                hash <<= 1;
+                if (luminance[row * COLUMNS + column] > luminance[row * COLUMNS + column + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static double[] cellLuminance(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] luminance = new double[COLUMNS * ROWS];
+
+        for (int row = 0; row < ROWS; row++) {
+            int top = row * height / ROWS;
+            int bottom = Math.max(top + 1, (row + 1) * height / ROWS);
+            int stepY = Math.max(1, (bottom - top) / SAMPLES_PER_CELL);
+
+            for (int column = 0; column < COLUMNS; column++) {
+                int left = column * width / COLUMNS;
+                int right = Math.max(left + 1, (column + 1) * width / COLUMNS);
+                int stepX = Math.max(1, (right - left) / SAMPLES_PER_CELL);
+
+                double sum = 0;
+                int samples = 0;
+                for (int y = top; y < bottom && y < height; y += stepY) {
+                    for (int x = left; x < right && x < width; x += stepX) {
+                        int rgb = image.getRGB(x, y);
+                        sum += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                        samples++;
+                    }
+                }
+                luminance[row * COLUMNS + column] = samples == 0 ? 0 : sum / samples;
+            }
+        }
+        return luminance;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,265 @@
+package health.myvita.spring_ai_demo.spring_ai.json;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Single-pass repair of the JSON object in a model answer.
+ *
+ * Finds the first '{' and copies the object from there. Along the way it drops comments, turns
+ * single-quoted strings into double-quoted ones, escapes raw control characters in strings and
+ * drops commas before a closing bracket. Whatever follows the object is dropped too. If the
+ * text ends before the object is closed, the output is cut back to the last point where a
+ * value had just finished, and the open arrays and objects are closed there. Objects that are
+ * array elements are kept only when complete, so a truncated list loses its unfinished last
+ * element instead of gaining a half-filled one.
+ *
+ * Whitespace between tokens is not copied. Unquoted keys and non-JSON literals are left for the
+ * JSON parser to reject.
+ */
+public final class JsonRepair {
+
+    /**
+     * The kinds of damage a repair can undo.
+     */
+    public enum Kind {
+        LEADING_TEXT,
+        TRAILING_TEXT,
+        TRUNCATED,
+        SINGLE_QUOTES,
+        COMMENTS,
+        TRAILING_COMMAS,
+        CONTROL_CHARACTERS;
+
+        /**
+         * Lower-case name used as the metric tag.
+         */
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * @param json The repaired JSON object
+     * @param repairs What had to be repaired; empty if the object was valid as found
+     */
+    public record Result(String json, Set<Kind> repairs) {}
+
+    // What the innermost open container expects next
+    private static final int KEY = 0;
+    private static final int COLON = 1;
+    private static final int VALUE = 2;
+    private static final int AFTER_VALUE = 3;
+
+    private final String text;
+    private final StringBuilder out;
+    private final StringBuilder stack = new StringBuilder();
+    private final Set<Kind> repairs = EnumSet.noneOf(Kind.class);
+
+    private int state;
+    private boolean inScalar;
+    private boolean pendingComma;
+
+    // Output length and open containers at the last point the output can be cut back to
+    private int safeLength;
+    private String safeStack = "";
+
+    private JsonRepair(String text) {
+        this.text = text;
+        this.out = new StringBuilder(text.length() + 16);
+    }
+
+    /**
+     * Repairs the first JSON object in the text.
+     *
+     * @return the repaired object, or null if the text contains no '{'
+     */
+    public static Result repair(String text) {
+        if (text == null) {
+            return null;
+        }
+        int start = text.indexOf('{');
+        if (start < 0) {
+            return null;
+        }
+        JsonRepair repair = new JsonRepair(text);
+        if (!text.substring(0, start).isBlank()) {
+            repair.repairs.add(Kind.LEADING_TEXT);
+        }
+        repair.run(start);
+        return new Result(repair.out.toString(), repair.repairs);
+    }
+
+    private void run(int start) {
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+
+            if (c == '"' || c == '\'') {
+                i = copyString(i);
+                continue;
+            }
+            if (c == '/' && i + 1 < text.length() && (text.charAt(i + 1) == '/' || text.charAt(i + 1) == '*')) {
+                endScalar();
+                i = skipComment(i);
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                endScalar();
+                i++;
+                continue;
+            }
+
+            switch (c) {
+                case '{', '[' -> {
+                    endScalar();
+                    flushComma();
+                    out.append(c);
+                    stack.append(c);
+                    state = c == '{' ? KEY : VALUE;
+                    markSafe();
+                }
+                case '}', ']' -> {
+                    endScalar();
+                    if (pendingComma) {
+                        pendingComma = false;
+                        repairs.add(Kind.TRAILING_COMMAS);
+                    }
+                    // A mismatched bracket is taken as the one that closes the open container
+                    char open = stack.charAt(stack.length() - 1);
+                    out.append(open == '{' ? '}' : ']');
+                    stack.setLength(stack.length() - 1);
+                    if (stack.isEmpty()) {
+                        if (!text.substring(i + 1).isBlank()) {
+                            repairs.add(Kind.TRAILING_TEXT);
+                        }
+                        return;
+                    }
+                    state = AFTER_VALUE;
+                    markSafe();
+                }
+                case ',' -> {
+                    endScalar();
+                    if (pendingComma) {
+                        // Doubled comma; keep one
+                        repairs.add(Kind.TRAILING_COMMAS);
+                    }
+                    pendingComma = true;
+                    state = stack.charAt(stack.length() - 1) == '{' ? KEY : VALUE;
+                }
+                case ':' -> {
+                    endScalar();
+                    out.append(':');
+                    state = VALUE;
+                }
+                default -> {
+                    // Number or literal; it is complete only once a delimiter follows
+                    flushComma();
+                    out.append(c);
+                    inScalar = true;
+                }
+            }
+            i++;
+        }
+
+        // The text ended inside the object
+        repairs.add(Kind.TRUNCATED);
+        out.setLength(safeLength);
+        for (int level = safeStack.length() - 1; level >= 0; level--) {
+            out.append(safeStack.charAt(level) == '{' ? '}' : ']');
+        }
+    }
+
+    /**
+     * Copies a string starting at the quote at position start, normalizing it to double quotes.
+     *
+     * @return the position after the closing quote, or the end of the text if it never closes
+     */
+    private int copyString(int start) {
+        endScalar();
+        flushComma();
+        char quote = text.charAt(start);
+        if (quote == '\'') {
+            repairs.add(Kind.SINGLE_QUOTES);
+        }
+        out.append('"');
+
+        int i = start + 1;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char escaped = text.charAt(i + 1);
+                if (escaped == '\'') {
+                    // \' is not a JSON escape
+                    out.append('\'');
+                } else {
+                    out.append('\\').append(escaped);
+                }
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                out.append('"');
+                if (state == KEY) {
+                    state = COLON;
+                } else {
+                    state = AFTER_VALUE;
+                    markSafe();
+                }
+                return i + 1;
+            }
+            if (c == '"') {
+                out.append("\\\"");
+            } else if (c < 0x20) {
+                repairs.add(Kind.CONTROL_CHARACTERS);
+                switch (c) {
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> out.append(String.format("\\u%04x", (int) c));
+                }
+            } else {
+                out.append(c);
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private int skipComment(int start) {
+        repairs.add(Kind.COMMENTS);
+        if (text.charAt(start + 1) == '/') {
+            int end = text.indexOf('\n', start);
+            return end < 0 ? text.length() : end + 1;
+        }
+        int end = text.indexOf("*/", start + 2);
+        return end < 0 ? text.length() : end + 2;
+    }
+
+    private void endScalar() {
+        if (inScalar) {
+            inScalar = false;
+            state = AFTER_VALUE;
+            markSafe();
+        }
+    }
+
+    private void flushComma() {
+        if (pendingComma) {
+            out.append(',');
+            pendingComma = false;
+        }
+    }
+
+    /**
+     * Records the current output as a cut-back point, unless it lies inside an object that is
+     * an array element; a cut there would keep a partial element.
+     */
+    private void markSafe() {
+        if (stack.indexOf("[{") < 0) {
+            safeLength = out.length();
+            safeStack = stack.toString();
+        }
+    }
+}
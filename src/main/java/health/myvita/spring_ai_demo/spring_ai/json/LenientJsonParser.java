@@ -0,0 +1,73 @@
+package health.myvita.spring_ai_demo.spring_ai.json;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps JSON written by a model to a DTO, repairing the usual damage first.
+ *
+ * Model answers arrive wrapped in prose or code fences, cut off at the token limit, or with
+ * single quotes, comments and trailing commas. {@link JsonRepair} fixes those in one pass, and
+ * the result is bound with unknown properties ignored, so an answer is only lost when nothing
+ * usable is left. Every parse is counted as model.json.parses{target, result} with result
+ * clean, repaired or failed, and every repair as model.json.repairs{target, kind}.
+ */
+@Component
+public class LenientJsonParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(LenientJsonParser.class);
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    public LenientJsonParser(MeterRegistry meterRegistry) {
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Repairs the JSON object in a model answer and binds it to the given type.
+     *
+     * @param modelOutput The model's answer as returned
+     * @param type Target DTO type
+     * @return The bound value
+     * @throws JsonProcessingException if the answer has no JSON object or it cannot be bound even after repair
+     */
+    public <T> T parse(String modelOutput, Class<T> type) throws JsonProcessingException {
+        String target = type.getSimpleName();
+        JsonRepair.Result repaired = JsonRepair.repair(modelOutput);
+        if (repaired == null) {
+            count(target, "failed");
+            throw new JsonParseException(null, "No JSON object in model output");
+        }
+
+        for (JsonRepair.Kind kind : repaired.repairs()) {
+            meterRegistry.counter("model.json.repairs", "target", target, "kind", kind.tag()).increment();
+        }
+        if (!repaired.repairs().isEmpty()) {
+            logger.debug("Repaired model JSON for {}: {}", target, repaired.repairs());
+        }
+
+        try {
+            T value = objectMapper.readValue(repaired.json(), type);
+            count(target, repaired.repairs().isEmpty() ? "clean" : "repaired");
+            return value;
+        } catch (JsonProcessingException e) {
+            count(target, "failed");
+            throw e;
+        }
+    }
+
+    private void count(String target, String result) {
+        meterRegistry.counter("model.json.parses", "target", target, "result", result).increment();
+    }
+}
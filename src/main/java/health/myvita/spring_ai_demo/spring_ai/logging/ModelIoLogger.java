@@ -0,0 +1,156 @@
+package health.myvita.spring_ai_demo.spring_ai.logging;
+
+import health.myvita.spring_ai_demo.spring_ai.config.ModelIoLogProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs model prompts and responses off the request thread.
+ *
+ * Callers hand over the payload and return immediately: the entry is sampled, truncated and
+ * put into a bounded buffer that a single writer thread drains into the log. When the buffer
+ * is full the entry is dropped and counted rather than making the request wait for the log.
+ *
+ * Each category logs through its own logger, "model-io.&lt;category&gt;", at INFO, so payload
+ * logging is switched per service like any logger: at startup with
+ * logging.level.model-io.&lt;category&gt;=OFF, and at runtime through the actuator loggers
+ * endpoint, e.g. POST /actuator/loggers/model-io.health-coach {"configuredLevel": "OFF"}. The
+ * level is checked on every call, so a change applies to the next payload. Actuator is served
+ * on a separate management port bound to loopback, as the loggers endpoint has no
+ * authentication of its own. A disabled category costs one level check.
+ *
+ * Metrics: model.io.log.entries counted by category and result (logged, sampled_out, dropped),
+ * and the model.io.log.buffer gauge.
+ */
+@Component
+public class ModelIoLogger implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelIoLogger.class);
+
+    private static final String LOGGER_PREFIX = "model-io.";
+
+    private final ModelIoLogProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final BlockingQueue<Entry> buffer;
+    private final Map<String, Category> categories = new ConcurrentHashMap<>();
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    public ModelIoLogger(ModelIoLogProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, properties.getBufferSize()));
+        meterRegistry.gauge("model.io.log.buffer", buffer, BlockingQueue::size);
+
+        this.writer = Thread.ofPlatform().name("model-io-log-writer").daemon().start(this::drain);
+    }
+
+    /**
+     * Logs a prompt sent to the model.
+     *
+     * @param category Service the prompt belongs to, e.g. "food-analysis"
+     */
+    public void request(String category, String payload) {
+        log(category, "request", payload);
+    }
+
+    /**
+     * Logs a model response.
+     *
+     * @param category Service the response belongs to, e.g. "food-analysis"
+     */
+    public void response(String category, String payload) {
+        log(category, "response", payload);
+    }
+
+    private void log(String category, String direction, String payload) {
+        if (!properties.isEnabled() || payload == null) {
+            return;
+        }
+        Category target = categories.computeIfAbsent(category, this::createCategory);
+        if (!target.logger.isInfoEnabled()) {
+            return;
+        }
+        if (target.sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= target.sampleRate) {
+            target.sampledOut.increment();
+            return;
+        }
+
+        // Truncate here so the buffer never holds more than maxPayloadChars per entry
+        int max = properties.getMaxPayloadChars();
+        String text = payload.length() > max ? payload.substring(0, max) : payload;
+        if (buffer.offer(new Entry(target, direction, text, payload.length()))) {
+            target.logged.increment();
+        } else {
+            target.dropped.increment();
+        }
+    }
+
+    private Category createCategory(String name) {
+        double sampleRate = properties.getSampleRates().getOrDefault(name, properties.getDefaultSampleRate());
+        return new Category(
+                LoggerFactory.getLogger(LOGGER_PREFIX + name),
+                Math.clamp(sampleRate, 0.0, 1.0),
+                meterRegistry.counter("model.io.log.entries", "category", name, "result", "logged"),
+                meterRegistry.counter("model.io.log.entries", "category", name, "result", "sampled_out"),
+                meterRegistry.counter("model.io.log.entries", "category", name, "result", "dropped"));
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            buffer.drainTo(batch);
+            write(batch);
+        }
+        // Flush what was accepted before shutdown
+        buffer.drainTo(batch);
+        write(batch);
+    }
+
+    private void write(List<Entry> batch) {
+        for (Entry entry : batch) {
+            try {
+                if (entry.text.length() < entry.length) {
+                    entry.category.logger.info("Model {} ({} of {} chars):\n{}",
+                            entry.direction, entry.text.length(), entry.length, entry.text);
+                } else {
+                    entry.category.logger.info("Model {}:\n{}", entry.direction, entry.text);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to write model {} log entry: {}", entry.direction, e.getMessage());
+            }
+        }
+        batch.clear();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(1000);
+    }
+
+    private record Category(Logger logger, double sampleRate, Counter logged, Counter sampledOut, Counter dropped) {}
+
+    private record Entry(Category category, String direction, String text, int length) {}
+}
@@ -0,0 +1,243 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import health.myvita.spring_ai_demo.spring_ai.config.LocalCatalogProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read side of the local OpenFoodFacts catalog.
+ *
+ * products.idx is a sorted array of (GTIN, record offset) long pairs that is memory-mapped,
+ * so lookups are a binary search over off-heap memory. products.dat holds the length-prefixed
+ * records written by {@link ProductRecordCodec}; a hit costs one positional read.
+ */
+@Component
+public class LocalProductCatalog implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalProductCatalog.class);
+
+    static final String DATA_FILE = "products.dat";
+    static final String INDEX_FILE = "products.idx";
+
+    static final int DATA_MAGIC = 0x4F464644;   // "OFFD"
+    static final int INDEX_MAGIC = 0x4F464649;  // "OFFI"
+    static final int FORMAT_VERSION = 1;
+    static final int DATA_HEADER_BYTES = 8;     // magic, version
+    static final int INDEX_HEADER_BYTES = 16;   // magic, version, entry count
+
+    // Most records fit in the first read; larger ones get a second read
+    private static final int INITIAL_READ_BYTES = 2048;
+
+    private final LocalCatalogProperties properties;
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile Snapshot snapshot;
+
+    public LocalProductCatalog(LocalCatalogProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hits = meterRegistry.counter("barcode.local.catalog.lookups", "result", "hit");
+        this.misses = meterRegistry.counter("barcode.local.catalog.lookups", "result", "miss");
+        meterRegistry.gauge("barcode.local.catalog.size", this, LocalProductCatalog::size);
+
+        if (properties.isEnabled()) {
+            reload();
+        }
+    }
+
+    /**
+     * Looks a barcode up in the local catalog.
+     *
+     * @param barcode Product barcode
+     * @return ProductInfo or null if the catalog is not loaded or does not contain the barcode
+     */
+    public BarcodeAnalysisResponse.ProductInfo lookup(String barcode) {
+        long gtin = toGtin(barcode);
+        if (gtin < 0) {
+            return null;
+        }
+
+        // A reload can close the channel under us; retry once against the new snapshot
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Snapshot current = snapshot;
+            if (current == null) {
+                return null;
+            }
+            long offset = current.find(gtin);
+            if (offset < 0) {
+                misses.increment();
+                return null;
+            }
+            try {
+                BarcodeAnalysisResponse.ProductInfo product = ProductRecordCodec.decode(readRecord(current.data(), offset));
+                hits.increment();
+                return product;
+            } catch (ClosedChannelException e) {
+                // fall through to retry
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to read local catalog record for barcode {}: {}", barcode, e.getMessage());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Number of products in the loaded catalog.
+     */
+    public long size() {
+        Snapshot current = snapshot;
+        return current != null ? current.count() : 0;
+    }
+
+    /**
+     * Re-opens the catalog files, e.g. after an import or delta has replaced the index.
+     */
+    public synchronized void reload() {
+        Path directory = Paths.get(properties.getDirectory());
+        Path indexFile = directory.resolve(INDEX_FILE);
+        Path dataFile = directory.resolve(DATA_FILE);
+
+        Snapshot previous = snapshot;
+        if (!Files.exists(indexFile) || !Files.exists(dataFile)) {
+            logger.info("No local OpenFoodFacts catalog found in {}", directory.toAbsolutePath());
+            snapshot = null;
+        } else {
+            try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                LongBuffer entries = mapIndex(indexChannel);
+                FileChannel data = FileChannel.open(dataFile, StandardOpenOption.READ);
+                snapshot = new Snapshot(entries, entries.capacity() / 2, data);
+                logger.info("Loaded local OpenFoodFacts catalog with {} products", entries.capacity() / 2);
+            } catch (IOException e) {
+                logger.error("Failed to load local OpenFoodFacts catalog: {}", e.getMessage());
+                snapshot = null;
+            }
+        }
+
+        if (previous != null) {
+            closeQuietly(previous.data());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        Snapshot current = snapshot;
+        snapshot = null;
+        if (current != null) {
+            closeQuietly(current.data());
+        }
+    }
+
+    /**
+     * Converts a barcode to its numeric GTIN; leading zeros are not significant.
+     *
+     * @return the GTIN, or -1 if the barcode is not a plain digit string of 1-18 digits
+     */
+    static long toGtin(String barcode) {
+        if (barcode == null || barcode.isEmpty() || barcode.length() > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < barcode.length(); i++) {
+            char c = barcode.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Maps an index file and returns its entries as (gtin, offset) pairs.
+     * The mapping stays valid after the channel is closed.
+     */
+    static LongBuffer mapIndex(FileChannel channel) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (mapped.getInt(0) != INDEX_MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not a local catalog index (bad magic or version)");
+        }
+        long count = mapped.getLong(8);
+        if (INDEX_HEADER_BYTES + count * 16 != channel.size()) {
+            throw new IOException("Truncated local catalog index");
+        }
+        return mapped.position(INDEX_HEADER_BYTES).slice().asLongBuffer();
+    }
+
+    private static ByteBuffer readRecord(FileChannel data, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_READ_BYTES);
+        readFully(data, buffer, offset);
+        buffer.flip();
+        int length = buffer.getInt();
+        if (length <= buffer.remaining()) {
+            return buffer.limit(buffer.position() + length).slice();
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.put(buffer);
+        readFully(data, record, offset + 4 + record.position());
+        if (record.hasRemaining()) {
+            throw new IOException("Truncated record at offset " + offset);
+        }
+        return record.flip();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close catalog data file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * An opened index/data file pair. Replaced as a whole on reload.
+     */
+    private record Snapshot(LongBuffer entries, int count, FileChannel data) {
+
+        long find(long gtin) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long key = entries.get(2 * mid);
+                if (key < gtin) {
+                    low = mid + 1;
+                } else if (key > gtin) {
+                    high = mid - 1;
+                } else {
+                    return entries.get(2 * mid + 1);
+                }
+            }
+            return -1;
+        }
+    }
+}
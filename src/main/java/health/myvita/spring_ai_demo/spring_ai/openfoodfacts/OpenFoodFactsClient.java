@@ -0,0 +1,181 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import health.myvita.spring_ai_demo.spring_ai.config.OpenFoodFactsClientProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * HTTP client for OpenFoodFacts API v2.
+ *
+ * Uses a pooled Apache HttpClient with keep-alive, connect/read timeouts and transparent gzip.
+ * Headers are set once on the client rather than per request. Transient failures (I/O errors,
+ * 429 and 5xx) are retried with full-jitter exponential backoff; 404 means "not found".
+ */
+@Component
+public class OpenFoodFactsClient implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenFoodFactsClient.class);
+
+    private static final String PRODUCT_PATH = "/api/v2/product/";
+
+    private final OpenFoodFactsClientProperties properties;
+    private final OpenFoodFactsProductParser productParser;
+    private final MeterRegistry meterRegistry;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final String productUrlBase;
+    private final Counter retries;
+
+    public OpenFoodFactsClient(OpenFoodFactsClientProperties properties, OpenFoodFactsProductParser productParser,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.productParser = productParser;
+        this.meterRegistry = meterRegistry;
+
+        Timeout connectTimeout = Timeout.of(properties.getConnectTimeout());
+        Timeout readTimeout = Timeout.of(properties.getReadTimeout());
+
+        // Single upstream host, so the per-route limit is the pool size
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(readTimeout)
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        // Content compression (Accept-Encoding: gzip + decoding) is on by default in HttpClient 5
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setUserAgent(properties.getUserAgent())
+                .setDefaultHeaders(List.of(new BasicHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)))
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(connectTimeout)
+                        .setResponseTimeout(readTimeout)
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getIdleTimeout()))
+                // Retries are handled below so they can back off and be counted
+                .disableAutomaticRetries()
+                .build();
+
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        this.productUrlBase = stripTrailingSlash(properties.getBaseUrl()) + PRODUCT_PATH;
+        this.retries = meterRegistry.counter("openfoodfacts.client.retries");
+
+        meterRegistry.gauge("openfoodfacts.client.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased());
+        meterRegistry.gauge("openfoodfacts.client.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable());
+        meterRegistry.gauge("openfoodfacts.client.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending());
+        meterRegistry.gauge("openfoodfacts.client.pool.max", connectionManager, cm -> cm.getTotalStats().getMax());
+    }
+
+    /**
+     * Fetches a product by barcode.
+     *
+     * @param barcode Product barcode
+     * @return ProductInfo, or null if OpenFoodFacts does not know the product
+     * @throws RestClientException if the request still fails after all retries
+     */
+    public BarcodeAnalysisResponse.ProductInfo fetchProduct(String barcode) {
+        String url = productUrlBase + barcode;
+        int maxAttempts = Math.max(1, properties.getMaxAttempts());
+
+        for (int attempt = 1; ; attempt++) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "error";
+            try {
+                // Stream the body into the field-selective parser instead of buffering the whole document
+                BarcodeAnalysisResponse.ProductInfo productInfo = restTemplate.execute(url, HttpMethod.GET, null,
+                        response -> productParser.parse(response.getBody(), barcode));
+                outcome = productInfo != null ? "found" : "not_found";
+                return productInfo;
+
+            } catch (HttpClientErrorException.NotFound e) {
+                // API v2 answers unknown barcodes with a 404
+                outcome = "not_found";
+                return null;
+
+            } catch (HttpStatusCodeException e) {
+                outcome = e.getStatusCode().is5xxServerError() ? "server_error" : "client_error";
+                boolean retryable = e.getStatusCode().is5xxServerError() || e.getStatusCode().value() == 429;
+                if (!retryable || attempt >= maxAttempts) {
+                    throw e;
+                }
+                logger.warn("OpenFoodFacts returned {} for barcode {} (attempt {}/{})", e.getStatusCode().value(), barcode, attempt, maxAttempts);
+
+            } catch (ResourceAccessException e) {
+                outcome = "io_error";
+                // A malformed body will not get better on retry
+                if (e.getCause() instanceof JsonProcessingException || attempt >= maxAttempts) {
+                    throw e;
+                }
+                logger.warn("I/O error calling OpenFoodFacts for barcode {} (attempt {}/{}): {}", barcode, attempt, maxAttempts, e.getMessage());
+
+            } finally {
+                sample.stop(meterRegistry.timer("openfoodfacts.client.requests", "outcome", outcome));
+            }
+
+            retries.increment();
+            sleepBeforeRetry(attempt);
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * Full jitter: a random delay between zero and the exponential backoff for this attempt.
+     */
+    private void sleepBeforeRetry(int attempt) {
+        long cap = properties.getMaxBackoff().toMillis();
+        long exponential = properties.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20);
+        long delay = ThreadLocalRandom.current().nextLong(Math.min(cap, exponential) + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while waiting to retry OpenFoodFacts request");
+        }
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -0,0 +1,595 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import health.myvita.spring_ai_demo.spring_ai.config.LocalCatalogProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Builds the local OpenFoodFacts catalog read by {@link LocalProductCatalog}.
+ *
+ * Accepts the official JSONL or CSV/TSV exports (optionally gzipped). Only the fields used by
+ * {@link OpenFoodFactsProductMapper} are kept. Delta files are appended to the existing data file
+ * and merged into a fresh index, so nightly refreshes do not need a full rebuild. The versions a
+ * delta supersedes stay in the data file until they make up barcode.local-catalog.compaction-dead-ratio
+ * of it; the file is then rewritten with only the live records, in index order.
+ */
+@Component
+public class OpenFoodFactsDumpImporter implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenFoodFactsDumpImporter.class);
+
+    // Top-level text fields read by transformToProductInfo (nutrition_grades doubles as the CSV nutriscore column)
+    private static final String[] TEXT_FIELDS = {
+        "product_name", "brands", "categories", "ingredients_text", "nutrition_grades", "ecoscore_grade"
+    };
+    private static final String[] TAG_FIELDS = { "additives_tags", "allergens_tags", "labels_tags" };
+    private static final String[] NUTRIMENT_FIELDS = {
+        "energy-kcal_100g", "proteins_100g", "carbohydrates_100g", "sugars_100g", "fat_100g",
+        "saturated-fat_100g", "fiber_100g", "salt_100g", "sodium_100g"
+    };
+
+    // CSV export column names that differ from the JSON field names
+    private static final Map<String, String> CSV_ALIASES = Map.of(
+        "nutriscore_grade", "nutrition_grades",
+        "nutrition_grade_fr", "nutrition_grades",
+        "allergens", "allergens_tags"
+    );
+
+    private final LocalCatalogProperties properties;
+    private final LocalProductCatalog catalog;
+    private final OpenFoodFactsProductMapper productMapper;
+    private final ObjectMapper objectMapper;
+
+    public OpenFoodFactsDumpImporter(LocalCatalogProperties properties, LocalProductCatalog catalog,
+                                     OpenFoodFactsProductMapper productMapper, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.catalog = catalog;
+        this.productMapper = productMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Imports the configured dump at startup if the catalog has not been built yet.
+     */
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!properties.isEnabled() || properties.getImportFile() == null || properties.getImportFile().isBlank()) {
+            return;
+        }
+        if (Files.exists(catalogDirectory().resolve(LocalProductCatalog.INDEX_FILE))) {
+            logger.info("Local OpenFoodFacts catalog already present, skipping import of {}", properties.getImportFile());
+            return;
+        }
+        importDump(Paths.get(properties.getImportFile()));
+    }
+
+    /**
+     * Picks up delta files dropped into the inbox directory.
+     */
+    @Scheduled(fixedDelayString = "${barcode.local-catalog.delta-poll-interval:5m}")
+    public void applyPendingDeltas() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Path inbox = Paths.get(properties.getDeltaInbox());
+        if (!Files.isDirectory(inbox)) {
+            return;
+        }
+
+        List<Path> deltas;
+        try (Stream<Path> files = Files.list(inbox)) {
+            deltas = files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            logger.error("Failed to list delta inbox {}: {}", inbox, e.getMessage());
+            return;
+        }
+
+        for (Path delta : deltas) {
+            String outcome = "applied";
+            try {
+                applyDelta(delta);
+            } catch (Exception e) {
+                logger.error("Failed to apply OpenFoodFacts delta {}: {}", delta, e.getMessage());
+                outcome = "failed";
+            }
+            try {
+                Path target = inbox.resolve(outcome);
+                Files.createDirectories(target);
+                Files.move(delta, target.resolve(delta.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                logger.error("Failed to move delta {} out of the inbox: {}", delta, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the catalog from a full export, replacing any existing one.
+     *
+     * @param dump JSONL or CSV/TSV export, optionally gzipped
+     * @return counts of imported and skipped products
+     */
+    public synchronized ImportResult importDump(Path dump) throws IOException {
+        long started = System.currentTimeMillis();
+        Path directory = catalogDirectory();
+        Files.createDirectories(directory);
+
+        Path tempData = directory.resolve(LocalProductCatalog.DATA_FILE + ".tmp");
+        IndexEntries entries = new IndexEntries(1 << 16);
+        int[] counts;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempData.toFile()), 1 << 16))) {
+            out.writeInt(LocalProductCatalog.DATA_MAGIC);
+            out.writeInt(LocalProductCatalog.FORMAT_VERSION);
+            counts = appendRecords(dump, out, LocalProductCatalog.DATA_HEADER_BYTES, entries);
+        }
+
+        Path tempIndex = writeIndex(directory, entries);
+        Files.move(tempData, directory.resolve(LocalProductCatalog.DATA_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(tempIndex, directory.resolve(LocalProductCatalog.INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        catalog.reload();
+
+        ImportResult result = new ImportResult(counts[0], counts[1], entries.size());
+        logger.info("Imported OpenFoodFacts dump {} in {} ms: {}", dump, System.currentTimeMillis() - started, result);
+        return result;
+    }
+
+    /**
+     * Applies a delta export on top of the existing catalog. Products in the delta replace
+     * earlier versions; everything else is kept. Compacts the data file when superseded records
+     * have piled up. Falls back to a full import if there is no catalog yet.
+     *
+     * @param delta JSONL or CSV/TSV export, optionally gzipped
+     * @return counts of imported and skipped products
+     */
+    public synchronized ImportResult applyDelta(Path delta) throws IOException {
+        Path directory = catalogDirectory();
+        Path dataFile = directory.resolve(LocalProductCatalog.DATA_FILE);
+        Path indexFile = directory.resolve(LocalProductCatalog.INDEX_FILE);
+        if (!Files.exists(dataFile) || !Files.exists(indexFile)) {
+            return importDump(delta);
+        }
+
+        long started = System.currentTimeMillis();
+        IndexEntries entries;
+        try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            LongBuffer existing = LocalProductCatalog.mapIndex(indexChannel);
+            entries = new IndexEntries(existing.capacity() / 2 + (1 << 12));
+            for (int i = 0; i < existing.capacity(); i += 2) {
+                entries.add(existing.get(i), existing.get(i + 1));
+            }
+        }
+        int before = entries.size();
+
+        // New records go after everything the current index points at, so the live index stays valid
+        int[] counts;
+        long dataSize = Files.size(dataFile);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile.toFile(), true), 1 << 16))) {
+            counts = appendRecords(delta, out, dataSize, entries);
+        }
+
+        entries.sortAndDeduplicate();
+        long payloadBytes = Files.size(dataFile) - LocalProductCatalog.DATA_HEADER_BYTES;
+        long liveBytes = liveRecordBytes(dataFile, entries);
+        double deadRatio = payloadBytes > 0 ? (double) (payloadBytes - liveBytes) / payloadBytes : 0;
+        boolean compacted = deadRatio >= properties.getCompactionDeadRatio();
+        if (compacted) {
+            // Moves the new data file into place; the open snapshot keeps reading the old one until reload
+            compact(directory, dataFile, entries);
+        }
+
+        Path tempIndex = writeIndex(directory, entries);
+        Files.move(tempIndex, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        catalog.reload();
+
+        ImportResult result = new ImportResult(counts[0], counts[1], entries.size());
+        logger.info("Applied OpenFoodFacts delta {} in {} ms: {} ({} new barcodes, {}% of the data file superseded{})",
+                delta, System.currentTimeMillis() - started, result, entries.size() - before,
+                Math.round(deadRatio * 100), compacted ? ", compacted" : "");
+        return result;
+    }
+
+    /**
+     * Total size of the records the index points at, length prefixes included.
+     *
+     * @param entries Sorted and de-duplicated index entries
+     */
+    private static long liveRecordBytes(Path dataFile, IndexEntries entries) throws IOException {
+        // Read the length prefixes in file order rather than jumping around by GTIN
+        long[] offsets = Arrays.copyOf(entries.offsets, entries.size());
+        Arrays.sort(offsets);
+        long total = 0;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        try (FileChannel data = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            for (long offset : offsets) {
+                total += 4 + readLength(data, offset, length);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Rewrites the data file with only the live records, in index order, and points the entries
+     * at their new offsets.
+     *
+     * @param entries Sorted and de-duplicated index entries; their offsets are updated
+     */
+    private static void compact(Path directory, Path dataFile, IndexEntries entries) throws IOException {
+        Path tempData = directory.resolve(LocalProductCatalog.DATA_FILE + ".tmp");
+        try (FileChannel in = FileChannel.open(dataFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tempData, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(LocalProductCatalog.DATA_HEADER_BYTES)
+                    .putInt(LocalProductCatalog.DATA_MAGIC)
+                    .putInt(LocalProductCatalog.FORMAT_VERSION)
+                    .flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+
+            long position = LocalProductCatalog.DATA_HEADER_BYTES;
+            ByteBuffer length = ByteBuffer.allocate(4);
+            for (int i = 0; i < entries.size(); i++) {
+                long offset = entries.offsets[i];
+                long recordBytes = 4L + readLength(in, offset, length);
+                long copied = 0;
+                while (copied < recordBytes) {
+                    long transferred = in.transferTo(offset + copied, recordBytes - copied, out);
+                    if (transferred <= 0) {
+                        throw new IOException("Truncated record at offset " + offset);
+                    }
+                    copied += transferred;
+                }
+                entries.offsets[i] = position;
+                position += recordBytes;
+            }
+        }
+        Files.move(tempData, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int readLength(FileChannel data, long offset, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Truncated record at offset " + offset);
+            }
+        }
+        return buffer.getInt(0);
+    }
+
+    /**
+     * Streams products from an export into the data file.
+     *
+     * @return {imported, skipped}
+     */
+    private int[] appendRecords(Path source, DataOutputStream out, long startOffset, IndexEntries entries) throws IOException {
+        String name = source.getFileName().toString().toLowerCase();
+        boolean gzipped = name.endsWith(".gz");
+        if (gzipped) {
+            name = name.substring(0, name.length() - 3);
+        }
+        boolean csv = name.endsWith(".csv") || name.endsWith(".tsv");
+
+        int imported = 0;
+        int skipped = 0;
+        long offset = startOffset;
+        try (InputStream raw = Files.newInputStream(source);
+             InputStream in = gzipped ? new GZIPInputStream(raw, 1 << 16) : raw;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+
+            CsvHeader header = null;
+            if (csv) {
+                String headerLine = reader.readLine();
+                if (headerLine == null) {
+                    return new int[] { 0, 0 };
+                }
+                header = new CsvHeader(headerLine);
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                BarcodeAnalysisResponse.ProductInfo product;
+                try {
+                    product = csv ? fromCsv(header, line) : fromJson(line);
+                } catch (Exception e) {
+                    product = null;
+                }
+                long gtin = product != null ? LocalProductCatalog.toGtin(product.getBarcode()) : -1;
+                if (gtin < 0) {
+                    skipped++;
+                    continue;
+                }
+
+                byte[] record = ProductRecordCodec.encode(product);
+                out.writeInt(record.length);
+                out.write(record);
+                entries.add(gtin, offset);
+                offset += 4 + record.length;
+                imported++;
+
+                if (imported % 500_000 == 0) {
+                    logger.info("Imported {} products from {}", imported, source.getFileName());
+                }
+            }
+        }
+        return new int[] { imported, skipped };
+    }
+
+    private BarcodeAnalysisResponse.ProductInfo fromJson(String line) throws IOException {
+        JsonNode root = objectMapper.readTree(line);
+        // Accept both raw dump documents and API envelopes ({"code": ..., "product": {...}})
+        JsonNode product = root.path("product").isObject() ? root.get("product") : root;
+        String barcode = root.path("code").asText(product.path("code").asText(null));
+        if (barcode == null) {
+            return null;
+        }
+        return productMapper.transformToProductInfo(product, barcode.trim());
+    }
+
+    private BarcodeAnalysisResponse.ProductInfo fromCsv(CsvHeader header, String line) {
+        List<String> values = header.split(line);
+        String barcode = header.value(values, "code");
+        if (barcode == null) {
+            return null;
+        }
+
+        // Rebuild the JSON shape the mapper expects from the flat columns
+        ObjectNode product = objectMapper.createObjectNode();
+        for (String field : TEXT_FIELDS) {
+            String value = header.value(values, field);
+            if (value != null) {
+                product.put(field, value);
+            }
+        }
+        String nova = header.value(values, "nova_group");
+        if (nova != null) {
+            product.put("nova_group", (int) Double.parseDouble(nova));
+        }
+        for (String field : TAG_FIELDS) {
+            String value = header.value(values, field);
+            if (value != null) {
+                ArrayNode tags = product.putArray(field);
+                for (String tag : value.split(",")) {
+                    if (!tag.isBlank()) {
+                        tags.add(tag.trim());
+                    }
+                }
+            }
+        }
+        ObjectNode nutriments = product.putObject("nutriments");
+        for (String field : NUTRIMENT_FIELDS) {
+            String value = header.value(values, field);
+            if (value != null) {
+                try {
+                    nutriments.put(field, Double.parseDouble(value));
+                } catch (NumberFormatException ignored) {
+                    // Leave malformed numbers out, the same as a missing value
+                }
+            }
+        }
+        return productMapper.transformToProductInfo(product, barcode.trim());
+    }
+
+    private Path writeIndex(Path directory, IndexEntries entries) throws IOException {
+        entries.sortAndDeduplicate();
+        Path tempIndex = directory.resolve(LocalProductCatalog.INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempIndex.toFile()), 1 << 16))) {
+            out.writeInt(LocalProductCatalog.INDEX_MAGIC);
+            out.writeInt(LocalProductCatalog.FORMAT_VERSION);
+            out.writeLong(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                out.writeLong(entries.gtins[i]);
+                out.writeLong(entries.offsets[i]);
+            }
+        }
+        return tempIndex;
+    }
+
+    private Path catalogDirectory() {
+        return Paths.get(properties.getDirectory());
+    }
+
+    /**
+     * Outcome of an import or delta.
+     *
+     * @param imported products written
+     * @param skipped lines without a usable barcode or that failed to parse
+     * @param catalogSize distinct barcodes in the catalog afterwards
+     */
+    public record ImportResult(int imported, int skipped, int catalogSize) {}
+
+    /**
+     * Column lookup for the CSV/TSV exports. The official export is tab-separated;
+     * comma-separated files with quoted fields are accepted as well.
+     */
+    private static final class CsvHeader {
+        private final char delimiter;
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        CsvHeader(String headerLine) {
+            this.delimiter = headerLine.indexOf('\t') >= 0 ? '\t' : ',';
+            List<String> names = split(headerLine);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i).trim();
+                columns.putIfAbsent(CSV_ALIASES.getOrDefault(name, name), i);
+            }
+        }
+
+        String value(List<String> values, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= values.size()) {
+                return null;
+            }
+            String value = values.get(index);
+            return value.isEmpty() ? null : value;
+        }
+
+        List<String> split(String line) {
+            List<String> values = new ArrayList<>();
+            if (delimiter == '\t') {
+                int start = 0;
+                int end;
+                while ((end = line.indexOf('\t', start)) >= 0) {
+                    values.add(line.substring(start, end));
+                    start = end + 1;
+                }
+                values.add(line.substring(start));
+                return values;
+            }
+
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == delimiter) {
+                    values.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            values.add(current.toString());
+            return values;
+        }
+    }
+
+    /**
+     * Growable parallel arrays of (gtin, offset) so millions of entries stay unboxed.
+     */
+    private static final class IndexEntries {
+        private long[] gtins;
+        private long[] offsets;
+        private int size;
+
+        IndexEntries(int capacity) {
+            this.gtins = new long[capacity];
+            this.offsets = new long[capacity];
+        }
+
+        void add(long gtin, long offset) {
+            if (size == gtins.length) {
+                gtins = Arrays.copyOf(gtins, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            gtins[size] = gtin;
+            offsets[size] = offset;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Sorts by (gtin, offset) and keeps the last offset per gtin. Compaction keeps one record
+         * per gtin and records are otherwise only appended, so the highest offset is always the
+         * most recent version of a product.
+         */
+        void sortAndDeduplicate() {
+            quickSort(0, size - 1);
+            int write = 0;
+            for (int read = 0; read < size; read++) {
+                if (read + 1 < size && gtins[read + 1] == gtins[read]) {
+                    continue;
+                }
+                gtins[write] = gtins[read];
+                offsets[write] = offsets[read];
+                write++;
+            }
+            size = write;
+        }
+
+        private void quickSort(int low, int high) {
+            while (high - low > 16) {
+                int mid = (low + high) >>> 1;
+                long pivotGtin = gtins[mid];
+                long pivotOffset = offsets[mid];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(i, pivotGtin, pivotOffset) < 0) i++;
+                    while (compare(j, pivotGtin, pivotOffset) > 0) j--;
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                // Recurse into the smaller half to bound stack depth
+                if (j - low < high - i) {
+                    quickSort(low, j);
+                    low = i;
+                } else {
+                    quickSort(i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int j = i; j > low && compare(j, gtins[j - 1], offsets[j - 1]) < 0; j--) {
+                    swap(j, j - 1);
+                }
+            }
+        }
+
+        private int compare(int index, long gtin, long offset) {
+            int byGtin = Long.compare(gtins[index], gtin);
+            return byGtin != 0 ? byGtin : Long.compare(offsets[index], offset);
+        }
+
+        private void swap(int a, int b) {
+            long gtin = gtins[a];
+            gtins[a] = gtins[b];
+            gtins[b] = gtin;
+            long offset = offsets[a];
+            offsets[a] = offsets[b];
+            offsets[b] = offset;
+        }
+    }
+}
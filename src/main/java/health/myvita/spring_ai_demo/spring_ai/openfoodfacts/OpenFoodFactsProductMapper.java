@@ -0,0 +1,99 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps OpenFoodFacts product documents to our ProductInfo DTO.
+ * Shared by the remote API lookup and the local dump importer so both produce identical products.
+ */
+@Component
+public class OpenFoodFactsProductMapper {
+    
+    // Public product page; the barcode is appended
+    public static final String PRODUCT_URL_BASE = "https://world.openfoodfacts.org/product/";
+    
+    /**
+     * Transforms OpenFoodFacts JSON data to our ProductInfo DTO.
+     * 
+     * @param product The "product" object of an OpenFoodFacts document
+     * @param barcode Product barcode
+     * @return ProductInfo populated from the document
+     */
+    public BarcodeAnalysisResponse.ProductInfo transformToProductInfo(JsonNode product, String barcode) {
+        BarcodeAnalysisResponse.ProductInfo productInfo = new BarcodeAnalysisResponse.ProductInfo();
+        
+        // Basic product information
+        productInfo.setName(getJsonValueAsString(product, "product_name", "Unknown Product"));
+        productInfo.setBrand(getJsonValueAsString(product, "brands", "Unknown Brand"));
+        productInfo.setCategories(getJsonValueAsString(product, "categories", "Unknown"));
+        productInfo.setIngredientsText(getJsonValueAsString(product, "ingredients_text", "Not available"));
+        productInfo.setBarcode(barcode);
+        productInfo.setOpenFoodFactsUrl(PRODUCT_URL_BASE + barcode);
+        
+        // Nutrition information
+        BarcodeAnalysisResponse.NutritionPer100g nutrition = new BarcodeAnalysisResponse.NutritionPer100g();
+        JsonNode nutriments = product.get("nutriments");
+        if (nutriments != null) {
+            nutrition.setEnergyKcal(getJsonValueAsDouble(nutriments, "energy-kcal_100g"));
+            nutrition.setProteinsG(getJsonValueAsDouble(nutriments, "proteins_100g"));
+            nutrition.setCarbohydratesG(getJsonValueAsDouble(nutriments, "carbohydrates_100g"));
+            nutrition.setSugarsG(getJsonValueAsDouble(nutriments, "sugars_100g"));
+            nutrition.setFatG(getJsonValueAsDouble(nutriments, "fat_100g"));
+            nutrition.setSaturatedFatG(getJsonValueAsDouble(nutriments, "saturated-fat_100g"));
+            nutrition.setFiberG(getJsonValueAsDouble(nutriments, "fiber_100g"));
+            nutrition.setSaltG(getJsonValueAsDouble(nutriments, "salt_100g"));
+            nutrition.setSodiumMg(getJsonValueAsDouble(nutriments, "sodium_100g"));
+        }
+        productInfo.setNutritionPer100g(nutrition);
+        
+        // Quality scores
+        BarcodeAnalysisResponse.QualityScores qualityScores = new BarcodeAnalysisResponse.QualityScores();
+        qualityScores.setNutriscoreGrade(getJsonValueAsString(product, "nutrition_grades", "Not available"));
+        qualityScores.setNovaGroup(getJsonValueAsInteger(product, "nova_group"));
+        qualityScores.setEcoscoreGrade(getJsonValueAsString(product, "ecoscore_grade", "Not available"));
+        productInfo.setQualityScores(qualityScores);
+        
+        // Additional information
+        productInfo.setAdditives(extractListFromJsonArray(product, "additives_tags"));
+        productInfo.setAllergens(extractListFromJsonArray(product, "allergens_tags"));
+        productInfo.setLabels(extractListFromJsonArray(product, "labels_tags"));
+        
+        return productInfo;
+    }
+    
+    // Helper methods for JSON parsing
+    private String getJsonValueAsString(JsonNode node, String fieldName, String defaultValue) {
+        JsonNode field = node.get(fieldName);
+        return field != null && !field.isNull() ? field.asText() : defaultValue;
+    }
+    
+    private Double getJsonValueAsDouble(JsonNode node, String fieldName) {
+        JsonNode field = node.get(fieldName);
+        return field != null && !field.isNull() ? field.asDouble() : null;
+    }
+    
+    private Integer getJsonValueAsInteger(JsonNode node, String fieldName) {
+        JsonNode field = node.get(fieldName);
+        return field != null && !field.isNull() ? field.asInt() : null;
+    }
+    
+    private List<String> extractListFromJsonArray(JsonNode node, String fieldName) {
+        JsonNode arrayNode = node.get(fieldName);
+        List<String> result = new ArrayList<>();
+        
+        if (arrayNode != null && arrayNode.isArray()) {
+            for (JsonNode item : arrayNode) {
+                result.add(item.asText());
+            }
+        }
+        
+        return result;
+    }
+}
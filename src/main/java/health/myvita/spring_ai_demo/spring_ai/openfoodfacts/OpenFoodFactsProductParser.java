@@ -0,0 +1,206 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token-level reader for OpenFoodFacts API v2 product responses.
+ *
+ * Product documents are often hundreds of KB (images, per-language fields, ingredient trees)
+ * while we only use about 20 fields. This reads the response stream once, copies the fields
+ * {@link OpenFoodFactsProductMapper#transformToProductInfo} uses straight into a ProductInfo,
+ * and skips everything else without materializing a tree. Defaults and value coercion follow
+ * readTree + transformToProductInfo so both paths produce the same ProductInfo.
+ */
+@Component
+public class OpenFoodFactsProductParser {
+
+    private final JsonFactory jsonFactory;
+
+    public OpenFoodFactsProductParser(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Parses an API v2 response body.
+     *
+     * @param body Response body stream
+     * @param barcode Product barcode
+     * @return ProductInfo, or null if the response has no product or a status other than 1
+     */
+    public BarcodeAnalysisResponse.ProductInfo parse(InputStream body, String barcode) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            int status = 0;
+            BarcodeAnalysisResponse.ProductInfo productInfo = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("status".equals(field)) {
+                    status = asInt(parser, value);
+                } else if ("product".equals(field) && value == JsonToken.START_OBJECT) {
+                    productInfo = parseProduct(parser, barcode);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return status == 1 ? productInfo : null;
+        }
+    }
+
+    /**
+     * Reads a product object; the parser must be positioned on its START_OBJECT.
+     */
+    private BarcodeAnalysisResponse.ProductInfo parseProduct(JsonParser parser, String barcode) throws IOException {
+        BarcodeAnalysisResponse.ProductInfo productInfo = new BarcodeAnalysisResponse.ProductInfo();
+        BarcodeAnalysisResponse.NutritionPer100g nutrition = new BarcodeAnalysisResponse.NutritionPer100g();
+        BarcodeAnalysisResponse.QualityScores qualityScores = new BarcodeAnalysisResponse.QualityScores();
+
+        String name = null;
+        String brand = null;
+        String categories = null;
+        String ingredients = null;
+        String nutriscore = null;
+        String ecoscore = null;
+        List<String> additives = null;
+        List<String> allergens = null;
+        List<String> labels = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "product_name" -> name = asText(parser, value);
+                case "brands" -> brand = asText(parser, value);
+                case "categories" -> categories = asText(parser, value);
+                case "ingredients_text" -> ingredients = asText(parser, value);
+                case "nutrition_grades" -> nutriscore = asText(parser, value);
+                case "ecoscore_grade" -> ecoscore = asText(parser, value);
+                case "nova_group" -> qualityScores.setNovaGroup(value == JsonToken.VALUE_NULL ? null : asInt(parser, value));
+                case "additives_tags" -> additives = asTextList(parser, value);
+                case "allergens_tags" -> allergens = asTextList(parser, value);
+                case "labels_tags" -> labels = asTextList(parser, value);
+                case "nutriments" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        parseNutriments(parser, nutrition);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        productInfo.setName(name != null ? name : "Unknown Product");
+        productInfo.setBrand(brand != null ? brand : "Unknown Brand");
+        productInfo.setCategories(categories != null ? categories : "Unknown");
+        productInfo.setIngredientsText(ingredients != null ? ingredients : "Not available");
+        productInfo.setBarcode(barcode);
+        productInfo.setOpenFoodFactsUrl(OpenFoodFactsProductMapper.PRODUCT_URL_BASE + barcode);
+        productInfo.setNutritionPer100g(nutrition);
+
+        qualityScores.setNutriscoreGrade(nutriscore != null ? nutriscore : "Not available");
+        qualityScores.setEcoscoreGrade(ecoscore != null ? ecoscore : "Not available");
+        productInfo.setQualityScores(qualityScores);
+
+        productInfo.setAdditives(additives != null ? additives : new ArrayList<>());
+        productInfo.setAllergens(allergens != null ? allergens : new ArrayList<>());
+        productInfo.setLabels(labels != null ? labels : new ArrayList<>());
+        return productInfo;
+    }
+
+    private void parseNutriments(JsonParser parser, BarcodeAnalysisResponse.NutritionPer100g nutrition) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            // Most of the nutriments object is *_serving, *_unit, *_value etc.; only *_100g is interesting
+            if (!field.endsWith("_100g")) {
+                parser.skipChildren();
+                continue;
+            }
+            Double amount = value == JsonToken.VALUE_NULL ? null : asDouble(parser, value);
+            switch (field) {
+                case "energy-kcal_100g" -> nutrition.setEnergyKcal(amount);
+                case "proteins_100g" -> nutrition.setProteinsG(amount);
+                case "carbohydrates_100g" -> nutrition.setCarbohydratesG(amount);
+                case "sugars_100g" -> nutrition.setSugarsG(amount);
+                case "fat_100g" -> nutrition.setFatG(amount);
+                case "saturated-fat_100g" -> nutrition.setSaturatedFatG(amount);
+                case "fiber_100g" -> nutrition.setFiberG(amount);
+                case "salt_100g" -> nutrition.setSaltG(amount);
+                case "sodium_100g" -> nutrition.setSodiumMg(amount);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    // The coercions below mirror JsonNode.asText/asInt/asDouble so both parsing paths agree
+
+    private static String asText(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value.isScalarValue()) {
+            return parser.getText();
+        }
+        // Objects and arrays read as "" through JsonNode.asText
+        parser.skipChildren();
+        return "";
+    }
+
+    private static int asInt(JsonParser parser, JsonToken value) throws IOException {
+        if (value.isNumeric()) {
+            return parser.getValueAsInt();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            return parser.getValueAsInt(0);
+        }
+        if (value == JsonToken.VALUE_TRUE) {
+            return 1;
+        }
+        parser.skipChildren();
+        return 0;
+    }
+
+    private static double asDouble(JsonParser parser, JsonToken value) throws IOException {
+        if (value.isNumeric()) {
+            return parser.getValueAsDouble();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            return parser.getValueAsDouble(0.0);
+        }
+        if (value == JsonToken.VALUE_TRUE) {
+            return 1.0;
+        }
+        parser.skipChildren();
+        return 0.0;
+    }
+
+    private static List<String> asTextList(JsonParser parser, JsonToken value) throws IOException {
+        List<String> result = new ArrayList<>();
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return result;
+        }
+        JsonToken item;
+        while ((item = parser.nextToken()) != JsonToken.END_ARRAY) {
+            // NullNode.asText() is "null"
+            result.add(item == JsonToken.VALUE_NULL ? "null" : asText(parser, item));
+        }
+        return result;
+    }
+}
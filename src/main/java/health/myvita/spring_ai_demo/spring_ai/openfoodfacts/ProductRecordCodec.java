@@ -0,0 +1,174 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the ProductInfo fields we keep from OpenFoodFacts.
+ *
+ * Layout (all lengths are unsigned varints):
+ * barcode, name, brand, categories, ingredients text, nine nutrition doubles (NaN = missing),
+ * nutriscore, NOVA group (0 = missing), ecoscore, then the additives, allergens and labels lists.
+ * Strings are written as a varint byte length + 1 (0 = null) followed by UTF-8 bytes.
+ */
+final class ProductRecordCodec {
+
+    private ProductRecordCodec() {}
+
+    static byte[] encode(BarcodeAnalysisResponse.ProductInfo product) {
+        Writer out = new Writer();
+        out.string(product.getBarcode());
+        out.string(product.getName());
+        out.string(product.getBrand());
+        out.string(product.getCategories());
+        out.string(product.getIngredientsText());
+
+        BarcodeAnalysisResponse.NutritionPer100g n = product.getNutritionPer100g();
+        if (n == null) {
+            n = new BarcodeAnalysisResponse.NutritionPer100g();
+        }
+        out.number(n.getEnergyKcal());
+        out.number(n.getProteinsG());
+        out.number(n.getCarbohydratesG());
+        out.number(n.getSugarsG());
+        out.number(n.getFatG());
+        out.number(n.getSaturatedFatG());
+        out.number(n.getFiberG());
+        out.number(n.getSaltG());
+        out.number(n.getSodiumMg());
+
+        BarcodeAnalysisResponse.QualityScores q = product.getQualityScores();
+        if (q == null) {
+            q = new BarcodeAnalysisResponse.QualityScores();
+        }
+        out.string(q.getNutriscoreGrade());
+        out.varint(q.getNovaGroup() != null && q.getNovaGroup() > 0 ? q.getNovaGroup() : 0);
+        out.string(q.getEcoscoreGrade());
+
+        out.list(product.getAdditives());
+        out.list(product.getAllergens());
+        out.list(product.getLabels());
+        return out.toByteArray();
+    }
+
+    static BarcodeAnalysisResponse.ProductInfo decode(ByteBuffer in) {
+        BarcodeAnalysisResponse.ProductInfo product = new BarcodeAnalysisResponse.ProductInfo();
+        product.setBarcode(readString(in));
+        product.setName(readString(in));
+        product.setBrand(readString(in));
+        product.setCategories(readString(in));
+        product.setIngredientsText(readString(in));
+        product.setOpenFoodFactsUrl(OpenFoodFactsProductMapper.PRODUCT_URL_BASE + product.getBarcode());
+
+        BarcodeAnalysisResponse.NutritionPer100g n = new BarcodeAnalysisResponse.NutritionPer100g();
+        n.setEnergyKcal(readNumber(in));
+        n.setProteinsG(readNumber(in));
+        n.setCarbohydratesG(readNumber(in));
+        n.setSugarsG(readNumber(in));
+        n.setFatG(readNumber(in));
+        n.setSaturatedFatG(readNumber(in));
+        n.setFiberG(readNumber(in));
+        n.setSaltG(readNumber(in));
+        n.setSodiumMg(readNumber(in));
+        product.setNutritionPer100g(n);
+
+        BarcodeAnalysisResponse.QualityScores q = new BarcodeAnalysisResponse.QualityScores();
+        q.setNutriscoreGrade(readString(in));
+        int nova = readVarint(in);
+        q.setNovaGroup(nova > 0 ? nova : null);
+        q.setEcoscoreGrade(readString(in));
+        product.setQualityScores(q);
+
+        product.setAdditives(readList(in));
+        product.setAllergens(readList(in));
+        product.setLabels(readList(in));
+        return product;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static Double readNumber(ByteBuffer in) {
+        double value = in.getDouble();
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static List<String> readList(ByteBuffer in) {
+        int size = readVarint(in);
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Growable byte buffer with the primitive writers used by encode().
+     */
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer() {
+            super(512);
+        }
+
+        void varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1);
+            write(bytes, 0, bytes.length);
+        }
+
+        void number(Double value) {
+            long bits = Double.doubleToRawLongBits(value != null ? value : Double.NaN);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (bits >>> shift));
+            }
+        }
+
+        void list(List<String> values) {
+            if (values == null) {
+                varint(0);
+                return;
+            }
+            varint(values.size());
+            for (String value : values) {
+                string(value);
+            }
+        }
+    }
+}
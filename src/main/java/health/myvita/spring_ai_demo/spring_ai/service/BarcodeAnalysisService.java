@@ -4,18 +4,28 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.RestClientException;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import health.myvita.spring_ai_demo.spring_ai.cache.PopularBarcodeTracker;
+import health.myvita.spring_ai_demo.spring_ai.cache.ProductCache;
+import health.myvita.spring_ai_demo.spring_ai.cache.SingleFlight;
+import health.myvita.spring_ai_demo.spring_ai.config.AnalysisCacheProperties;
 import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+import health.myvita.spring_ai_demo.spring_ai.dto.ProductAssessment;
 import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+import health.myvita.spring_ai_demo.spring_ai.openfoodfacts.LocalProductCatalog;
+import health.myvita.spring_ai_demo.spring_ai.openfoodfacts.OpenFoodFactsClient;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Service for analyzing food products by barcode using OpenFoodFacts API and AI analysis.
@@ -26,21 +36,33 @@ import java.util.List;
 public class BarcodeAnalysisService {
     
     private final ChatClient chatClient;
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final OpenFoodFactsClient openFoodFactsClient;
+    private final ProductCache productCache;
+    private final PopularBarcodeTracker popularBarcodes;
+    private final LocalProductCatalog localCatalog;
+    private final ProductAssessmentService productAssessmentService;
+    private final SingleFlight<String, BarcodeAnalysisResponse.ProductInfo> productFetches;
+    private final SingleFlight<String, String> analyses;
+    private final Cache<String, String> analysisCache;
     
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(BarcodeAnalysisService.class);
     
-    // OpenFoodFacts API base URL
-    private static final String OPENFOODFACTS_API_BASE = "https://world.openfoodfacts.org/api/v2/product/";
-    
     // System prompt for barcode analysis
     private static final String SYSTEM_PROMPT = 
         "You are a professional nutritionist specializing in packaged food analysis. " +
         "Analyze the scanned product information and provide personalized recommendations " +
         "based on the user's health profile. Be accurate, helpful, and focus on actionable advice.";
     
-    public BarcodeAnalysisService(ChatClient.Builder chatClientBuilder) {
+    private static final String ANALYSIS_FALLBACK =
+        "Unable to generate detailed analysis at this time. Please consult with a nutritionist for personalized advice.";
+    
+    // Profile used when a lookup asks for the AI narrative without a user profile
+    private static final UserProfileDto GENERAL_PROFILE = createGeneralProfile();
+    
+    public BarcodeAnalysisService(ChatClient.Builder chatClientBuilder, ProductCache productCache,
+                                  LocalProductCatalog localCatalog, OpenFoodFactsClient openFoodFactsClient,
+                                  ProductAssessmentService productAssessmentService, PopularBarcodeTracker popularBarcodes,
+                                  AnalysisCacheProperties analysisCacheProperties, MeterRegistry meterRegistry) {
         // Configure the chat client for nutritional analysis
         this.chatClient = chatClientBuilder
                 .defaultOptions(OpenAiChatOptions.builder()
@@ -50,8 +72,24 @@ public class BarcodeAnalysisService {
                         .build())
                 .build();
         
-        this.restTemplate = new RestTemplate();
-        this.objectMapper = new ObjectMapper();
+        this.openFoodFactsClient = openFoodFactsClient;
+        this.productCache = productCache;
+        this.localCatalog = localCatalog;
+        this.productAssessmentService = productAssessmentService;
+        this.popularBarcodes = popularBarcodes;
+        this.productFetches = new SingleFlight<>("barcode.product.fetch", meterRegistry);
+        this.analyses = new SingleFlight<>("barcode.nutritional.analysis", meterRegistry);
+        
+        if (analysisCacheProperties.isEnabled()) {
+            this.analysisCache = Caffeine.newBuilder()
+                    .maximumSize(analysisCacheProperties.getMaxSize())
+                    .expireAfterWrite(analysisCacheProperties.getTtl())
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, analysisCache, "barcode.analysis");
+        } else {
+            this.analysisCache = null;
+        }
     }
     
     /**
@@ -73,6 +111,8 @@ public class BarcodeAnalysisService {
                 throw new IllegalArgumentException("Valid user profile is required");
             }
             
+            popularBarcodes.record(barcode);
+            
             // Fetch product data from OpenFoodFacts
             BarcodeAnalysisResponse.ProductInfo productInfo = fetchProductFromOpenFoodFacts(barcode);
             
@@ -92,6 +132,7 @@ public class BarcodeAnalysisService {
             response.setNutritionalAnalysis(nutritionalAnalysis);
             response.setRecommendation(recommendation);
             response.setSource("OpenFoodFacts + AI Analysis");
+            response.setAssessment(productAssessmentService.assess(productInfo));
             
             return response;
             
@@ -102,39 +143,151 @@ public class BarcodeAnalysisService {
     }
     
     /**
-     * Fetches product information from OpenFoodFacts API.
+     * Receives the parts of a streamed scan as soon as each is available.
+     */
+    public interface ScanStreamListener {
+        
+        /**
+         * Product info, rule-based recommendation and assessment, without the AI analysis.
+         */
+        void onProduct(BarcodeAnalysisResponse response) throws IOException;
+        
+        /**
+         * Next piece of the nutritional analysis markdown.
+         */
+        void onAnalysisChunk(String text) throws IOException;
+    }
+    
+    /**
+     * Streaming variant of analyzeProductByBarcode.
+     * 
+     * The product part is handed to the listener as soon as the product is fetched, then the
+     * nutritional analysis follows chunk by chunk as the model produces it. Runs on the calling
+     * thread until the analysis is complete.
+     * 
+     * @param barcode The product barcode
+     * @param userProfile User's health profile for personalization
+     * @param listener Receives the product first, then analysis chunks
+     * @throws IOException if the listener fails; the model call is cancelled
+     */
+    public void streamProductAnalysis(String barcode, UserProfileDto userProfile, ScanStreamListener listener) throws IOException {
+        if (barcode == null || barcode.trim().isEmpty()) {
+            throw new IllegalArgumentException("Barcode cannot be empty");
+        }
+        
+        if (userProfile == null || !userProfile.isValid()) {
+            throw new IllegalArgumentException("Valid user profile is required");
+        }
+        
+        popularBarcodes.record(barcode);
+        
+        BarcodeAnalysisResponse.ProductInfo productInfo = fetchProductFromOpenFoodFacts(barcode);
+        if (productInfo == null) {
+            listener.onProduct(createProductNotFoundResponse(barcode));
+            return;
+        }
+        
+        BarcodeAnalysisResponse response = new BarcodeAnalysisResponse();
+        response.setProductInfo(productInfo);
+        response.setRecommendation(generateRecommendation(productInfo, userProfile));
+        response.setSource("OpenFoodFacts + AI Analysis");
+        response.setAssessment(productAssessmentService.assess(productInfo));
+        listener.onProduct(response);
+        
+        streamNutritionalAnalysis(productInfo, userProfile, listener);
+    }
+    
+    /**
+     * Looks up a product without a user profile.
+     * 
+     * By default nothing is sent to the AI model: the response carries the product info and a
+     * rule-based assessment, so it only costs a catalog/cache lookup. With includeAiAnalysis the
+     * AI narrative for a general adult profile is added as well.
+     * 
+     * @param barcode The product barcode
+     * @param includeAiAnalysis Whether to also request the AI narrative
+     * @return BarcodeAnalysisResponse containing product info and assessment
+     */
+    public BarcodeAnalysisResponse lookupProduct(String barcode, boolean includeAiAnalysis) {
+        if (barcode == null || barcode.trim().isEmpty()) {
+            throw new IllegalArgumentException("Barcode cannot be empty");
+        }
+        
+        popularBarcodes.record(barcode);
+        
+        BarcodeAnalysisResponse.ProductInfo productInfo = fetchProductFromOpenFoodFacts(barcode);
+        if (productInfo == null) {
+            return createProductNotFoundResponse(barcode);
+        }
+        
+        ProductAssessment assessment = productAssessmentService.assess(productInfo);
+        
+        BarcodeAnalysisResponse response = new BarcodeAnalysisResponse();
+        response.setProductInfo(productInfo);
+        response.setAssessment(assessment);
+        response.setRecommendation(generateRecommendation(productInfo, GENERAL_PROFILE));
+        
+        if (includeAiAnalysis) {
+            response.setNutritionalAnalysis(generateNutritionalAnalysis(productInfo, GENERAL_PROFILE));
+            response.setSource("OpenFoodFacts + AI Analysis");
+        } else {
+            response.setNutritionalAnalysis(assessment.getSummary());
+            response.setSource("OpenFoodFacts + Local Assessment");
+        }
+        
+        return response;
+    }
+    
+    /**
+     * Makes sure a product is in the product cache, without counting it as a scan.
+     * Used by the startup warm-up.
+     * 
+     * @param barcode Product barcode
+     * @return true if the product had to be requested from OpenFoodFacts
+     */
+    public boolean warmProductCache(String barcode) {
+        if (localCatalog.lookup(barcode) != null || productCache.get(barcode).isPresent()) {
+            return false;
+        }
+        productFetches.execute(barcode, () -> loadProductFromOpenFoodFacts(barcode));
+        return true;
+    }
+    
+    /**
+     * Fetches product information from the local catalog, then the product cache,
+     * and only then from OpenFoodFacts API.
      * 
      * @param barcode Product barcode
      * @return ProductInfo object or null if not found
      */
     private BarcodeAnalysisResponse.ProductInfo fetchProductFromOpenFoodFacts(String barcode) {
+        BarcodeAnalysisResponse.ProductInfo localProduct = localCatalog.lookup(barcode);
+        if (localProduct != null) {
+            return localProduct;
+        }
+        
+        Optional<ProductCache.CachedProduct> cached = productCache.get(barcode);
+        if (cached.isPresent()) {
+            return cached.get().productInfo();
+        }
+        
+        // Concurrent scans of the same barcode share a single upstream request
+        return productFetches.execute(barcode, () -> loadProductFromOpenFoodFacts(barcode));
+    }
+    
+    /**
+     * Requests a product from OpenFoodFacts API and caches definitive answers.
+     * 
+     * @param barcode Product barcode
+     * @return ProductInfo object or null if not found or the request failed
+     */
+    private BarcodeAnalysisResponse.ProductInfo loadProductFromOpenFoodFacts(String barcode) {
         try {
-            String url = OPENFOODFACTS_API_BASE + barcode;
-            
-            // Set User-Agent header as required by OpenFoodFacts
-            restTemplate.getInterceptors().add((request, body, execution) -> {
-                request.getHeaders().add("User-Agent", "HealthAI-Spring-Service/1.0");
-                return execution.execute(request, body);
-            });
+            BarcodeAnalysisResponse.ProductInfo productInfo = openFoodFactsClient.fetchProduct(barcode);
             
-            String response = restTemplate.getForObject(url, String.class);
-            
-            if (response == null) {
-                return null;
-            }
-            
-            // Parse JSON response
-            JsonNode root = objectMapper.readTree(response);
-            
-            if (root.get("status").asInt() != 1 || !root.has("product")) {
-                logger.warn("Product not found in OpenFoodFacts for barcode: {}", barcode);
-                return null;
-            }
-            
-            JsonNode product = root.get("product");
-            
-            // Transform OpenFoodFacts data to our ProductInfo structure
-            return transformToProductInfo(product, barcode);
+            // Only definitive answers are cached; transport or parse errors fall through to the catch blocks
+            productCache.put(barcode, productInfo);
+            return productInfo;
             
         } catch (RestClientException e) {
             logger.error("Error fetching data from OpenFoodFacts: {}", e.getMessage());
@@ -146,72 +299,103 @@ public class BarcodeAnalysisService {
     }
     
     /**
-     * Transforms OpenFoodFacts JSON data to our ProductInfo DTO.
+     * Generates nutritional analysis using AI based on product and user profile.
+     * Analyses are cached per (barcode, profile cohort), and concurrent requests for the
+     * same pair share one model call. The prompt is built from the cohort's canonical
+     * profile so the cached answer is valid for everyone in the cohort.
      */
-    private BarcodeAnalysisResponse.ProductInfo transformToProductInfo(JsonNode product, String barcode) {
-        BarcodeAnalysisResponse.ProductInfo productInfo = new BarcodeAnalysisResponse.ProductInfo();
+    private String generateNutritionalAnalysis(BarcodeAnalysisResponse.ProductInfo productInfo, UserProfileDto userProfile) {
+        String key = productInfo.getBarcode() + "|" + userProfile.getCohortKey();
         
-        // Basic product information
-        productInfo.setName(getJsonValueAsString(product, "product_name", "Unknown Product"));
-        productInfo.setBrand(getJsonValueAsString(product, "brands", "Unknown Brand"));
-        productInfo.setCategories(getJsonValueAsString(product, "categories", "Unknown"));
-        productInfo.setIngredientsText(getJsonValueAsString(product, "ingredients_text", "Not available"));
-        productInfo.setBarcode(barcode);
-        productInfo.setOpenFoodFactsUrl("https://world.openfoodfacts.org/product/" + barcode);
-        
-        // Nutrition information
-        BarcodeAnalysisResponse.NutritionPer100g nutrition = new BarcodeAnalysisResponse.NutritionPer100g();
-        JsonNode nutriments = product.get("nutriments");
-        if (nutriments != null) {
-            nutrition.setEnergyKcal(getJsonValueAsDouble(nutriments, "energy-kcal_100g"));
-            nutrition.setProteinsG(getJsonValueAsDouble(nutriments, "proteins_100g"));
-            nutrition.setCarbohydratesG(getJsonValueAsDouble(nutriments, "carbohydrates_100g"));
-            nutrition.setSugarsG(getJsonValueAsDouble(nutriments, "sugars_100g"));
-            nutrition.setFatG(getJsonValueAsDouble(nutriments, "fat_100g"));
-            nutrition.setSaturatedFatG(getJsonValueAsDouble(nutriments, "saturated-fat_100g"));
-            nutrition.setFiberG(getJsonValueAsDouble(nutriments, "fiber_100g"));
-            nutrition.setSaltG(getJsonValueAsDouble(nutriments, "salt_100g"));
-            nutrition.setSodiumMg(getJsonValueAsDouble(nutriments, "sodium_100g"));
+        String cached = analysisCache != null ? analysisCache.getIfPresent(key) : null;
+        if (cached != null) {
+            return cached;
         }
-        productInfo.setNutritionPer100g(nutrition);
-        
-        // Quality scores
-        BarcodeAnalysisResponse.QualityScores qualityScores = new BarcodeAnalysisResponse.QualityScores();
-        qualityScores.setNutriscoreGrade(getJsonValueAsString(product, "nutrition_grades", "Not available"));
-        qualityScores.setNovaGroup(getJsonValueAsInteger(product, "nova_group"));
-        qualityScores.setEcoscoreGrade(getJsonValueAsString(product, "ecoscore_grade", "Not available"));
-        productInfo.setQualityScores(qualityScores);
         
-        // Additional information
-        productInfo.setAdditives(extractListFromJsonArray(product, "additives_tags"));
-        productInfo.setAllergens(extractListFromJsonArray(product, "allergens_tags"));
-        productInfo.setLabels(extractListFromJsonArray(product, "labels_tags"));
-        
-        return productInfo;
+        try {
+            return analyses.execute(key, () -> {
+                String analysis = requestNutritionalAnalysis(productInfo, userProfile.toCohortProfile());
+                if (analysisCache != null && analysis != null) {
+                    analysisCache.put(key, analysis);
+                }
+                return analysis;
+            });
+            
+        } catch (Exception e) {
+            // Failures are not cached, so the next scan tries the model again
+            logger.error("Error generating nutritional analysis: {}", e.getMessage());
+            return ANALYSIS_FALLBACK;
+        }
     }
     
     /**
-     * Generates nutritional analysis using AI based on product and user profile.
+     * Streams the nutritional analysis to the listener. Shares the cohort cache with
+     * generateNutritionalAnalysis: a cached analysis is sent as one chunk, and a fully
+     * streamed one is cached. Streams are not collapsed with in-flight calls.
      */
-    private String generateNutritionalAnalysis(BarcodeAnalysisResponse.ProductInfo productInfo, UserProfileDto userProfile) {
-        String analysisPrompt = createAnalysisPrompt(productInfo, userProfile);
+    private void streamNutritionalAnalysis(BarcodeAnalysisResponse.ProductInfo productInfo, UserProfileDto userProfile,
+                                           ScanStreamListener listener) throws IOException {
+        String key = productInfo.getBarcode() + "|" + userProfile.getCohortKey();
         
-        try {
-            String response = chatClient.prompt()
-                    .system(SYSTEM_PROMPT)
-                    .user(analysisPrompt)
-                    .call()
-                    .content();
+        String cached = analysisCache != null ? analysisCache.getIfPresent(key) : null;
+        if (cached != null) {
+            listener.onAnalysisChunk(cached);
+            return;
+        }
+        
+        String analysisPrompt = createAnalysisPrompt(productInfo, userProfile.toCohortProfile());
+        StringBuilder analysis = new StringBuilder();
+        
+        // Closing the stream cancels the model request, e.g. when the client has gone away
+        try (Stream<String> chunks = chatClient.prompt()
+                .system(SYSTEM_PROMPT)
+                .user(analysisPrompt)
+                .stream()
+                .content()
+                .toStream()) {
             
-            logger.info("Generated nutritional analysis for barcode: {}", productInfo.getBarcode());
-            return response;
+            Iterator<String> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                String chunk = iterator.next();
+                if (chunk != null && !chunk.isEmpty()) {
+                    analysis.append(chunk);
+                    listener.onAnalysisChunk(chunk);
+                }
+            }
             
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Error generating nutritional analysis: {}", e.getMessage());
-            return "Unable to generate detailed analysis at this time. Please consult with a nutritionist for personalized advice.";
+            // A partial analysis is neither cached nor replaced; only an empty one gets the fallback
+            logger.error("Error streaming nutritional analysis: {}", e.getMessage());
+            if (analysis.length() == 0) {
+                listener.onAnalysisChunk(ANALYSIS_FALLBACK);
+            }
+            return;
+        }
+        
+        logger.info("Streamed nutritional analysis for barcode: {}", productInfo.getBarcode());
+        if (analysisCache != null && analysis.length() > 0) {
+            analysisCache.put(key, analysis.toString());
         }
     }
     
+    /**
+     * Calls the model for a nutritional analysis.
+     */
+    private String requestNutritionalAnalysis(BarcodeAnalysisResponse.ProductInfo productInfo, UserProfileDto userProfile) {
+        String analysisPrompt = createAnalysisPrompt(productInfo, userProfile);
+        
+        String response = chatClient.prompt()
+                .system(SYSTEM_PROMPT)
+                .user(analysisPrompt)
+                .call()
+                .content();
+        
+        logger.info("Generated nutritional analysis for barcode: {}", productInfo.getBarcode());
+        return response;
+    }
+    
     /**
      * Generates recommendation based on product and user profile.
      */
@@ -293,6 +477,17 @@ public class BarcodeAnalysisService {
         return prompt.toString();
     }
     
+    private static UserProfileDto createGeneralProfile() {
+        UserProfileDto profile = new UserProfileDto();
+        profile.setAge(30);
+        profile.setGender("unspecified");
+        profile.setHealthConditions("None");
+        profile.setDietaryPreference("No specific preference");
+        profile.setAllergies("None");
+        profile.setHealthGoals("General health");
+        return profile;
+    }
+    
     /**
      * Creates response when product is not found.
      */
@@ -312,33 +507,4 @@ public class BarcodeAnalysisService {
         
         return response;
     }
-    
-    // Helper methods for JSON parsing
-    private String getJsonValueAsString(JsonNode node, String fieldName, String defaultValue) {
-        JsonNode field = node.get(fieldName);
-        return field != null && !field.isNull() ? field.asText() : defaultValue;
-    }
-    
-    private Double getJsonValueAsDouble(JsonNode node, String fieldName) {
-        JsonNode field = node.get(fieldName);
-        return field != null && !field.isNull() ? field.asDouble() : null;
-    }
-    
-    private Integer getJsonValueAsInteger(JsonNode node, String fieldName) {
-        JsonNode field = node.get(fieldName);
-        return field != null && !field.isNull() ? field.asInt() : null;
-    }
-    
-    private List<String> extractListFromJsonArray(JsonNode node, String fieldName) {
-        JsonNode arrayNode = node.get(fieldName);
-        List<String> result = new ArrayList<>();
-        
-        if (arrayNode != null && arrayNode.isArray()) {
-            for (JsonNode item : arrayNode) {
-                result.add(item.asText());
-            }
-        }
-        
-        return result;
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
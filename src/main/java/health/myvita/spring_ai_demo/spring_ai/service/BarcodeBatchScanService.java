@@ -0,0 +1,123 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.config.BarcodeBatchProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeBatchResult;
+import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scans many barcodes for one user profile, fanning out product fetches and analyses concurrently.
+ *
+ * At most {@code barcode.batch.parallelism} items of a batch run at once. Results are handed
+ * to the caller in completion order, and a failing item is reported as an error result
+ * instead of failing the batch.
+ */
+@Service
+public class BarcodeBatchScanService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(BarcodeBatchScanService.class);
+
+    private final BarcodeAnalysisService barcodeAnalysisService;
+    private final BarcodeBatchProperties properties;
+
+    // Items spend nearly all their time waiting on HTTP and the model, so virtual threads are a good fit
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public BarcodeBatchScanService(BarcodeAnalysisService barcodeAnalysisService, BarcodeBatchProperties properties) {
+        this.barcodeAnalysisService = barcodeAnalysisService;
+        this.properties = properties;
+    }
+
+    /**
+     * Receives batch results as they complete. Called from the thread that invoked scanBatch.
+     */
+    @FunctionalInterface
+    public interface ResultSink {
+        void accept(BarcodeBatchResult result) throws IOException;
+    }
+
+    /**
+     * Largest number of barcodes accepted in one batch.
+     */
+    public int getMaxBatchSize() {
+        return properties.getMaxSize();
+    }
+
+    /**
+     * Analyzes every barcode and passes each result to the sink as soon as it is ready.
+     * If the sink fails (e.g. the client went away), outstanding items are cancelled.
+     *
+     * @param barcodes Barcodes to scan; duplicates are scanned once per occurrence
+     * @param userProfile Profile used for every item
+     * @param sink Receives one result per barcode, in completion order
+     * @throws IOException if the sink fails, or InterruptedIOException if the scan is interrupted
+     *         before every result was delivered
+     */
+    public void scanBatch(List<String> barcodes, UserProfileDto userProfile, ResultSink sink) throws IOException {
+        CompletionService<BarcodeBatchResult> completion = new ExecutorCompletionService<>(executor);
+        List<Future<BarcodeBatchResult>> futures = new ArrayList<>(barcodes.size());
+        int parallelism = Math.max(1, properties.getParallelism());
+        int next = 0;
+        int inFlight = 0;
+
+        try {
+            while (next < barcodes.size() || inFlight > 0) {
+                // Keep the window full up to the parallelism cap
+                while (inFlight < parallelism && next < barcodes.size()) {
+                    String barcode = barcodes.get(next++);
+                    futures.add(completion.submit(() -> scanOne(barcode, userProfile)));
+                    inFlight++;
+                }
+
+                Future<BarcodeBatchResult> done = completion.take();
+                inFlight--;
+                sink.accept(done.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Batch scan interrupted with {} of {} items submitted", next, barcodes.size());
+            // Fail the response rather than end it normally, so the client can tell it is incomplete
+            InterruptedIOException interrupted = new InterruptedIOException("Batch scan interrupted");
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            // scanOne never throws, so this only happens if the executor itself failed
+            throw new IllegalStateException("Batch scan item failed unexpectedly", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private BarcodeBatchResult scanOne(String barcode, UserProfileDto userProfile) {
+        String trimmed = barcode == null ? "" : barcode.trim();
+        if (!trimmed.matches("\\d{8,14}")) {
+            return BarcodeBatchResult.failure(barcode, "Invalid barcode format");
+        }
+        try {
+            return BarcodeBatchResult.success(trimmed, barcodeAnalysisService.analyzeProductByBarcode(trimmed, userProfile));
+        } catch (Exception e) {
+            logger.warn("Batch scan failed for barcode {}: {}", trimmed, e.getMessage());
+            return BarcodeBatchResult.failure(trimmed, e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,92 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs barcode scans as Server-Sent Events.
+ *
+ * Events, in order:
+ * - "product": product info, recommendation and assessment, sent as soon as the product is fetched
+ * - "analysis": zero or more {"text": "..."} chunks of the markdown analysis as the model writes it
+ * - "complete": {"status": "complete"} once the analysis is finished
+ * An "error" event replaces the remaining events if the scan fails.
+ */
+@Service
+public class BarcodeScanStreamService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(BarcodeScanStreamService.class);
+
+    private final BarcodeAnalysisService barcodeAnalysisService;
+
+    // Each scan blocks on the product fetch and the model stream, so virtual threads are a good fit
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public BarcodeScanStreamService(BarcodeAnalysisService barcodeAnalysisService) {
+        this.barcodeAnalysisService = barcodeAnalysisService;
+    }
+
+    /**
+     * Starts a scan and returns the emitter its events are written to.
+     *
+     * @param barcode Validated product barcode
+     * @param userProfile Validated user profile
+     * @return Emitter that completes after the "complete" or "error" event
+     */
+    public SseEmitter streamScan(String barcode, UserProfileDto userProfile) {
+        // No explicit timeout: spring.mvc.async.request-timeout applies
+        SseEmitter emitter = new SseEmitter();
+        executor.execute(() -> runScan(barcode, userProfile, emitter));
+        return emitter;
+    }
+
+    private void runScan(String barcode, UserProfileDto userProfile, SseEmitter emitter) {
+        try {
+            barcodeAnalysisService.streamProductAnalysis(barcode, userProfile, new BarcodeAnalysisService.ScanStreamListener() {
+                @Override
+                public void onProduct(BarcodeAnalysisResponse response) throws IOException {
+                    emitter.send(SseEmitter.event().name("product").data(response, MediaType.APPLICATION_JSON));
+                }
+
+                @Override
+                public void onAnalysisChunk(String text) throws IOException {
+                    // Sent as JSON so newlines in the markdown cannot break SSE framing
+                    emitter.send(SseEmitter.event().name("analysis").data(Map.of("text", text), MediaType.APPLICATION_JSON));
+                }
+            });
+            emitter.send(SseEmitter.event().name("complete").data(Map.of("status", "complete"), MediaType.APPLICATION_JSON));
+            emitter.complete();
+
+        } catch (IOException e) {
+            // The client went away; the container completes the request
+            logger.debug("Streamed scan for barcode {} aborted: {}", barcode, e.getMessage());
+
+        } catch (Exception e) {
+            logger.error("Streamed scan failed for barcode {}: {}", barcode, e.getMessage());
+            try {
+                emitter.send(SseEmitter.event().name("error").data(Map.of("error", "Failed to analyze product"), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception sendFailure) {
+                // Emitter already completed or timed out
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
\ No newline at end of file
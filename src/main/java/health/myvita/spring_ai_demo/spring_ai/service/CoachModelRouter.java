@@ -0,0 +1,144 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.config.CoachRoutingProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+import health.myvita.spring_ai_demo.spring_ai.triage.RedFlagTriage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the model and reasoning effort for a health coach request from a local complexity score.
+ *
+ * The score adds up message length, the number of symptoms mentioned, the health conditions in
+ * the profile and red flags mentioned negated ("no chest pain, but..."), weighted as configured.
+ * The request goes to the last tier of the policy table whose min-score the score reaches;
+ * messages with red flags always go to the last tier.
+ *
+ * Metrics, to tune the thresholds: the coach.routing.score histogram, coach.model.latency timed
+ * by tier, model and outcome, and coach.model.tokens by tier and type (prompt, completion).
+ */
+@Component
+public class CoachModelRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoachModelRouter.class);
+
+    private final CoachRoutingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary scores;
+
+    public CoachModelRouter(CoachRoutingProperties properties, MeterRegistry meterRegistry) {
+        if (properties.getTiers().isEmpty()) {
+            throw new IllegalStateException("coach.routing.tiers must define at least one tier");
+        }
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.scores = DistributionSummary.builder("coach.routing.score")
+                .description("Complexity score of routed coaching requests")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The tier chosen for a request.
+     *
+     * @param tier Tier from the policy table
+     * @param score Complexity score the tier was chosen by
+     */
+    public record Route(CoachRoutingProperties.Tier tier, double score) {
+
+        public String name() {
+            return tier.getName();
+        }
+
+        /**
+         * Chat options for the tier; usage is requested for streams so tokens can be recorded.
+         */
+        public OpenAiChatOptions options(boolean stream) {
+            OpenAiChatOptions.Builder builder = OpenAiChatOptions.builder()
+                    .model(tier.getModel())
+                    .temperature(tier.getTemperature());
+            if (StringUtils.hasText(tier.getReasoningEffort())) {
+                builder.reasoningEffort(tier.getReasoningEffort());
+            }
+            if (stream) {
+                builder.streamUsage(true);
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Scores a request and picks its tier.
+     *
+     * @param userMessage The user's message
+     * @param scan Red flags and symptoms in the message
+     * @param userProfile User's health profile, or null
+     */
+    public Route route(String userMessage, RedFlagTriage.Scan scan, UserProfileDto userProfile) {
+        List<CoachRoutingProperties.Tier> tiers = properties.getTiers();
+        CoachRoutingProperties.Tier last = tiers.get(tiers.size() - 1);
+        if (!properties.isEnabled()) {
+            return new Route(last, 0);
+        }
+
+        double score = (double) userMessage.length() / Math.max(1, properties.getCharactersPerPoint())
+                + scan.symptoms() * properties.getSymptomWeight()
+                + (userProfile != null ? userProfile.getHealthConditionCount() : 0) * properties.getConditionWeight()
+                + scan.negatedRedFlags() * properties.getNegatedRedFlagWeight();
+        scores.record(score);
+
+        CoachRoutingProperties.Tier chosen = tiers.get(0);
+        if (!scan.redFlags().isEmpty()) {
+            chosen = last;
+        } else {
+            for (CoachRoutingProperties.Tier tier : tiers) {
+                if (score >= tier.getMinScore()) {
+                    chosen = tier;
+                }
+            }
+        }
+        logger.debug("Routing coaching request with score {} to tier {} ({})", String.format("%.1f", score), chosen.getName(), chosen.getModel());
+        return new Route(chosen, score);
+    }
+
+    /**
+     * Records a finished model call.
+     *
+     * @param usage Token usage reported by the model, or null if there was none
+     */
+    public void record(Route route, long latencyNanos, Usage usage, boolean failed) {
+        Timer.builder("coach.model.latency")
+                .tag("tier", route.name())
+                .tag("model", route.tier().getModel())
+                .tag("outcome", failed ? "error" : "success")
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+        if (usage != null) {
+            recordTokens(route, "prompt", usage.getPromptTokens());
+            recordTokens(route, "completion", usage.getCompletionTokens());
+        }
+    }
+
+    private void recordTokens(Route route, String type, Integer tokens) {
+        if (tokens != null && tokens > 0) {
+            DistributionSummary.builder("coach.model.tokens")
+                    .tag("tier", route.name())
+                    .tag("type", type)
+                    .baseUnit("tokens")
+                    .register(meterRegistry)
+                    .record(tokens);
+        }
+    }
+}
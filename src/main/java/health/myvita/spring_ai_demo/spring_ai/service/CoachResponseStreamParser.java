@@ -0,0 +1,133 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Reads the "Summary: / Possible Causes: / Tips: / Urgency:" answer of the health coach as the
+ * model streams it and reports each part as soon as it is complete.
+ *
+ * Works line by line with the same rules as the blocking parser: a section starts with its
+ * header at the beginning of a paragraph and ends at the next blank line; causes and tips are
+ * the "- " lines of their section. A bullet is reported when its line ends, the summary and
+ * urgency when their paragraph ends. The whole answer is kept so the final response can be
+ * built by the blocking parser and is identical to what /advice returns.
+ *
+ * Not thread-safe; one instance per model response.
+ */
+final class CoachResponseStreamParser {
+
+    private enum Section { NONE, SUMMARY, CAUSES, TIPS, URGENCY }
+
+    private static final String SUMMARY_HEADER = "Summary:";
+    private static final String CAUSES_HEADER = "Possible Causes:";
+    private static final String TIPS_HEADER = "Tips:";
+    private static final String URGENCY_HEADER = "Urgency:";
+
+    private final HealthCoachService.AdviceStreamListener listener;
+    private final StringBuilder document = new StringBuilder();
+    private final StringBuilder line = new StringBuilder();
+    // Summary or urgency text of the current paragraph
+    private final StringBuilder paragraphText = new StringBuilder();
+
+    private Section section = Section.NONE;
+    private boolean paragraphStart = true;
+
+    CoachResponseStreamParser(HealthCoachService.AdviceStreamListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Feeds the next piece of the model output and reports the parts it completes.
+     *
+     * @throws IOException only when the listener fails, e.g. because the client went away
+     */
+    void feed(String chunk) throws IOException {
+        document.append(chunk);
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (c == '\n') {
+                onLine(line.toString());
+                line.setLength(0);
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Reports what the last line completes, once the model has finished.
+     *
+     * @return the complete answer
+     */
+    String finish() throws IOException {
+        if (!line.isEmpty()) {
+            onLine(line.toString());
+            line.setLength(0);
+        }
+        endParagraph();
+        return document.toString();
+    }
+
+    private void onLine(String text) throws IOException {
+        if (text.isEmpty()) {
+            endParagraph();
+            return;
+        }
+
+        String content = text;
+        if (paragraphStart) {
+            paragraphStart = false;
+            section = Section.NONE;
+            if (text.startsWith(SUMMARY_HEADER)) {
+                section = Section.SUMMARY;
+                content = text.substring(SUMMARY_HEADER.length());
+            } else if (text.startsWith(CAUSES_HEADER)) {
+                section = Section.CAUSES;
+                content = text.substring(CAUSES_HEADER.length());
+            } else if (text.startsWith(TIPS_HEADER)) {
+                section = Section.TIPS;
+                content = text.substring(TIPS_HEADER.length());
+            } else if (text.startsWith(URGENCY_HEADER)) {
+                section = Section.URGENCY;
+                content = text.substring(URGENCY_HEADER.length());
+            }
+            // The blocking parser trims the text after the header
+            content = content.stripLeading();
+        }
+
+        switch (section) {
+            case SUMMARY, URGENCY -> {
+                if (!paragraphText.isEmpty()) {
+                    paragraphText.append('\n');
+                }
+                paragraphText.append(content);
+            }
+            case CAUSES -> {
+                if (content.startsWith("- ")) {
+                    listener.onPossibleCause(content.substring(2).trim());
+                }
+            }
+            case TIPS -> {
+                if (content.startsWith("- ")) {
+                    listener.onTip(content.substring(2).trim());
+                }
+            }
+            case NONE -> {
+                // Text outside the known sections is ignored, as in the blocking parser
+            }
+        }
+    }
+
+    private void endParagraph() throws IOException {
+        String text = paragraphText.toString().trim();
+        if (section == Section.SUMMARY && !text.isEmpty()) {
+            listener.onSummary(text);
+        } else if (section == Section.URGENCY && !text.isEmpty()) {
+            listener.onUrgency(text.toLowerCase(Locale.ROOT));
+        }
+        paragraphText.setLength(0);
+        section = Section.NONE;
+        paragraphStart = true;
+    }
+}
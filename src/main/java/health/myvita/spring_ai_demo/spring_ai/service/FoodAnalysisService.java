@@ -2,17 +2,49 @@ package health.myvita.spring_ai_demo.spring_ai.service;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.content.Media;
+import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.openai.api.ResponseFormat;
 import org.springframework.stereotype.Service;
 import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import health.myvita.spring_ai_demo.spring_ai.cache.NearDuplicateIndex;
+import health.myvita.spring_ai_demo.spring_ai.cache.SingleFlight;
+import health.myvita.spring_ai_demo.spring_ai.config.FoodAnalysisCacheProperties;
+import health.myvita.spring_ai_demo.spring_ai.config.FoodAnalysisProperties;
+import health.myvita.spring_ai_demo.spring_ai.config.ImageStoreProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.FoodItemDto;
 import health.myvita.spring_ai_demo.spring_ai.dto.NutritionAnalysisResponse;
 import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+import health.myvita.spring_ai_demo.spring_ai.image.ImageNormalizer;
+import health.myvita.spring_ai_demo.spring_ai.image.ImageStore;
+import health.myvita.spring_ai_demo.spring_ai.json.LenientJsonParser;
+import health.myvita.spring_ai_demo.spring_ai.logging.ModelIoLogger;
+import health.myvita.spring_ai_demo.spring_ai.usda.Nutrient;
+import health.myvita.spring_ai_demo.spring_ai.usda.NutrientDatabase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Service for analyzing food images using GPT-4 Vision.
@@ -23,7 +55,40 @@ import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
 public class FoodAnalysisService {
     
     private final ChatClient chatClient;
+    private final OpenAiChatOptions structuredOptions;
+    private final OpenAiChatOptions portionOptions;
+    private final NutrientDatabase nutrientDatabase;
+    private final boolean structuredOutput;
     private final ObjectMapper objectMapper;
+    private final LenientJsonParser jsonParser;
+    private final ModelIoLogger modelIoLogger;
+    private final ImageNormalizer imageNormalizer;
+    private final ImageStore imageStore;
+    // Images go to the model as signed URLs instead of inline data URLs
+    private final boolean passImagesByUrl;
+    private final FoodAnalysisCacheProperties cacheProperties;
+    private final NearDuplicateIndex<NutritionAnalysisResponse> recentAnalyses;
+    private final SingleFlight<String, NutritionAnalysisResponse> analyses;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    
+    // Portion answer field with the model's own nutrients, for items the database has no match for
+    private static final String MODEL_ESTIMATE_FIELD = "model_estimate";
+    
+    // JSON schema of the response DTO, sent as structured output
+    private static final String RESPONSE_SCHEMA = createResponseSchema(NutritionAnalysisResponse.class);
+    
+    // Schema of the names-and-grams answer used when nutrients come from the local database
+    private static final String PORTION_SCHEMA = createResponseSchema(PortionEstimates.class, MODEL_ESTIMATE_FIELD);
+    
+    // Cache scope for uploads without a user profile
+    private static final String ANONYMOUS_SCOPE = "anonymous";
+    
+    // Model I/O log category, i.e. the "model-io.food-analysis" logger
+    private static final String LOG_CATEGORY = "food-analysis";
+    
+    // Source named for items whose nutrients come from the model rather than the database
+    private static final String MODEL_ESTIMATE_SOURCE = "Model estimate";
     
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(FoodAnalysisService.class);
     
@@ -55,21 +120,148 @@ public class FoodAnalysisService {
         "\n" +
         "Always prioritize accuracy over speed. If uncertain about specific values, use conservative estimates and lower confidence scores.";
     
-    public FoodAnalysisService(ChatClient.Builder chatClientBuilder) {
-        // Configure the chat client for vision analysis using GPT-4o
+    public FoodAnalysisService(ChatClient.Builder chatClientBuilder, ImageNormalizer imageNormalizer,
+                               ImageStore imageStore, ImageStoreProperties imageStoreProperties,
+                               FoodAnalysisProperties analysisProperties, NutrientDatabase nutrientDatabase,
+                               LenientJsonParser jsonParser, ModelIoLogger modelIoLogger,
+                               FoodAnalysisCacheProperties cacheProperties, MeterRegistry meterRegistry) {
         this.chatClient = chatClientBuilder
-                .defaultOptions(OpenAiChatOptions.builder()
-                        .model(OpenAiApi.ChatModel.GPT_4_1_MINI.getValue())
-                        .temperature(0.1)  // Low temperature for consistent analysis
-                        
-                        //this is for o4 mini, you have to set temperature to 1 and reasoning effort
-                        // .model(OpenAiApi.ChatModel.O4_MINI.getValue())
-                        // .temperature(1.0)
-                        // .reasoningEffort("high")
-                        .build())
+                .defaultOptions(visionOptions().build())
+                .build();
+        // Request options replace the client defaults rather than merging with them, so the
+        // structured variant repeats the model settings
+        this.structuredOptions = visionOptions()
+                .responseFormat(new ResponseFormat(ResponseFormat.Type.JSON_SCHEMA, RESPONSE_SCHEMA))
                 .build();
+        this.portionOptions = visionOptions()
+                .responseFormat(new ResponseFormat(ResponseFormat.Type.JSON_SCHEMA, PORTION_SCHEMA))
+                .build();
+        this.nutrientDatabase = nutrientDatabase;
+        this.structuredOutput = analysisProperties.isStructuredOutput();
         
         this.objectMapper = new ObjectMapper();
+        this.jsonParser = jsonParser;
+        this.modelIoLogger = modelIoLogger;
+        this.imageNormalizer = imageNormalizer;
+        this.imageStore = imageStore;
+        this.passImagesByUrl = imageStoreProperties.getMode() == ImageStoreProperties.Mode.URL
+                && StringUtils.hasText(imageStoreProperties.getPublicBaseUrl());
+        if (imageStoreProperties.getMode() == ImageStoreProperties.Mode.URL && !passImagesByUrl) {
+            logger.warn("food.image-store.mode=url needs food.image-store.public-base-url; sending images inline");
+        }
+        this.cacheProperties = cacheProperties;
+        this.recentAnalyses = cacheProperties.isEnabled()
+                ? new NearDuplicateIndex<>(cacheProperties.getMaxSize(), cacheProperties.getTtl())
+                : null;
+        this.analyses = new SingleFlight<>("food.image.analysis", meterRegistry);
+        this.cacheHits = meterRegistry.counter("food.analysis.cache.requests", "result", "hit");
+        this.cacheMisses = meterRegistry.counter("food.analysis.cache.requests", "result", "miss");
+        if (recentAnalyses != null) {
+            meterRegistry.gauge("food.analysis.cache.size", recentAnalyses, NearDuplicateIndex::size);
+        }
+    }
+    
+    /**
+     * Model settings shared by every food analysis request.
+     */
+    private static OpenAiChatOptions.Builder visionOptions() {
+        // Configure the chat client for vision analysis using GPT-4o
+        //this is for o4 mini, you have to set temperature to 1 and reasoning effort
+        // .model(OpenAiApi.ChatModel.O4_MINI.getValue())
+        // .temperature(1.0)
+        // .reasoningEffort("high")
+        return OpenAiChatOptions.builder()
+                .model(OpenAiApi.ChatModel.GPT_4_1_MINI.getValue())
+                .temperature(0.1);  // Low temperature for consistent analysis
+    }
+    
+    /**
+     * Generates the JSON schema of a response type for structured output.
+     * 
+     * Strict structured output requires every property of every object to be listed as required,
+     * which the generated schema leaves out, so it is added here. Strict mode has no optional
+     * properties; the given ones may be null instead, which costs the model a single token.
+     */
+    private static String createResponseSchema(Class<?> responseType, String... nullableProperties) {
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            ObjectNode schema = (ObjectNode) mapper.readTree(
+                    new BeanOutputConverter<>(responseType).getJsonSchema());
+            schema.remove("$schema");
+            requireAllProperties(schema);
+            for (String property : nullableProperties) {
+                allowNull(schema, property);
+            }
+            return mapper.writeValueAsString(schema);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not generate the schema for " + responseType.getSimpleName(), e);
+        }
+    }
+    
+    private static void requireAllProperties(JsonNode node) {
+        if (node.isObject() && node.has("properties")) {
+            ArrayNode required = ((ObjectNode) node).putArray("required");
+            node.get("properties").fieldNames().forEachRemaining(required::add);
+        }
+        node.forEach(FoodAnalysisService::requireAllProperties);
+    }
+    
+    private static void allowNull(JsonNode node, String property) {
+        if (node.isObject() && node.path("properties").has(property)) {
+            ObjectNode properties = (ObjectNode) node.get("properties");
+            ObjectNode nullable = properties.objectNode();
+            nullable.putArray("anyOf").add(properties.get(property)).addObject().put("type", "null");
+            properties.set(property, nullable);
+        }
+        node.forEach(child -> allowNull(child, property));
+    }
+    
+    /**
+     * Spools and normalizes one upload. Nothing is encoded or stored yet, so a near-duplicate
+     * cache hit costs only the normalization; the caller closes the result, which deletes the
+     * spooled copy.
+     */
+    private PreparedImage prepareImage(MultipartFile imageFile) throws IOException {
+        // Determine mime type (default to image/jpeg if unknown)
+        String mimeString = imageFile.getContentType() != null ? imageFile.getContentType() : MimeTypeUtils.IMAGE_JPEG_VALUE;
+        // Work from a file on disk so the upload is never copied into the heap as a whole
+        Path upload = imageNormalizer.spool(imageFile);
+        try {
+            // Downscale, orient and strip EXIF before the image goes anywhere
+            return new PreparedImage(imageNormalizer.normalize(upload, MimeTypeUtils.parseMimeType(mimeString)), upload);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(upload);
+            throw e;
+        }
+    }
+    
+    /**
+     * Builds the Media for a prepared image: either a data URL, or the image stored and referred
+     * to by signed URL.
+     */
+    private Media toMedia(PreparedImage prepared) throws IOException {
+        ImageNormalizer.NormalizedImage image = prepared.image();
+        if (passImagesByUrl) {
+            // The model provider fetches the image itself; only the URL travels with the request
+            String url = imageStore.signedUrl(imageStore.put(image));
+            return Media.builder().mimeType(image.mimeType()).data(url).build();
+        }
+        return image.toMedia();
+    }
+    
+    /**
+     * A normalized upload and the spooled file it may still be read from.
+     */
+    private record PreparedImage(ImageNormalizer.NormalizedImage image, Path upload) implements AutoCloseable {
+        
+        Long perceptualHash() {
+            return image.perceptualHash();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(upload);
+        }
     }
     
     /**
@@ -81,62 +273,379 @@ public class FoodAnalysisService {
      * @throws Exception if analysis fails
      */
     public NutritionAnalysisResponse analyzeFood(MultipartFile imageFile, UserProfileDto userProfile) throws Exception {
-        try {
-            // Determine mime type (default to image/jpeg if unknown)
-            String mimeString = imageFile.getContentType() != null ? imageFile.getContentType() : MimeTypeUtils.IMAGE_JPEG_VALUE;
-            // Create media object from the uploaded file
-            Media imageMedia = new Media(MimeTypeUtils.parseMimeType(mimeString), imageFile.getResource());
+        try (PreparedImage image = prepareImage(imageFile)) {
+            // Insights are written for the profile's cohort, so a cached analysis is only shared within it
+            String scope = userProfile != null ? userProfile.getCohortKey() : ANONYMOUS_SCOPE;
+            UserProfileDto promptProfile = userProfile != null ? userProfile.toCohortProfile() : null;
+            
+            if (recentAnalyses == null || image.perceptualHash() == null) {
+                return orFallback(requestAnalysis(toMedia(image), promptProfile));
+            }
             
-            // Create personalized analysis prompt
-            String analysisPrompt = createPersonalizedAnalysisPrompt(userProfile);
+            // Re-uploads and burst shots of the same meal hash to within a few bits of each other
+            long hash = image.perceptualHash();
+            Optional<NearDuplicateIndex.Match<NutritionAnalysisResponse>> match =
+                    recentAnalyses.findNearest(scope, hash, cacheProperties.getMaxDistance());
+            if (match.isPresent()) {
+                cacheHits.increment();
+                logger.debug("Reusing food analysis of a near-duplicate image (distance {})", match.get().distance());
+                return match.get().value();
+            }
+            cacheMisses.increment();
+            
+            NutritionAnalysisResponse analysis = analyses.execute(scope + "|" + Long.toHexString(hash), () -> {
+                // Encoded or stored only now, on a miss
+                Media imageMedia;
+                try {
+                    imageMedia = toMedia(image);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                NutritionAnalysisResponse response = requestAnalysis(imageMedia, promptProfile);
+                // Unparseable answers are not cached, so the next upload tries again
+                if (response != null) {
+                    recentAnalyses.put(scope, hash, response);
+                }
+                return response;
+            });
+            return orFallback(analysis);
+            
+        } catch (Exception e) {
+            throw new Exception("Failed to analyze food image: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Analyzes a meal photographed in several images with a single model call.
+     * 
+     * All photos go into one multimodal prompt, so the system prompt is sent once and the model
+     * can see which items appear in more than one photo. Items it still reports twice are merged
+     * server-side, and the total is recomputed from the reconciled items.
+     * 
+     * @param imageFiles The uploaded photos, in the order the items are attributed to
+     * @param userProfile User's health profile for personalized analysis
+     * @return One NutritionAnalysisResponse with image_indexes on every food item
+     * @throws Exception if analysis fails
+     */
+    public NutritionAnalysisResponse analyzeMeal(List<MultipartFile> imageFiles, UserProfileDto userProfile) throws Exception {
+        try {
+            List<Media> images = new ArrayList<>(imageFiles.size());
+            for (MultipartFile imageFile : imageFiles) {
+                try (PreparedImage image = prepareImage(imageFile)) {
+                    images.add(toMedia(image));
+                }
+            }
             
-            // Call the vision model
-            String response = chatClient.prompt()
+            String mealPrompt = createMealAnalysisPrompt(images.size(), userProfile);
+            ChatClient.ChatClientRequestSpec request = chatClient.prompt();
+            if (structuredOutput) {
+                request = request.options(structuredOptions);
+            }
+            String response = request
                     .system(SYSTEM_PROMPT)
-                    .user(u -> u.text(analysisPrompt).media(imageMedia))
+                    .user(u -> u.text(mealPrompt).media(images.toArray(new Media[0])))
                     .call()
                     .content();
             
-            // Log the raw response from the model for debugging
-            logger.info("Raw food analysis response:\n{}", response);
+            modelIoLogger.response(LOG_CATEGORY, response);
             
-            // Parse the JSON response into our DTO
-            return parseNutritionResponse(response);
+            NutritionAnalysisResponse analysis = parseNutritionResponse(response);
+            if (analysis == null) {
+                return createFallbackResponse();
+            }
+            List<FoodItemDto> items = MealItemReconciler.reconcile(analysis.getFoodItems(), images.size());
+            if (analysis.getFoodItems() != null && items.size() < analysis.getFoodItems().size()) {
+                logger.debug("Merged {} duplicate meal items across photos", analysis.getFoodItems().size() - items.size());
+            }
+            analysis.setFoodItems(items);
+            analysis.setTotalEstimatedCaloriesKcal(MealItemReconciler.totalCalories(items));
+            return analysis;
             
         } catch (Exception e) {
-            throw new Exception("Failed to analyze food image: " + e.getMessage(), e);
+            throw new Exception("Failed to analyze meal images: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Receives the food items of a streamed analysis as they are completed.
+     */
+    public interface FoodItemStreamListener {
+        
+        /**
+         * Next food item, complete and parsed.
+         */
+        void onFoodItem(FoodItemDto item) throws IOException;
+    }
+    
+    /**
+     * Streaming variant of analyzeFood.
+     * 
+     * Always uses structured output, so the model writes the response DTO's JSON directly, and
+     * parses it while it streams: each food_items element goes to the listener as soon as it is
+     * complete. A near-duplicate of a recently analyzed image replays the cached items instead.
+     * Runs on the calling thread until the analysis is complete.
+     * 
+     * @param imageFile The uploaded food image
+     * @param userProfile User's health profile for personalized analysis
+     * @param listener Receives each food item as it is completed
+     * @return The complete analysis, with the fallback response if the model output was unusable
+     * @throws IOException if the listener fails, e.g. because the client went away
+     */
+    public NutritionAnalysisResponse streamFoodAnalysis(MultipartFile imageFile, UserProfileDto userProfile,
+                                                        FoodItemStreamListener listener) throws IOException {
+        String scope = userProfile != null ? userProfile.getCohortKey() : ANONYMOUS_SCOPE;
+        UserProfileDto promptProfile = userProfile != null ? userProfile.toCohortProfile() : null;
+        Long hash;
+        NutritionAnalysisResponse cached = null;
+        Media imageMedia = null;
+        try (PreparedImage image = prepareImage(imageFile)) {
+            hash = recentAnalyses != null ? image.perceptualHash() : null;
+            if (hash != null) {
+                Optional<NearDuplicateIndex.Match<NutritionAnalysisResponse>> match =
+                        recentAnalyses.findNearest(scope, hash, cacheProperties.getMaxDistance());
+                if (match.isPresent()) {
+                    cacheHits.increment();
+                    cached = match.get().value();
+                } else {
+                    cacheMisses.increment();
+                }
+            }
+            // Encoded or stored only on a miss
+            if (cached == null) {
+                imageMedia = toMedia(image);
+            }
+        } catch (IOException e) {
+            // Not a client disconnect; IOException is reserved for listener failures here
+            throw new IllegalStateException("Could not read the uploaded image: " + e.getMessage(), e);
         }
+        
+        if (cached != null) {
+            if (cached.getFoodItems() != null) {
+                for (FoodItemDto item : cached.getFoodItems()) {
+                    listener.onFoodItem(item);
+                }
+            }
+            return cached;
+        }
+        
+        String analysisPrompt = createStructuredAnalysisPrompt(promptProfile);
+        NutritionResponseStreamParser parser = new NutritionResponseStreamParser(objectMapper, jsonParser, listener::onFoodItem);
+        Media media = imageMedia;
+        
+        // Closing the stream cancels the model request, e.g. when the client has gone away
+        try (Stream<String> chunks = chatClient.prompt()
+                .options(structuredOptions)
+                .system(SYSTEM_PROMPT)
+                .user(u -> u.text(analysisPrompt).media(media))
+                .stream()
+                .content()
+                .toStream()) {
+            
+            Iterator<String> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                String chunk = iterator.next();
+                if (chunk != null && !chunk.isEmpty()) {
+                    parser.feed(chunk);
+                }
+            }
+        }
+        
+        modelIoLogger.response(LOG_CATEGORY, parser.document());
+        NutritionAnalysisResponse response = parser.finish();
+        logger.info("Streamed food analysis with {} items", parser.itemCount());
+        // Unparseable answers are not cached, so the next upload tries again
+        if (response != null && hash != null) {
+            recentAnalyses.put(scope, hash, response);
+        }
+        return orFallback(response);
     }
     
+    /**
+     * Calls the vision model and parses its answer.
+     * 
+     * @param imageMedia The image to analyze
+     * @param userProfile Profile the prompt is written for, or null
+     * @return Parsed NutritionAnalysisResponse, or null if the answer could not be parsed
+     */
+    private NutritionAnalysisResponse requestAnalysis(Media imageMedia, UserProfileDto userProfile) {
+        if (nutrientDatabase.isLoaded()) {
+            NutritionAnalysisResponse local = requestPortionAnalysis(imageMedia, userProfile);
+            if (local != null) {
+                return local;
+            }
+        }
+        
+        // Create personalized analysis prompt
+        String analysisPrompt = structuredOutput
+                ? createStructuredAnalysisPrompt(userProfile)
+                : createPersonalizedAnalysisPrompt(userProfile);
+        
+        // Call the vision model
+        ChatClient.ChatClientRequestSpec request = chatClient.prompt();
+        if (structuredOutput) {
+            request = request.options(structuredOptions);
+        }
+        String response = request
+                .system(SYSTEM_PROMPT)
+                .user(u -> u.text(analysisPrompt).media(imageMedia))
+                .call()
+                .content();
+        
+        modelIoLogger.response(LOG_CATEGORY, response);
+        
+        // Parse the JSON response into our DTO
+        return parseNutritionResponse(response);
+    }
+    
+    /**
+     * Asks the model only for item names and gram estimates and computes the nutrients from the
+     * local USDA database, so the same items and weights always give the same numbers. Items the
+     * model does not expect the database to know (branded or regional dishes) also get its own
+     * nutrient estimate; for all others the estimate is null, so the answer stays short.
+     * 
+     * @param imageMedia The image to analyze
+     * @param userProfile Profile the prompt is written for, or null
+     * @return The analysis, or null if the answer could not be parsed, or an item has neither a
+     *         database match nor a model estimate
+     */
+    private NutritionAnalysisResponse requestPortionAnalysis(Media imageMedia, UserProfileDto userProfile) {
+        String portionPrompt = createPortionPrompt(userProfile);
+        String response = chatClient.prompt()
+                .options(portionOptions)
+                .system(SYSTEM_PROMPT)
+                .user(u -> u.text(portionPrompt).media(imageMedia))
+                .call()
+                .content();
+        
+        modelIoLogger.response(LOG_CATEGORY, response);
+        
+        PortionEstimates estimates;
+        try {
+            estimates = jsonParser.parse(response, PortionEstimates.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not parse food portion response: {}", e.getOriginalMessage());
+            return null;
+        }
+        if (estimates.foodItems() == null) {
+            return null;
+        }
+        
+        List<FoodItemDto> items = new ArrayList<>(estimates.foodItems().size());
+        List<String> sources = new ArrayList<>();
+        for (PortionEstimate estimate : estimates.foodItems()) {
+            Optional<NutrientDatabase.FoodMatch> match = nutrientDatabase.findFood(estimate.fdcDescription())
+                    .or(() -> nutrientDatabase.findFood(estimate.name()));
+            String source;
+            if (match.isPresent()) {
+                items.add(toFoodItem(estimate, match.get()));
+                source = "USDA FoodData Central fdc_id " + match.get().fdcId();
+            } else if (estimate.modelEstimate() != null) {
+                // Unknown to the database; the model's own estimate keeps the meal complete
+                logger.debug("No FoodData Central match for \"{}\"; using the model estimate", estimate.name());
+                items.add(toFoodItem(estimate, estimate.modelEstimate()));
+                source = MODEL_ESTIMATE_SOURCE;
+            } else {
+                // The model expected a match that is not there; let it estimate everything instead
+                logger.debug("No FoodData Central match or model estimate for \"{}\"; falling back to the full model analysis", estimate.name());
+                return null;
+            }
+            if (!sources.contains(source)) {
+                sources.add(source);
+            }
+        }
+        
+        return new NutritionAnalysisResponse(items, items.stream().mapToInt(FoodItemDto::getCaloriesKcal).sum(), sources);
+    }
+    
+    private FoodItemDto toFoodItem(PortionEstimate estimate, NutrientDatabase.FoodMatch food) {
+        double grams = Math.max(0, estimate.servingSizeG());
+        return new FoodItemDto(
+                estimate.name(),
+                grams,
+                (int) Math.round(food.amount(Nutrient.ENERGY_KCAL, grams)),
+                new FoodItemDto.Macros(
+                        roundToTenth(food.amount(Nutrient.PROTEIN_G, grams)),
+                        roundToTenth(food.amount(Nutrient.FAT_G, grams)),
+                        roundToTenth(food.amount(Nutrient.CARBOHYDRATE_G, grams))),
+                new FoodItemDto.Micros(
+                        roundToTenth(food.amount(Nutrient.SODIUM_MG, grams)),
+                        roundToTenth(food.amount(Nutrient.FIBER_G, grams))),
+                estimate.confidence());
+    }
+    
+    private static FoodItemDto toFoodItem(PortionEstimate estimate, ModelEstimate nutrients) {
+        return new FoodItemDto(
+                estimate.name(),
+                Math.max(0, estimate.servingSizeG()),
+                Math.max(0, nutrients.caloriesKcal()),
+                nutrients.macros(),
+                nutrients.micros(),
+                estimate.confidence());
+    }
+    
+    private static double roundToTenth(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+    
+    /**
+     * The model's answer in local nutrient mode: what is on the plate and how much, with the
+     * model's own nutrient estimate only for items it does not expect the database to know.
+     */
+    private record PortionEstimates(@JsonProperty("food_items") List<PortionEstimate> foodItems) {}
+    
+    private record PortionEstimate(
+            String name,
+            @JsonProperty("fdc_description") String fdcDescription,
+            @JsonProperty("serving_size_g") double servingSizeG,
+            double confidence,
+            // Nullable in the schema; null for items the database is expected to have
+            @JsonProperty(MODEL_ESTIMATE_FIELD) ModelEstimate modelEstimate) {}
+    
+    private record ModelEstimate(
+            @JsonProperty("calories_kcal") int caloriesKcal,
+            FoodItemDto.Macros macros,
+            FoodItemDto.Micros micros) {}
+    
     /**
      * Parses the AI model's JSON response into a NutritionAnalysisResponse object.
      * 
+     * Fences, surrounding prose, truncation and similar damage are repaired first, keeping every
+     * complete food item.
+     * 
      * @param jsonResponse The JSON response from the AI model
-     * @return Parsed NutritionAnalysisResponse
-     * @throws JsonProcessingException if JSON parsing fails
+     * @return Parsed NutritionAnalysisResponse, or null if nothing usable could be parsed
      */
-    private NutritionAnalysisResponse parseNutritionResponse(String jsonResponse) throws JsonProcessingException {
+    private NutritionAnalysisResponse parseNutritionResponse(String jsonResponse) {
         try {
-            // Clean up the response (remove markdown formatting if present)
-            String cleanJson = jsonResponse.trim();
-            if (cleanJson.startsWith("```json")) {
-                cleanJson = cleanJson.substring(7);
+            NutritionAnalysisResponse response = jsonParser.parse(jsonResponse, NutritionAnalysisResponse.class);
+            if (response.getFoodItems() == null) {
+                // Valid JSON in some other shape; treat it like unparseable output
+                logger.warn("Food analysis response has no food_items");
+                return null;
             }
-            if (cleanJson.endsWith("```")) {
-                cleanJson = cleanJson.substring(0, cleanJson.length() - 3);
+            // A truncated answer can lose the total that follows the items
+            if (response.getTotalEstimatedCaloriesKcal() == 0 && !response.getFoodItems().isEmpty()) {
+                response.setTotalEstimatedCaloriesKcal(response.getFoodItems().stream().mapToInt(FoodItemDto::getCaloriesKcal).sum());
             }
-            
-            // Parse JSON into our DTO
-            return objectMapper.readValue(cleanJson, NutritionAnalysisResponse.class);
+            return response;
             
         } catch (JsonProcessingException e) {
-            // If parsing fails, return a fallback response
-            return createFallbackResponse();
+            // If parsing fails, the caller returns a fallback response
+            logger.warn("Could not parse food analysis response: {}", e.getOriginalMessage());
+            return null;
         }
     }
     
+    private NutritionAnalysisResponse orFallback(NutritionAnalysisResponse response) {
+        return response != null ? response : createFallbackResponse();
+    }
+    
     /**
-     * Creates a personalized analysis prompt based on user profile.
+     * Creates a personalized analysis prompt based on user profile, for when structured output
+     * is off and the JSON format has to be spelled out in the prompt.
+     * 
+     * The format uses the keys of NutritionAnalysisResponse, which is what the answer is parsed
+     * into; other keys would be ignored and leave the analysis empty.
      * 
      * @param userProfile User's health profile
      * @return Personalized analysis prompt
@@ -145,6 +654,118 @@ public class FoodAnalysisService {
         StringBuilder prompt = new StringBuilder();
         
         prompt.append("Analyze this food image for a ");
+        appendProfile(prompt, userProfile);
+        
+        prompt.append("List every food or drink item with its estimated serving size in grams, calories, ");
+        prompt.append("macronutrients, sodium, fiber and a confidence score. ");
+        prompt.append("The total must be the sum of the item calories.\n");
+        prompt.append("Return your response in the following JSON format only:\n");
+        prompt.append("{\n");
+        prompt.append("  \"food_items\": [\n");
+        prompt.append("    {\n");
+        prompt.append("      \"name\": \"food name\",\n");
+        prompt.append("      \"serving_size_g\": grams,\n");
+        prompt.append("      \"calories_kcal\": estimated_calories,\n");
+        prompt.append("      \"macros\": { \"protein_g\": grams, \"fat_g\": grams, \"carb_g\": grams },\n");
+        prompt.append("      \"micros\": { \"sodium_mg\": milligrams, \"fiber_g\": grams },\n");
+        prompt.append("      \"confidence\": confidence_score_0_to_1,\n");
+        prompt.append("      \"image_indexes\": [1]\n");
+        prompt.append("    }\n");
+        prompt.append("  ],\n");
+        prompt.append("  \"total_estimated_calories_kcal\": total_estimated_calories,\n");
+        prompt.append("  \"sources\": [\"reference databases used\"]\n");
+        prompt.append("}");
+        
+        return prompt.toString();
+    }
+    
+    /**
+     * Creates the analysis prompt for structured output, where the schema travels as the
+     * response format and the prompt only has to describe the task.
+     * 
+     * @param userProfile User's health profile, or null
+     * @return Personalized analysis prompt
+     */
+    private String createStructuredAnalysisPrompt(UserProfileDto userProfile) {
+        StringBuilder prompt = new StringBuilder();
+        
+        prompt.append("Analyze this food image for a ");
+        appendProfile(prompt, userProfile);
+        
+        prompt.append("List every food or drink item with its estimated serving size in grams, calories, ");
+        prompt.append("macronutrients, sodium, fiber and a confidence score, and set image_indexes to [1]. ");
+        prompt.append("The total must be the sum of the item calories. ");
+        prompt.append("Name the nutrient databases your values are based on as sources.");
+        
+        return prompt.toString();
+    }
+    
+    /**
+     * Creates the prompt for local nutrient mode, which asks only for items and weights.
+     * 
+     * @param userProfile User's health profile, or null
+     * @return Portion estimation prompt
+     */
+    private String createPortionPrompt(UserProfileDto userProfile) {
+        StringBuilder prompt = new StringBuilder();
+        
+        prompt.append("Identify the food and drink items in this image for a ");
+        appendProfile(prompt, userProfile);
+        
+        prompt.append("For each item give its common name, its description as it would appear in the ");
+        prompt.append("USDA FoodData Central database (for example \"Rice, white, long-grain, regular, cooked\"), ");
+        prompt.append("the estimated serving size in grams and a confidence score. Nutrients are looked up from the ");
+        prompt.append("description, so set model_estimate to null for every item FoodData Central lists. Only for ");
+        prompt.append("items it is unlikely to have, such as branded products or regional dishes, estimate the ");
+        prompt.append("calories, macros and micros of the serving in model_estimate.");
+        
+        return prompt.toString();
+    }
+    
+    /**
+     * Creates the prompt for a meal photographed in several images.
+     * 
+     * Asks for the response DTO's own schema, with the photos each item appears in, so the
+     * answer can be reconciled and returned without mapping.
+     * 
+     * @param imageCount Number of photos attached to the prompt
+     * @param userProfile User's health profile, or null
+     * @return Meal analysis prompt
+     */
+    private String createMealAnalysisPrompt(int imageCount, UserProfileDto userProfile) {
+        StringBuilder prompt = new StringBuilder();
+        
+        prompt.append("These ").append(imageCount).append(" photos, numbered 1 to ").append(imageCount)
+              .append(" in the order attached, show one meal (for example the plate, a side dish and a drink). ");
+        prompt.append("Analyze the whole meal for a ");
+        appendProfile(prompt, userProfile);
+        
+        prompt.append("List every food or drink item once, even when it appears in several photos, ");
+        prompt.append("and give the numbers of all photos it appears in. Do not count the same item twice.\n");
+        prompt.append("Return your response in the following JSON format only:\n");
+        prompt.append("{\n");
+        prompt.append("  \"food_items\": [\n");
+        prompt.append("    {\n");
+        prompt.append("      \"name\": \"food name\",\n");
+        prompt.append("      \"serving_size_g\": grams,\n");
+        prompt.append("      \"calories_kcal\": estimated_calories,\n");
+        prompt.append("      \"macros\": { \"protein_g\": grams, \"fat_g\": grams, \"carb_g\": grams },\n");
+        prompt.append("      \"micros\": { \"sodium_mg\": milligrams, \"fiber_g\": grams },\n");
+        prompt.append("      \"confidence\": confidence_score_0_to_1,\n");
+        prompt.append("      \"image_indexes\": [photo_numbers]\n");
+        prompt.append("    }\n");
+        prompt.append("  ],\n");
+        prompt.append("  \"total_estimated_calories_kcal\": total_estimated_calories,\n");
+        prompt.append("  \"sources\": [\"reference databases used\"]\n");
+        prompt.append("}");
+        
+        return prompt.toString();
+    }
+    
+    /**
+     * Appends the user description shared by the analysis prompts.
+     */
+    private void appendProfile(StringBuilder prompt, UserProfileDto userProfile) {
         if (userProfile != null) {
             prompt.append(userProfile.getAge() != null ? userProfile.getAge() : "adult")
                   .append(" year old ")
@@ -163,44 +784,6 @@ public class FoodAnalysisService {
         } else {
             prompt.append("person.\n\n");
         }
-        
-        prompt.append("Provide a detailed nutritional breakdown with personalized insights. ");
-        prompt.append("Return your response in the following JSON format:\n");
-        prompt.append("{\n");
-        prompt.append("  \"foodItems\": [\n");
-        prompt.append("    {\n");
-        prompt.append("      \"name\": \"food name\",\n");
-        prompt.append("      \"quantity\": \"estimated portion size\",\n");
-        prompt.append("      \"calories\": estimated_calories,\n");
-        prompt.append("      \"confidence\": confidence_score_0_to_1\n");
-        prompt.append("    }\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"totalCalories\": total_estimated_calories,\n");
-        prompt.append("  \"macronutrients\": {\n");
-        prompt.append("    \"carbohydrates\": grams,\n");
-        prompt.append("    \"proteins\": grams,\n");
-        prompt.append("    \"fats\": grams,\n");
-        prompt.append("    \"fiber\": grams\n");
-        prompt.append("  },\n");
-        prompt.append("  \"micronutrients\": {\n");
-        prompt.append("    \"vitamin_c\": \"amount with unit\",\n");
-        prompt.append("    \"iron\": \"amount with unit\",\n");
-        prompt.append("    \"calcium\": \"amount with unit\"\n");
-        prompt.append("  }");
-        
-        if (userProfile != null) {
-            prompt.append(",\n");
-            prompt.append("  \"personalizedInsights\": {\n");
-            prompt.append("    \"healthAlignment\": \"How this meal aligns with user's health goals\",\n");
-            prompt.append("    \"allergenWarnings\": \"Any allergen concerns based on user profile\",\n");
-            prompt.append("    \"portionRecommendation\": \"Recommended portion size for this user\",\n");
-            prompt.append("    \"nutritionalHighlights\": \"Key nutrients beneficial for user's health conditions\"\n");
-            prompt.append("  }");
-        }
-        
-        prompt.append("\n}");
-        
-        return prompt.toString();
     }
     
     /**
@@ -0,0 +1,82 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.NutritionAnalysisResponse;
+import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs food image analyses as Server-Sent Events.
+ *
+ * Events, in order:
+ * - "food_item": one FoodItemDto per event, sent as soon as the model has finished writing it
+ * - "complete": the full NutritionAnalysisResponse, including total calories and sources
+ * An "error" event replaces the remaining events if the analysis fails.
+ */
+@Service
+public class FoodAnalysisStreamService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(FoodAnalysisStreamService.class);
+
+    private final FoodAnalysisService foodAnalysisService;
+
+    // Each analysis blocks on image normalization and the model stream, so virtual threads are a good fit
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public FoodAnalysisStreamService(FoodAnalysisService foodAnalysisService) {
+        this.foodAnalysisService = foodAnalysisService;
+    }
+
+    /**
+     * Starts an analysis and returns the emitter its events are written to.
+     *
+     * @param imageFile Validated food image
+     * @param userProfile User profile, or null
+     * @return Emitter that completes after the "complete" or "error" event
+     */
+    public SseEmitter streamAnalysis(MultipartFile imageFile, UserProfileDto userProfile) {
+        // No explicit timeout: spring.mvc.async.request-timeout applies
+        SseEmitter emitter = new SseEmitter();
+        executor.execute(() -> runAnalysis(imageFile, userProfile, emitter));
+        return emitter;
+    }
+
+    private void runAnalysis(MultipartFile imageFile, UserProfileDto userProfile, SseEmitter emitter) {
+        try {
+            NutritionAnalysisResponse response = foodAnalysisService.streamFoodAnalysis(imageFile, userProfile,
+                    item -> emitter.send(SseEmitter.event().name("food_item").data(item, MediaType.APPLICATION_JSON)));
+            emitter.send(SseEmitter.event().name("complete").data(response, MediaType.APPLICATION_JSON));
+            emitter.complete();
+
+        } catch (IOException e) {
+            // The client went away; the container completes the request
+            logger.debug("Streamed food analysis aborted: {}", e.getMessage());
+
+        } catch (Exception e) {
+            logger.error("Streamed food analysis failed: {}", e.getMessage());
+            try {
+                emitter.send(SseEmitter.event().name("error").data(Map.of("error", "Failed to analyze food image"), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception sendFailure) {
+                // Emitter already completed or timed out
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -1,16 +1,30 @@
 package health.myvita.spring_ai_demo.spring_ai.service;
 
+import health.myvita.spring_ai_demo.spring_ai.cache.CoachAdviceCache;
 import health.myvita.spring_ai_demo.spring_ai.dto.HealthCoachResponse;
 import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+import health.myvita.spring_ai_demo.spring_ai.logging.ModelIoLogger;
+import health.myvita.spring_ai_demo.spring_ai.session.CoachSessionMemory;
+import health.myvita.spring_ai_demo.spring_ai.triage.RedFlagTriage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.openai.OpenAiChatOptions;
-import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 /**
  * Service class for health coaching conversations using GPT-4 mini.
  * 
@@ -24,6 +38,15 @@ public class HealthCoachService {
     
     private final ChatClient chatClient;
     private final ObjectMapper objectMapper;
+    private final ModelIoLogger modelIoLogger;
+    private final CoachAdviceCache adviceCache;
+    private final RedFlagTriage redFlagTriage;
+    private final CoachModelRouter modelRouter;
+    private final CoachSessionMemory sessionMemory;
+    private final MessageChatMemoryAdvisor sessionMemoryAdvisor;
+    
+    // Model I/O log category, i.e. the "model-io.health-coach" logger
+    private static final String LOG_CATEGORY = "health-coach";
     
     // System prompt for health coaching - emphasizes safety and evidence-based advice
     private static final String SYSTEM_PROMPT = 
@@ -59,19 +82,40 @@ public class HealthCoachService {
         "\n" +
         "Your goal is to empower users with knowledge while ensuring they seek appropriate professional care when needed.";
     
-    public HealthCoachService(ChatClient.Builder chatClientBuilder) {
-        // Configure the chat client for health coaching using GPT-4 mini
-        this.chatClient = chatClientBuilder
-                .defaultOptions(OpenAiChatOptions.builder()
-                        // .model(OpenAiApi.ChatModel.GPT_4_1_MINI.getValue())
-                        // .temperature(0.1)  // Low temperature for consistent analysis
-                        .model(OpenAiApi.ChatModel.O4_MINI.getValue())
-                        .temperature(1.0)
-                        .reasoningEffort("high")
-                        .build())
-                .build();
+    public HealthCoachService(ChatClient.Builder chatClientBuilder, ModelIoLogger modelIoLogger,
+                              CoachAdviceCache adviceCache, RedFlagTriage redFlagTriage,
+                              CoachModelRouter modelRouter, CoachSessionMemory sessionMemory) {
+        // Model, temperature and reasoning effort are chosen per request by the CoachModelRouter
+        this.chatClient = chatClientBuilder.build();
         
         this.objectMapper = new ObjectMapper();
+        this.modelIoLogger = modelIoLogger;
+        this.adviceCache = adviceCache;
+        this.redFlagTriage = redFlagTriage;
+        this.modelRouter = modelRouter;
+        this.sessionMemory = sessionMemory;
+        this.sessionMemoryAdvisor = MessageChatMemoryAdvisor.builder(sessionMemory).build();
+    }
+    
+    public boolean isSessionSupportEnabled() {
+        return sessionMemory.isEnabled();
+    }
+    
+    /**
+     * Starts a coaching session; pass its id with each message to continue the conversation.
+     * 
+     * @return The session id
+     */
+    public String startSession() {
+        return sessionMemory.create();
+    }
+    
+    public boolean hasSession(String sessionId) {
+        return sessionMemory.exists(sessionId);
+    }
+    
+    public void endSession(String sessionId) {
+        sessionMemory.clear(sessionId);
     }
     
     /**
@@ -82,24 +126,47 @@ public class HealthCoachService {
      * @return HealthCoachResponse with structured advice and recommendations
      */
     public HealthCoachResponse provideHealthAdvice(String userMessage, UserProfileDto userProfile) {
+        return provideHealthAdvice(userMessage, userProfile, null);
+    }
+    
+    /**
+     * Same as {@link #provideHealthAdvice(String, UserProfileDto)}, as the next turn of a session.
+     * 
+     * @param sessionId Session started with {@link #startSession()}, or null for a one-off request
+     */
+    public HealthCoachResponse provideHealthAdvice(String userMessage, UserProfileDto userProfile, String sessionId) {
         try {
             logger.info("Processing health coaching request");
-            logger.debug("User message: {}", userMessage);
             
-            // Create personalized coaching prompt
-            String personalizedPrompt = createPersonalizedCoachingPrompt(userMessage, userProfile);
+            // Emergency signs are answered at once from the local lexicon, not after a long reasoning call
+            RedFlagTriage.Scan scan = redFlagTriage.scan(userMessage);
+            Optional<HealthCoachResponse> triage = redFlagTriage.assess(scan);
+            if (triage.isPresent()) {
+                recordTurn(sessionId, userMessage, triage.get());
+                triage.get().setSessionId(sessionId);
+                return triage.get();
+            }
             
-            // Use the default GPT_4_O_MINI model configured in the constructor
-            String response = chatClient.prompt()
-                    .system(SYSTEM_PROMPT)
-                    .user(personalizedPrompt)
-                    .call()
-                    .content();
+            // Paraphrases of a recent message from the same cohort get the same advice
+            CoachAdviceCache.Lookup lookup = lookupAdvice(userMessage, userProfile, sessionId);
+            if (lookup.response() != null) {
+                return lookup.response();
+            }
+            
+            // Trivial questions go to a fast model, involved ones to a reasoning model;
+            // the prompt is built from the cohort profile when the advice is shared
+            String response = callModel(modelRouter.route(userMessage, scan, userProfile),
+                    coachingRequest(userMessage, lookup.promptProfile(), sessionId));
             
-            logger.debug("Health coach response: {}", response);
+            modelIoLogger.response(LOG_CATEGORY, response);
             
             // Parse the structured response into our DTO
-            return parseHealthCoachResponse(response);
+            HealthCoachResponse advice = parseHealthCoachResponse(response);
+            if (isStructured(response)) {
+                adviceCache.put(lookup, advice);
+            }
+            advice.setSessionId(sessionId);
+            return advice;
             
         } catch (Exception e) {
             logger.error("Error providing health advice", e);
@@ -107,6 +174,244 @@ public class HealthCoachService {
         }
     }
     
+    /**
+     * Receives the parts of a streamed coaching answer as they are completed.
+     */
+    public interface AdviceStreamListener {
+        
+        void onSummary(String summary) throws IOException;
+        
+        void onPossibleCause(String cause) throws IOException;
+        
+        void onTip(String tip) throws IOException;
+        
+        void onUrgency(String urgency) throws IOException;
+        
+        /**
+         * Called first, and instead of a cache lookup, when the message contains red flags; the
+         * other methods follow only if the model's advice is streamed after the triage answer.
+         */
+        void onTriage(HealthCoachResponse triage) throws IOException;
+    }
+    
+    /**
+     * Same as {@link #provideHealthAdvice}, but streams the model answer and reports summary,
+     * causes, tips and urgency to the listener as each is completed.
+     * 
+     * When the message contains red flags, the triage answer is reported first. The model's advice
+     * follows if stream enrichment is on, with its urgency raised to high and the red flags kept.
+     * 
+     * @param userMessage The user's description of how they feel or their health concerns
+     * @param userProfile User's health profile for personalized advice
+     * @param sessionId Session started with {@link #startSession()}, or null for a one-off request
+     * @param listener Receives each part of the answer as it is completed
+     * @return The complete advice, identical to what provideHealthAdvice returns for the same answer
+     * @throws IOException if the listener fails, e.g. because the client went away
+     */
+    public HealthCoachResponse streamHealthAdvice(String userMessage, UserProfileDto userProfile, String sessionId,
+                                                  AdviceStreamListener listener) throws IOException {
+        logger.info("Processing streamed health coaching request");
+        
+        RedFlagTriage.Scan scan = redFlagTriage.scan(userMessage);
+        Optional<HealthCoachResponse> triage = redFlagTriage.assess(scan);
+        if (triage.isPresent()) {
+            triage.get().setSessionId(sessionId);
+            listener.onTriage(triage.get());
+            if (!redFlagTriage.isStreamEnrichment()) {
+                recordTurn(sessionId, userMessage, triage.get());
+                return triage.get();
+            }
+            // Not cached: the triage answers this message before any cache lookup
+            String response = streamModelAnswer(modelRouter.route(userMessage, scan, userProfile),
+                    coachingRequest(userMessage, userProfile, sessionId),
+                    new HighUrgencyListener(listener));
+            HealthCoachResponse advice = parseHealthCoachResponse(response);
+            advice.setUrgency(triage.get().getUrgency());
+            advice.setRedFlags(triage.get().getRedFlags());
+            advice.setSessionId(sessionId);
+            return advice;
+        }
+        
+        CoachAdviceCache.Lookup lookup = lookupAdvice(userMessage, userProfile, sessionId);
+        if (lookup.response() != null) {
+            replay(lookup.response(), listener);
+            return lookup.response();
+        }
+        
+        String response = streamModelAnswer(modelRouter.route(userMessage, scan, userProfile),
+                coachingRequest(userMessage, lookup.promptProfile(), sessionId), listener);
+        HealthCoachResponse advice = parseHealthCoachResponse(response);
+        if (isStructured(response)) {
+            adviceCache.put(lookup, advice);
+        }
+        advice.setSessionId(sessionId);
+        return advice;
+    }
+    
+    /**
+     * Looks up cached advice; session turns depend on the conversation so far and are never cached.
+     */
+    private CoachAdviceCache.Lookup lookupAdvice(String userMessage, UserProfileDto userProfile, String sessionId) {
+        if (sessionId != null) {
+            return new CoachAdviceCache.Lookup(userProfile, null, null, null);
+        }
+        return adviceCache.lookup(userMessage, userProfile);
+    }
+    
+    /**
+     * Builds the model request. One-off requests send the personalized prompt as the user
+     * message. Session turns send the user's message as is, with the profile and answer format
+     * in the system prompt and the session memory (summary and recent turns) before it, so only
+     * the conversation is stored and the prompt stays the same size turn after turn.
+     */
+    private ChatClient.ChatClientRequestSpec coachingRequest(String userMessage, UserProfileDto promptProfile, String sessionId) {
+        if (sessionId == null) {
+            String personalizedPrompt = createPersonalizedCoachingPrompt(userMessage, promptProfile);
+            modelIoLogger.request(LOG_CATEGORY, personalizedPrompt);
+            return chatClient.prompt()
+                    .system(SYSTEM_PROMPT)
+                    .user(personalizedPrompt);
+        }
+        modelIoLogger.request(LOG_CATEGORY, userMessage);
+        return chatClient.prompt()
+                .system(createSessionSystemPrompt(promptProfile))
+                .user(userMessage)
+                .advisors(advisors -> advisors
+                        .advisors(sessionMemoryAdvisor)
+                        .param(ChatMemory.CONVERSATION_ID, sessionId));
+    }
+    
+    /**
+     * Adds a turn answered without the model, e.g. by the triage, to the session.
+     */
+    private void recordTurn(String sessionId, String userMessage, HealthCoachResponse advice) {
+        if (sessionId != null) {
+            sessionMemory.add(sessionId, List.of(new UserMessage(userMessage), new AssistantMessage(formatAdvice(advice))));
+        }
+    }
+    
+    /**
+     * Asks the routed model for an answer and records its latency and token usage.
+     * 
+     * @return The answer text
+     */
+    private String callModel(CoachModelRouter.Route route, ChatClient.ChatClientRequestSpec request) {
+        long started = System.nanoTime();
+        Usage usage = null;
+        boolean failed = true;
+        try {
+            ChatResponse chatResponse = request
+                    .options(route.options(false))
+                    .call()
+                    .chatResponse();
+            failed = false;
+            if (chatResponse == null || chatResponse.getResult() == null) {
+                return null;
+            }
+            usage = chatResponse.getMetadata().getUsage();
+            return chatResponse.getResult().getOutput().getText();
+        } finally {
+            modelRouter.record(route, System.nanoTime() - started, usage, failed);
+        }
+    }
+    
+    /**
+     * Streams the routed model's answer to a prompt through the section parser and records its
+     * latency and token usage.
+     * 
+     * @return The complete answer text
+     */
+    private String streamModelAnswer(CoachModelRouter.Route route, ChatClient.ChatClientRequestSpec request,
+                                     AdviceStreamListener listener) throws IOException {
+        CoachResponseStreamParser parser = new CoachResponseStreamParser(listener);
+        
+        long started = System.nanoTime();
+        Usage usage = null;
+        boolean failed = true;
+        // Closing the stream cancels the model request, e.g. when the client has gone away
+        try (Stream<ChatResponse> chunks = request
+                .options(route.options(true))
+                .stream()
+                .chatResponse()
+                .toStream()) {
+            
+            Iterator<ChatResponse> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                ChatResponse chunk = iterator.next();
+                // Usage comes with the last chunk, which has no text
+                Usage chunkUsage = chunk.getMetadata().getUsage();
+                if (chunkUsage != null && chunkUsage.getTotalTokens() != null && chunkUsage.getTotalTokens() > 0) {
+                    usage = chunkUsage;
+                }
+                String text = chunk.getResult() != null ? chunk.getResult().getOutput().getText() : null;
+                if (text != null && !text.isEmpty()) {
+                    parser.feed(text);
+                }
+            }
+            failed = false;
+        } finally {
+            modelRouter.record(route, System.nanoTime() - started, usage, failed);
+        }
+        
+        String response = parser.finish();
+        modelIoLogger.response(LOG_CATEGORY, response);
+        return response;
+    }
+    
+    /**
+     * Passes model advice through after a red-flag triage, keeping the urgency at high whatever
+     * the model rates it.
+     */
+    private record HighUrgencyListener(AdviceStreamListener delegate) implements AdviceStreamListener {
+        
+        @Override
+        public void onSummary(String summary) throws IOException {
+            delegate.onSummary(summary);
+        }
+        
+        @Override
+        public void onPossibleCause(String cause) throws IOException {
+            delegate.onPossibleCause(cause);
+        }
+        
+        @Override
+        public void onTip(String tip) throws IOException {
+            delegate.onTip(tip);
+        }
+        
+        @Override
+        public void onUrgency(String urgency) throws IOException {
+            delegate.onUrgency("high");
+        }
+        
+        @Override
+        public void onTriage(HealthCoachResponse triage) throws IOException {
+            delegate.onTriage(triage);
+        }
+    }
+    
+    /**
+     * Sends cached advice to a stream listener part by part, as if the model had written it.
+     */
+    private static void replay(HealthCoachResponse advice, AdviceStreamListener listener) throws IOException {
+        listener.onSummary(advice.getSummary());
+        for (String cause : advice.getPossibleCauses()) {
+            listener.onPossibleCause(cause);
+        }
+        for (String tip : advice.getTips()) {
+            listener.onTip(tip);
+        }
+        listener.onUrgency(advice.getUrgency());
+    }
+    
+    /**
+     * Whether the model answered in the requested format; advice filled in with the parser's
+     * fallback text is not worth caching.
+     */
+    private static boolean isStructured(String response) {
+        return response != null && response.contains("Summary:") && response.contains("Tips:");
+    }
+    
     /**
      * Creates a personalized coaching prompt based on user message and profile.
      * 
@@ -117,6 +422,35 @@ public class HealthCoachService {
     private String createPersonalizedCoachingPrompt(String userMessage, UserProfileDto userProfile) {
         StringBuilder prompt = new StringBuilder();
         
+        appendProfile(prompt, userProfile);
+        
+        prompt.append("USER MESSAGE:\n");
+        prompt.append(userMessage).append("\n\n");
+        
+        appendResponseFormat(prompt);
+        
+        return prompt.toString();
+    }
+    
+    /**
+     * Creates the system prompt for a session turn: the coaching guidelines, the user's profile
+     * and the answer format, which then apply to every message of the conversation.
+     */
+    private String createSessionSystemPrompt(UserProfileDto userProfile) {
+        StringBuilder prompt = new StringBuilder(SYSTEM_PROMPT).append("\n\n");
+        
+        appendProfile(prompt, userProfile);
+        
+        prompt.append("This is an ongoing conversation: a summary of its earlier part and its recent messages ");
+        prompt.append("come before the user's latest message. Build on them, and do not ask again for details ");
+        prompt.append("the user already gave. Answer the latest message.\n\n");
+        
+        appendResponseFormat(prompt);
+        
+        return prompt.toString();
+    }
+    
+    private static void appendProfile(StringBuilder prompt, UserProfileDto userProfile) {
         prompt.append("USER PROFILE:\n");
         if (userProfile != null) {
             prompt.append("Age: ").append(userProfile.getAge() != null ? userProfile.getAge() : "Not specified").append("\n");
@@ -135,10 +469,9 @@ public class HealthCoachService {
         } else {
             prompt.append("Profile not available - provide general guidance\n\n");
         }
-        
-        prompt.append("USER MESSAGE:\n");
-        prompt.append(userMessage).append("\n\n");
-        
+    }
+    
+    private static void appendResponseFormat(StringBuilder prompt) {
         prompt.append("Please provide personalized health coaching advice considering their profile. ");
         prompt.append("Provide your response in a structured format:\n\n");
         prompt.append("Summary: [Brief summary of what the user is experiencing]\n\n");
@@ -150,8 +483,24 @@ public class HealthCoachService {
         prompt.append("- [Tip 2 - consider their dietary preferences/allergies]\n");
         prompt.append("- [Tip 3 - appropriate for their activity level]\n\n");
         prompt.append("Urgency: [none/low/medium/high]");
-        
-        return prompt.toString();
+    }
+    
+    /**
+     * Writes advice in the answer format the model is asked for, e.g. to store it in a session.
+     */
+    private static String formatAdvice(HealthCoachResponse advice) {
+        StringBuilder text = new StringBuilder();
+        text.append("Summary: ").append(advice.getSummary()).append("\n\n");
+        text.append("Possible Causes:\n");
+        for (String cause : advice.getPossibleCauses()) {
+            text.append("- ").append(cause).append("\n");
+        }
+        text.append("\nTips:\n");
+        for (String tip : advice.getTips()) {
+            text.append("- ").append(tip).append("\n");
+        }
+        text.append("\nUrgency: ").append(advice.getUrgency());
+        return text.toString();
     }
     
     /**
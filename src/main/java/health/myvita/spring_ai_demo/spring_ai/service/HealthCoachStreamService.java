@@ -0,0 +1,117 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.HealthCoachResponse;
+import health.myvita.spring_ai_demo.spring_ai.dto.UserProfileDto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs health coaching requests as Server-Sent Events.
+ *
+ * Events, as the model writes the answer:
+ * - "triage": the local red-flag triage answer, a HealthCoachResponse with urgency high and
+ *   red_flags set; first, and only when the message contains emergency signs
+ * - "summary": {"summary": ...}
+ * - "possible_cause": {"possible_cause": ...}, one per cause
+ * - "tip": {"tip": ...}, one per tip
+ * - "urgency": {"urgency": ...}
+ * - "complete": the full HealthCoachResponse; after a triage, the model's advice with urgency
+ *   high and red_flags, or the triage answer again when stream enrichment is off
+ * An "error" event replaces the remaining events if the request fails.
+ */
+@Service
+public class HealthCoachStreamService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(HealthCoachStreamService.class);
+
+    private final HealthCoachService healthCoachService;
+
+    // Each request blocks on the model stream for tens of seconds, so virtual threads are a good fit
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public HealthCoachStreamService(HealthCoachService healthCoachService) {
+        this.healthCoachService = healthCoachService;
+    }
+
+    /**
+     * Starts a coaching request and returns the emitter its events are written to.
+     *
+     * @param userMessage Validated user message
+     * @param userProfile User profile, or null
+     * @param sessionId Existing session to continue, or null
+     * @return Emitter that completes after the "complete" or "error" event
+     */
+    public SseEmitter streamAdvice(String userMessage, UserProfileDto userProfile, String sessionId) {
+        // No explicit timeout: spring.mvc.async.request-timeout applies
+        SseEmitter emitter = new SseEmitter();
+        executor.execute(() -> runAdvice(userMessage, userProfile, sessionId, emitter));
+        return emitter;
+    }
+
+    private void runAdvice(String userMessage, UserProfileDto userProfile, String sessionId, SseEmitter emitter) {
+        try {
+            HealthCoachResponse response = healthCoachService.streamHealthAdvice(userMessage, userProfile, sessionId,
+                    new HealthCoachService.AdviceStreamListener() {
+                        @Override
+                        public void onSummary(String summary) throws IOException {
+                            send(emitter, "summary", summary);
+                        }
+
+                        @Override
+                        public void onPossibleCause(String cause) throws IOException {
+                            send(emitter, "possible_cause", cause);
+                        }
+
+                        @Override
+                        public void onTip(String tip) throws IOException {
+                            send(emitter, "tip", tip);
+                        }
+
+                        @Override
+                        public void onUrgency(String urgency) throws IOException {
+                            send(emitter, "urgency", urgency);
+                        }
+
+                        @Override
+                        public void onTriage(HealthCoachResponse triage) throws IOException {
+                            emitter.send(SseEmitter.event().name("triage").data(triage, MediaType.APPLICATION_JSON));
+                        }
+                    });
+            emitter.send(SseEmitter.event().name("complete").data(response, MediaType.APPLICATION_JSON));
+            emitter.complete();
+
+        } catch (IOException e) {
+            // The client went away; the container completes the request
+            logger.debug("Streamed health advice aborted: {}", e.getMessage());
+
+        } catch (Exception e) {
+            logger.error("Streamed health advice failed: {}", e.getMessage());
+            try {
+                emitter.send(SseEmitter.event().name("error").data(Map.of("error", "Failed to provide health advice"), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception sendFailure) {
+                // Emitter already completed or timed out
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private static void send(SseEmitter emitter, String name, String value) throws IOException {
+        emitter.send(SseEmitter.event().name(name).data(Map.of(name, value), MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
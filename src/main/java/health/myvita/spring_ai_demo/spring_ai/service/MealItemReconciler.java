@@ -0,0 +1,117 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.FoodItemDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Merges food items the model reported more than once across the photos of one meal.
+ *
+ * The prompt asks for each physical item once, listing every photo it shows up in, but a plate
+ * shot from two angles still regularly comes back as two entries. Items count as the same when
+ * their names match after normalization (case, punctuation, word order, simple plurals) and they
+ * were attributed to different photos; two matching items in the same photo are kept apart, since
+ * that is two servings. The highest-confidence entry is kept, with the photo indexes of both.
+ */
+final class MealItemReconciler {
+
+    private MealItemReconciler() {}
+
+    /**
+     * @param items Items as parsed from the model, possibly with duplicates
+     * @param imageCount Number of photos sent; indexes outside 1..imageCount are dropped
+     * @return Reconciled items in the order they were first reported
+     */
+    static List<FoodItemDto> reconcile(List<FoodItemDto> items, int imageCount) {
+        if (items == null || items.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, List<Group>> groupsByName = new LinkedHashMap<>();
+        List<Group> groups = new ArrayList<>();
+        for (FoodItemDto item : items) {
+            TreeSet<Integer> indexes = validIndexes(item.getImageIndexes(), imageCount);
+            List<Group> sameName = groupsByName.computeIfAbsent(normalizeName(item.getName()), k -> new ArrayList<>());
+
+            Group duplicateOf = null;
+            for (Group group : sameName) {
+                if (!indexes.isEmpty() && Collections.disjoint(group.indexes, indexes)) {
+                    duplicateOf = group;
+                    break;
+                }
+            }
+            if (duplicateOf == null) {
+                Group group = new Group(item, indexes);
+                sameName.add(group);
+                groups.add(group);
+            } else {
+                duplicateOf.merge(item, indexes);
+            }
+        }
+
+        List<FoodItemDto> reconciled = new ArrayList<>(groups.size());
+        for (Group group : groups) {
+            group.best.setImageIndexes(new ArrayList<>(group.indexes));
+            reconciled.add(group.best);
+        }
+        return reconciled;
+    }
+
+    static int totalCalories(List<FoodItemDto> items) {
+        return items.stream().mapToInt(FoodItemDto::getCaloriesKcal).sum();
+    }
+
+    private static TreeSet<Integer> validIndexes(List<Integer> indexes, int imageCount) {
+        TreeSet<Integer> valid = new TreeSet<>();
+        if (indexes != null) {
+            for (Integer index : indexes) {
+                if (index != null && index >= 1 && index <= imageCount) {
+                    valid.add(index);
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * "Grilled Chicken-Breasts" and "chicken breast, grilled" both become "breast chicken grilled".
+     */
+    static String normalizeName(String name) {
+        if (name == null) {
+            return "";
+        }
+        String[] words = name.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim().split(" ");
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+                words[i] = word.substring(0, word.length() - 1);
+            }
+        }
+        Arrays.sort(words);
+        return String.join(" ", words);
+    }
+
+    private static final class Group {
+        FoodItemDto best;
+        final TreeSet<Integer> indexes;
+
+        Group(FoodItemDto item, TreeSet<Integer> indexes) {
+            this.best = item;
+            this.indexes = indexes;
+        }
+
+        void merge(FoodItemDto item, TreeSet<Integer> itemIndexes) {
+            if (item.getConfidence() > best.getConfidence()) {
+                best = item;
+            }
+            indexes.addAll(itemIndexes);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.FoodItemDto;
+import health.myvita.spring_ai_demo.spring_ai.dto.NutritionAnalysisResponse;
+import health.myvita.spring_ai_demo.spring_ai.json.LenientJsonParser;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses a NutritionAnalysisResponse as the model streams it, handing over each food_items
+ * element as soon as its closing brace arrives.
+ *
+ * Chunks go through Jackson's non-blocking parser, which keeps its state between chunks, so
+ * every byte is tokenized once. The tokens of the element being read are collected in a
+ * TokenBuffer and bound to a FoodItemDto when the element closes. The whole document is also
+ * kept so finish() can bind the complete response through the {@link LenientJsonParser}. If the
+ * stream stops being valid JSON, incremental delivery stops and the repaired document decides
+ * what the response is.
+ *
+ * Not thread-safe; one instance per model response.
+ */
+final class NutritionResponseStreamParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(NutritionResponseStreamParser.class);
+
+    private static final String FOOD_ITEMS_FIELD = "food_items";
+
+    /**
+     * Receives each food item as soon as it is complete.
+     */
+    @FunctionalInterface
+    interface FoodItemHandler {
+        void onFoodItem(FoodItemDto item) throws IOException;
+    }
+
+    private final ObjectMapper objectMapper;
+    private final LenientJsonParser jsonParser;
+    private final FoodItemHandler handler;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final StringBuilder document = new StringBuilder();
+
+    // Nesting depth after the current token: 1 inside the root object, 2 inside food_items
+    private int depth;
+    private boolean inFoodItems;
+    private TokenBuffer item;
+    private boolean failed;
+    private int itemCount;
+
+    NutritionResponseStreamParser(ObjectMapper objectMapper, LenientJsonParser jsonParser,
+                                  FoodItemHandler handler) throws IOException {
+        this.objectMapper = objectMapper;
+        this.jsonParser = jsonParser;
+        this.handler = handler;
+        this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feeds the next piece of the model output and delivers any food items it completes.
+     *
+     * @throws IOException only when the handler fails, e.g. because the client went away
+     */
+    void feed(String chunk) throws IOException {
+        document.append(chunk);
+        if (failed) {
+            return;
+        }
+
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        JsonToken token;
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                FoodItemDto completed = onToken(token);
+                if (completed != null) {
+                    itemCount++;
+                    handler.onFoodItem(completed);
+                }
+            }
+        } catch (JacksonException e) {
+            // Binding or syntax error: the remaining items come with the complete response, if at all
+            logger.warn("Stopped incremental parsing of the food analysis: {}", e.getOriginalMessage());
+            failed = true;
+        }
+    }
+
+    /**
+     * Number of food items delivered to the handler so far.
+     */
+    int itemCount() {
+        return itemCount;
+    }
+
+    /**
+     * The model output fed so far, as received.
+     */
+    String document() {
+        return document.toString();
+    }
+
+    /**
+     * The complete response, once the model has finished.
+     *
+     * @return Parsed response, or null if the document is not a valid NutritionAnalysisResponse
+     */
+    NutritionAnalysisResponse finish() {
+        try {
+            parser.close();
+            NutritionAnalysisResponse response = jsonParser.parse(document.toString(), NutritionAnalysisResponse.class);
+            return response.getFoodItems() != null ? response : null;
+        } catch (IOException e) {
+            logger.warn("Could not parse streamed food analysis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private FoodItemDto onToken(JsonToken token) throws IOException {
+        if (item != null) {
+            item.copyCurrentEvent(parser);
+        }
+
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> {
+                if (token == JsonToken.START_OBJECT && inFoodItems && depth == 2 && item == null) {
+                    item = new TokenBuffer(parser, null);
+                    item.copyCurrentEvent(parser);
+                }
+                if (token == JsonToken.START_ARRAY && depth == 1 && FOOD_ITEMS_FIELD.equals(parser.currentName())) {
+                    inFoodItems = true;
+                }
+                depth++;
+            }
+            case END_OBJECT, END_ARRAY -> {
+                depth--;
+                if (token == JsonToken.END_OBJECT && item != null && depth == 2) {
+                    TokenBuffer completed = item;
+                    item = null;
+                    try (JsonParser itemParser = completed.asParser(objectMapper)) {
+                        return objectMapper.readValue(itemParser, FoodItemDto.class);
+                    }
+                }
+                if (token == JsonToken.END_ARRAY && inFoodItems && depth == 1) {
+                    inFoodItems = false;
+                }
+            }
+            default -> {
+                // Field names and scalar values only matter inside an item, where they are buffered above
+            }
+        }
+        return null;
+    }
+}
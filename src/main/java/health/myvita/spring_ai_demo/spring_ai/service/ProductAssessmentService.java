@@ -0,0 +1,192 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+import health.myvita.spring_ai_demo.spring_ai.dto.ProductAssessment;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rule-based assessment of a product from its OpenFoodFacts data.
+ *
+ * Deterministic and local: no model call, so it answers in microseconds and gives the same
+ * result for the same product. Traffic lights use the UK front-of-pack thresholds for foods
+ * per 100g.
+ */
+@Service
+public class ProductAssessmentService {
+
+    // { green upper bound (inclusive), red lower bound (exclusive) } in grams per 100g
+    private static final double[] SUGAR_THRESHOLDS = { 5.0, 22.5 };
+    private static final double[] SATURATED_FAT_THRESHOLDS = { 1.5, 5.0 };
+    private static final double[] SALT_THRESHOLDS = { 0.3, 1.5 };
+
+    private static final Map<String, String> NUTRISCORE_MEANINGS = Map.of(
+        "a", "Very good nutritional quality",
+        "b", "Good nutritional quality",
+        "c", "Average nutritional quality",
+        "d", "Poor nutritional quality",
+        "e", "Bad nutritional quality"
+    );
+
+    private static final Map<Integer, String> NOVA_MEANINGS = Map.of(
+        1, "Unprocessed or minimally processed food",
+        2, "Processed culinary ingredient",
+        3, "Processed food",
+        4, "Ultra-processed food"
+    );
+
+    // Keyed by OpenFoodFacts additive tag without the language prefix
+    private static final Map<String, String> ADDITIVES_OF_CONCERN = Map.ofEntries(
+        Map.entry("e102", "Azo dye linked to hyperactivity in children"),
+        Map.entry("e104", "Azo dye linked to hyperactivity in children"),
+        Map.entry("e110", "Azo dye linked to hyperactivity in children"),
+        Map.entry("e122", "Azo dye linked to hyperactivity in children"),
+        Map.entry("e124", "Azo dye linked to hyperactivity in children"),
+        Map.entry("e129", "Azo dye linked to hyperactivity in children"),
+        Map.entry("e171", "Titanium dioxide, no longer authorised in the EU"),
+        Map.entry("e211", "Sodium benzoate, may form benzene with vitamin C"),
+        Map.entry("e249", "Nitrite preservative associated with processed meat risks"),
+        Map.entry("e250", "Nitrite preservative associated with processed meat risks"),
+        Map.entry("e251", "Nitrate preservative associated with processed meat risks"),
+        Map.entry("e252", "Nitrate preservative associated with processed meat risks"),
+        Map.entry("e320", "BHA antioxidant, possible carcinogen"),
+        Map.entry("e321", "BHT antioxidant, under review"),
+        Map.entry("e621", "Monosodium glutamate, adds sodium"),
+        Map.entry("e950", "Acesulfame K, artificial sweetener"),
+        Map.entry("e951", "Aspartame, artificial sweetener; not suitable for phenylketonuria"),
+        Map.entry("e952", "Cyclamate, artificial sweetener"),
+        Map.entry("e954", "Saccharin, artificial sweetener"),
+        Map.entry("e955", "Sucralose, artificial sweetener")
+    );
+
+    /**
+     * Assesses a product.
+     *
+     * @param productInfo Product data from OpenFoodFacts
+     * @return Assessment; unknown values are reported as such rather than guessed
+     */
+    public ProductAssessment assess(BarcodeAnalysisResponse.ProductInfo productInfo) {
+        ProductAssessment assessment = new ProductAssessment();
+
+        BarcodeAnalysisResponse.QualityScores scores = productInfo.getQualityScores();
+        assessment.setNutriscore(interpretNutriscore(scores != null ? scores.getNutriscoreGrade() : null));
+        assessment.setNova(interpretNova(scores != null ? scores.getNovaGroup() : null));
+
+        BarcodeAnalysisResponse.NutritionPer100g nutrition = productInfo.getNutritionPer100g();
+        List<ProductAssessment.TrafficLight> trafficLights = new ArrayList<>();
+        trafficLights.add(trafficLight("sugars", nutrition != null ? nutrition.getSugarsG() : null, SUGAR_THRESHOLDS));
+        trafficLights.add(trafficLight("saturated_fat", nutrition != null ? nutrition.getSaturatedFatG() : null, SATURATED_FAT_THRESHOLDS));
+        trafficLights.add(trafficLight("salt", nutrition != null ? nutrition.getSaltG() : null, SALT_THRESHOLDS));
+        assessment.setTrafficLights(trafficLights);
+
+        assessment.setAllergenFlags(allergenFlags(productInfo.getAllergens()));
+        assessment.setAdditiveFlags(additiveFlags(productInfo.getAdditives()));
+        assessment.setSummary(summarize(assessment));
+        return assessment;
+    }
+
+    private ProductAssessment.ScoreInterpretation interpretNutriscore(String grade) {
+        String normalized = grade == null ? "" : grade.trim().toLowerCase(Locale.ROOT);
+        String meaning = NUTRISCORE_MEANINGS.get(normalized);
+        if (meaning == null) {
+            return new ProductAssessment.ScoreInterpretation("unknown", "Nutri-Score not available");
+        }
+        return new ProductAssessment.ScoreInterpretation(normalized.toUpperCase(Locale.ROOT), meaning);
+    }
+
+    private ProductAssessment.ScoreInterpretation interpretNova(Integer group) {
+        String meaning = group == null ? null : NOVA_MEANINGS.get(group);
+        if (meaning == null) {
+            return new ProductAssessment.ScoreInterpretation("unknown", "NOVA group not available");
+        }
+        return new ProductAssessment.ScoreInterpretation(String.valueOf(group), meaning);
+    }
+
+    private ProductAssessment.TrafficLight trafficLight(String nutrient, Double amount, double[] thresholds) {
+        String level;
+        if (amount == null) {
+            level = "unknown";
+        } else if (amount <= thresholds[0]) {
+            level = "green";
+        } else if (amount <= thresholds[1]) {
+            level = "amber";
+        } else {
+            level = "red";
+        }
+        return new ProductAssessment.TrafficLight(nutrient, amount, level);
+    }
+
+    /**
+     * Turns allergen tags such as "en:milk" or "en:sulphur-dioxide-and-sulphites" into readable names.
+     */
+    private List<String> allergenFlags(List<String> allergens) {
+        List<String> flags = new ArrayList<>();
+        if (allergens == null) {
+            return flags;
+        }
+        for (String tag : allergens) {
+            String name = stripLanguagePrefix(tag).replace('-', ' ').trim();
+            if (!name.isEmpty()) {
+                flags.add(Character.toUpperCase(name.charAt(0)) + name.substring(1));
+            }
+        }
+        return flags;
+    }
+
+    private List<ProductAssessment.AdditiveFlag> additiveFlags(List<String> additives) {
+        List<ProductAssessment.AdditiveFlag> flags = new ArrayList<>();
+        if (additives == null) {
+            return flags;
+        }
+        for (String tag : additives) {
+            // Tags can carry a variant suffix, e.g. "en:e150d" or "en:e322i"; match on the base code
+            String code = stripLanguagePrefix(tag).toLowerCase(Locale.ROOT);
+            String reason = ADDITIVES_OF_CONCERN.get(code);
+            if (reason == null && code.length() > 4) {
+                reason = ADDITIVES_OF_CONCERN.get(code.replaceAll("[a-z]+$", ""));
+            }
+            if (reason != null) {
+                flags.add(new ProductAssessment.AdditiveFlag(code.toUpperCase(Locale.ROOT), reason));
+            }
+        }
+        return flags;
+    }
+
+    private String summarize(ProductAssessment assessment) {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Nutri-Score ").append(assessment.getNutriscore().getValue())
+               .append(": ").append(assessment.getNutriscore().getMeaning()).append(". ");
+        summary.append("NOVA ").append(assessment.getNova().getValue())
+               .append(": ").append(assessment.getNova().getMeaning()).append(". ");
+
+        List<String> high = new ArrayList<>();
+        for (ProductAssessment.TrafficLight light : assessment.getTrafficLights()) {
+            if ("red".equals(light.getLevel())) {
+                high.add(light.getNutrient().replace('_', ' '));
+            }
+        }
+        if (!high.isEmpty()) {
+            summary.append("High in ").append(String.join(", ", high)).append(". ");
+        }
+        if (!assessment.getAllergenFlags().isEmpty()) {
+            summary.append("Contains allergens: ").append(String.join(", ", assessment.getAllergenFlags())).append(". ");
+        }
+        if (!assessment.getAdditiveFlags().isEmpty()) {
+            summary.append(assessment.getAdditiveFlags().size()).append(" additive(s) of concern.");
+        }
+        return summary.toString().trim();
+    }
+
+    private static String stripLanguagePrefix(String tag) {
+        if (tag == null) {
+            return "";
+        }
+        int colon = tag.indexOf(':');
+        return colon >= 0 ? tag.substring(colon + 1) : tag;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package health.myvita.spring_ai_demo.spring_ai.service;
+
+import health.myvita.spring_ai_demo.spring_ai.cache.HeavyHitters;
+import health.myvita.spring_ai_demo.spring_ai.cache.PopularBarcodeTracker;
+import health.myvita.spring_ai_demo.spring_ai.config.PopularityProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Preloads the previous run's most scanned products into the product cache after startup.
+ *
+ * Runs in the background and reports OUT_OF_SERVICE until it is done. The indicator is part
+ * of the readiness health group, so the node only takes traffic once its cache is warm (or
+ * the warm-up ran out of time). OpenFoodFacts fetches are throttled to protect the upstream.
+ */
+@Component
+public class ProductCacheWarmup implements ApplicationRunner, HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCacheWarmup.class);
+
+    private final BarcodeAnalysisService barcodeAnalysisService;
+    private final PopularBarcodeTracker popularBarcodes;
+    private final PopularityProperties properties;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private volatile int total;
+    private volatile boolean finished;
+
+    public ProductCacheWarmup(BarcodeAnalysisService barcodeAnalysisService, PopularBarcodeTracker popularBarcodes,
+                              PopularityProperties properties) {
+        this.barcodeAnalysisService = barcodeAnalysisService;
+        this.popularBarcodes = popularBarcodes;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<HeavyHitters.HeavyHitter> barcodes = popularBarcodes.getPersistedTop();
+        if (!properties.isEnabled() || !properties.getWarmup().isEnabled() || barcodes.isEmpty()) {
+            finished = true;
+            return;
+        }
+        total = barcodes.size();
+        Thread.ofVirtual().name("product-cache-warmup").start(() -> warm(barcodes));
+    }
+
+    @Override
+    public Health health() {
+        if (finished) {
+            return Health.up().withDetail("warmed", processed.get()).build();
+        }
+        return Health.outOfService().withDetail("progress", processed.get() + "/" + total).build();
+    }
+
+    private void warm(List<HeavyHitters.HeavyHitter> barcodes) {
+        long started = System.nanoTime();
+        long deadline = started + properties.getWarmup().getMaxDuration().toNanos();
+        long pauseMillis = 1000L / Math.max(1, properties.getWarmup().getFetchesPerSecond());
+        int fetched = 0;
+
+        try {
+            for (HeavyHitters.HeavyHitter barcode : barcodes) {
+                if (System.nanoTime() > deadline) {
+                    logger.warn("Product cache warm-up stopped after {} of {} barcodes: time limit reached", processed.get(), total);
+                    break;
+                }
+                if (barcodeAnalysisService.warmProductCache(barcode.key())) {
+                    fetched++;
+                    Thread.sleep(pauseMillis);
+                }
+                processed.incrementAndGet();
+            }
+            logger.info("Product cache warm-up finished: {} barcodes, {} fetched from OpenFoodFacts, {} ms",
+                    processed.get(), fetched, (System.nanoTime() - started) / 1_000_000);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Product cache warm-up failed after {} barcodes: {}", processed.get(), e.getMessage());
+        } finally {
+            // Never keep the node out of rotation because of the warm-up itself
+            finished = true;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,453 @@
+package health.myvita.spring_ai_demo.spring_ai.session;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import health.myvita.spring_ai_demo.spring_ai.config.CoachSessionProperties;
+import health.myvita.spring_ai_demo.spring_ai.logging.ModelIoLogger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Conversation memory for health coach sessions, used through Spring AI's
+ * MessageChatMemoryAdvisor with the session id as conversation id.
+ *
+ * Each session holds a running summary and the recent messages, and is kept within a token
+ * budget: once the budget is exceeded, the oldest messages (all but the most recent few) are
+ * handed to a small model that folds them into the summary, in the background. Until it is done
+ * they are still sent with each turn; if the session keeps growing meanwhile, its oldest
+ * messages are dropped. The memory sent per turn therefore stays around the budget however long
+ * the conversation gets.
+ *
+ * Sessions are kept in least-recently-used order. Beyond the maximum number of sessions or total
+ * tokens, the least recently used are evicted, and idle sessions expire. When a file is
+ * configured, sessions are written to it periodically and on shutdown, and read back on startup.
+ *
+ * Metrics: coach.session.active and coach.session.tokens gauges, coach.session.evictions by
+ * reason (idle, capacity), coach.session.compactions by result (success, failure),
+ * coach.session.dropped-messages, and the coach.session.memory.tokens histogram of memory sent
+ * per turn.
+ */
+@Component
+public class CoachSessionMemory implements ChatMemory, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoachSessionMemory.class);
+
+    // Model I/O log category, i.e. the "model-io.coach-summary" logger
+    private static final String LOG_CATEGORY = "coach-summary";
+
+    private static final String SUMMARY_SYSTEM_PROMPT =
+        "You maintain the running summary of a conversation between a user and a health coach. " +
+        "Merge the earlier summary and the new messages into one updated summary of at most %d words. " +
+        "Keep the user's symptoms and their timeline, relevant background, what they tried, the advice " +
+        "given and its urgency, and open questions. Leave out greetings and repetition. " +
+        "Reply with the summary only.";
+
+    private final CoachSessionProperties properties;
+    private final ChatClient summarizer;
+    private final ModelIoLogger modelIoLogger;
+    private final ObjectMapper objectMapper;
+    private final TokenCountEstimator tokenEstimator = new JTokkitTokenCountEstimator();
+    // Null when sessions are kept in memory only
+    private final Path file;
+
+    private final Counter idleEvictions;
+    private final Counter capacityEvictions;
+    private final Counter compactions;
+    private final Counter failedCompactions;
+    private final Counter droppedMessages;
+    private final DistributionSummary memoryTokens;
+
+    // Compaction blocks on a model call, so virtual threads are a good fit
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Guarded by this; in access order, least recently used first
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalTokens;
+    private boolean dirty;
+
+    private record Turn(MessageType type, String text, int tokens) {}
+
+    private static final class Session {
+        private String summary = "";
+        private int summaryTokens;
+        // Oldest messages being folded into the summary, still sent until that is done
+        private List<Turn> compacting = List.of();
+        private final List<Turn> turns = new ArrayList<>();
+        private int tokens;
+        private long lastAccess = System.currentTimeMillis();
+        private boolean removed;
+    }
+
+    /**
+     * @param role USER or ASSISTANT
+     */
+    record StoredTurn(String role, String text) {}
+
+    record StoredSession(String id, String summary, long lastAccess, List<StoredTurn> turns) {}
+
+    public CoachSessionMemory(CoachSessionProperties properties, ChatClient.Builder chatClientBuilder,
+                              ModelIoLogger modelIoLogger, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.summarizer = chatClientBuilder
+                .defaultOptions(OpenAiChatOptions.builder()
+                        .model(properties.getSummaryModel())
+                        .temperature(0.2)
+                        .maxCompletionTokens(properties.getSummaryMaxTokens())
+                        .build())
+                .defaultSystem(String.format(SUMMARY_SYSTEM_PROMPT, properties.getSummaryMaxTokens() * 3 / 4))
+                .build();
+        this.modelIoLogger = modelIoLogger;
+        this.objectMapper = objectMapper;
+        this.file = StringUtils.hasText(properties.getFile()) ? Paths.get(properties.getFile()) : null;
+
+        this.idleEvictions = meterRegistry.counter("coach.session.evictions", "reason", "idle");
+        this.capacityEvictions = meterRegistry.counter("coach.session.evictions", "reason", "capacity");
+        this.compactions = meterRegistry.counter("coach.session.compactions", "result", "success");
+        this.failedCompactions = meterRegistry.counter("coach.session.compactions", "result", "failure");
+        this.droppedMessages = meterRegistry.counter("coach.session.dropped-messages");
+        this.memoryTokens = DistributionSummary.builder("coach.session.memory.tokens")
+                .description("Tokens of conversation memory sent with a session turn")
+                .baseUnit("tokens")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("coach.session.active", this, CoachSessionMemory::size);
+        meterRegistry.gauge("coach.session.tokens", this, CoachSessionMemory::totalTokens);
+
+        if (properties.isEnabled() && file != null) {
+            load();
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Starts a session.
+     *
+     * @return The new session id
+     */
+    public synchronized String create() {
+        String id = UUID.randomUUID().toString();
+        sessions.put(id, new Session());
+        dirty = true;
+        evictOverCapacity();
+        return id;
+    }
+
+    public synchronized boolean exists(String conversationId) {
+        // containsKey does not count as an access
+        return sessions.containsKey(conversationId);
+    }
+
+    /**
+     * The memory for the next turn: the running summary, if any, then the recent messages.
+     */
+    @Override
+    public synchronized List<Message> get(String conversationId) {
+        Session session = sessions.get(conversationId);
+        if (session == null) {
+            return List.of();
+        }
+        session.lastAccess = System.currentTimeMillis();
+
+        List<Message> messages = new ArrayList<>();
+        if (!session.summary.isEmpty()) {
+            messages.add(new SystemMessage("Summary of the earlier conversation with this user:\n" + session.summary));
+        }
+        for (Turn turn : session.compacting) {
+            messages.add(toMessage(turn));
+        }
+        for (Turn turn : session.turns) {
+            messages.add(toMessage(turn));
+        }
+        memoryTokens.record(session.tokens);
+        return messages;
+    }
+
+    /**
+     * Appends user and assistant messages to a session, starting it if it has been evicted, and
+     * starts a compaction once the session is over its budget.
+     */
+    @Override
+    public synchronized void add(String conversationId, List<Message> messages) {
+        Session session = sessions.get(conversationId);
+        if (session == null) {
+            session = new Session();
+            sessions.put(conversationId, session);
+        }
+        session.lastAccess = System.currentTimeMillis();
+        for (Message message : messages) {
+            MessageType type = message.getMessageType();
+            String text = message.getText();
+            if ((type == MessageType.USER || type == MessageType.ASSISTANT) && StringUtils.hasText(text)) {
+                session.turns.add(new Turn(type, text, tokenEstimator.estimate(text)));
+            }
+        }
+        recount(session);
+        dirty = true;
+        startCompaction(conversationId, session);
+        evictOverCapacity();
+    }
+
+    @Override
+    public synchronized void clear(String conversationId) {
+        Session session = sessions.remove(conversationId);
+        if (session != null) {
+            remove(session);
+        }
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    public synchronized long totalTokens() {
+        return totalTokens;
+    }
+
+    /**
+     * Hands the oldest messages of a session over its budget to the summarizer; while a
+     * compaction is already running, drops them instead.
+     */
+    private void startCompaction(String conversationId, Session session) {
+        int budget = properties.getTokenBudget();
+        int keep = Math.max(0, properties.getKeepRecentMessages());
+        if (session.tokens <= budget) {
+            return;
+        }
+        if (!session.compacting.isEmpty()) {
+            while (session.tokens > budget && session.turns.size() > keep) {
+                session.turns.remove(0);
+                droppedMessages.increment();
+                recount(session);
+            }
+            return;
+        }
+
+        // Fold down to half the budget, so a compaction is not needed again on the next turn
+        List<Turn> folded = new ArrayList<>();
+        int remaining = session.tokens;
+        while (remaining > budget / 2 && session.turns.size() > keep) {
+            Turn turn = session.turns.remove(0);
+            folded.add(turn);
+            remaining -= turn.tokens();
+        }
+        if (folded.isEmpty()) {
+            return;
+        }
+        session.compacting = folded;
+        executor.execute(() -> compact(conversationId, session, folded));
+    }
+
+    private void compact(String conversationId, Session session, List<Turn> folded) {
+        String previous;
+        synchronized (this) {
+            previous = session.summary;
+        }
+
+        String summary = previous;
+        try {
+            String prompt = summaryPrompt(previous, folded);
+            modelIoLogger.request(LOG_CATEGORY, prompt);
+            String response = summarizer.prompt().user(prompt).call().content();
+            modelIoLogger.response(LOG_CATEGORY, response);
+            if (StringUtils.hasText(response)) {
+                summary = response.strip();
+            }
+            compactions.increment();
+        } catch (RuntimeException e) {
+            // The messages are dropped rather than kept, so the session stays within its budget
+            logger.warn("Could not summarize coach session, dropping {} older messages: {}", folded.size(), e.getMessage());
+            failedCompactions.increment();
+            droppedMessages.increment(folded.size());
+        }
+
+        synchronized (this) {
+            session.summary = summary;
+            session.summaryTokens = tokenEstimator.estimate(summary);
+            session.compacting = List.of();
+            if (session.removed) {
+                return;
+            }
+            recount(session);
+            dirty = true;
+            startCompaction(conversationId, session);
+        }
+    }
+
+    private static String summaryPrompt(String previous, List<Turn> folded) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("EARLIER SUMMARY:\n").append(previous.isEmpty() ? "(none)" : previous).append("\n\n");
+        prompt.append("NEW MESSAGES:\n");
+        for (Turn turn : folded) {
+            prompt.append(turn.type() == MessageType.USER ? "User: " : "Coach: ").append(turn.text()).append("\n\n");
+        }
+        return prompt.toString();
+    }
+
+    private void recount(Session session) {
+        int tokens = session.summaryTokens;
+        for (Turn turn : session.compacting) {
+            tokens += turn.tokens();
+        }
+        for (Turn turn : session.turns) {
+            tokens += turn.tokens();
+        }
+        totalTokens += tokens - session.tokens;
+        session.tokens = tokens;
+    }
+
+    private void remove(Session session) {
+        session.removed = true;
+        totalTokens -= session.tokens;
+        dirty = true;
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Session> eldest = sessions.values().iterator();
+        while ((sessions.size() > properties.getMaxSessions() || totalTokens > properties.getMaxTotalTokens())
+                && eldest.hasNext()) {
+            Session session = eldest.next();
+            eldest.remove();
+            remove(session);
+            capacityEvictions.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${coach.session.cleanup-interval:5m}")
+    public synchronized void evictIdle() {
+        long cutoff = System.currentTimeMillis() - properties.getIdleTimeout().toMillis();
+        Iterator<Session> eldest = sessions.values().iterator();
+        // Access order is last-access order, so the idle sessions come first
+        while (eldest.hasNext()) {
+            Session session = eldest.next();
+            if (session.lastAccess >= cutoff) {
+                break;
+            }
+            eldest.remove();
+            remove(session);
+            idleEvictions.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${coach.session.persist-interval:5m}",
+               initialDelayString = "${coach.session.persist-interval:5m}")
+    public void persist() {
+        if (!isEnabled() || file == null) {
+            return;
+        }
+        List<StoredSession> snapshot;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            snapshot = snapshot();
+            dirty = false;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // Write to a temp file and move it into place so a crash never leaves a partial file
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            objectMapper.writeValue(temp.toFile(), snapshot);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to persist coach sessions to {}: {}", file, e.getMessage());
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Messages still being compacted are written as plain messages
+        persist();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sessions in least-recently-used order, so reading them back in order restores it.
+     */
+    private List<StoredSession> snapshot() {
+        List<StoredSession> snapshot = new ArrayList<>(sessions.size());
+        for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            List<StoredTurn> turns = new ArrayList<>();
+            for (Turn turn : session.compacting) {
+                turns.add(new StoredTurn(turn.type().name(), turn.text()));
+            }
+            for (Turn turn : session.turns) {
+                turns.add(new StoredTurn(turn.type().name(), turn.text()));
+            }
+            snapshot.add(new StoredSession(entry.getKey(), session.summary, session.lastAccess, turns));
+        }
+        return snapshot;
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            List<StoredSession> stored = objectMapper.readValue(file.toFile(), new TypeReference<List<StoredSession>>() {});
+            for (StoredSession storedSession : stored) {
+                Session session = new Session();
+                session.summary = storedSession.summary() != null ? storedSession.summary() : "";
+                session.summaryTokens = tokenEstimator.estimate(session.summary);
+                session.lastAccess = storedSession.lastAccess();
+                for (StoredTurn turn : storedSession.turns()) {
+                    session.turns.add(new Turn(MessageType.valueOf(turn.role()), turn.text(), tokenEstimator.estimate(turn.text())));
+                }
+                sessions.put(storedSession.id(), session);
+                recount(session);
+            }
+            evictIdle();
+            evictOverCapacity();
+            logger.info("Loaded {} coach sessions from {}", sessions.size(), file);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load coach sessions from {}: {}", file, e.getMessage());
+            sessions.clear();
+            totalTokens = 0;
+        }
+    }
+
+    private static Message toMessage(Turn turn) {
+        return turn.type() == MessageType.USER ? new UserMessage(turn.text()) : new AssistantMessage(turn.text());
+    }
+}
@@ -0,0 +1,169 @@
+package health.myvita.spring_ai_demo.spring_ai.triage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over text normalized by {@link TriageText}.
+ *
+ * The goto and failure functions are compiled into one dense transition table, so matching
+ * costs a single array lookup per character regardless of how many patterns there are. Each
+ * state carries the ids of all patterns ending there, its own and those inherited through
+ * failure links.
+ *
+ * Immutable once built and safe to share between threads.
+ */
+final class AhoCorasick {
+
+    // a-z, 0-9, space, clause break; everything else shares one symbol no pattern uses
+    private static final int ALPHABET = 39;
+    private static final int OTHER = 38;
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    // transitions[state * ALPHABET + symbol]
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] patternLengths;
+
+    /**
+     * Receives each pattern occurrence.
+     */
+    @FunctionalInterface
+    interface MatchHandler {
+        /**
+         * @param pattern Index of the pattern in the list it was built from
+         * @param end Index of the last matched character
+         */
+        void onMatch(int pattern, int end);
+    }
+
+    private AhoCorasick(int[] transitions, int[][] outputs, int[] patternLengths) {
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.patternLengths = patternLengths;
+    }
+
+    /**
+     * Builds the automaton; a pattern's id is its index in the list.
+     */
+    static AhoCorasick build(List<String> patterns) {
+        // Trie with sparse goto entries (-1 = none), grown as needed
+        List<int[]> gotoTable = new ArrayList<>();
+        List<int[]> stateOutputs = new ArrayList<>();
+        gotoTable.add(newRow());
+        stateOutputs.add(NO_OUTPUT);
+
+        int[] lengths = new int[patterns.size()];
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            lengths[id] = pattern.length();
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = symbol(pattern.charAt(i));
+                int next = gotoTable.get(state)[symbol];
+                if (next < 0) {
+                    next = gotoTable.size();
+                    gotoTable.get(state)[symbol] = next;
+                    gotoTable.add(newRow());
+                    stateOutputs.add(NO_OUTPUT);
+                }
+                state = next;
+            }
+            stateOutputs.set(state, append(stateOutputs.get(state), id));
+        }
+
+        // Breadth-first: a state's failure target is shallower, so it is complete when needed
+        int states = gotoTable.size();
+        int[] transitions = new int[states * ALPHABET];
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int next = gotoTable.get(0)[symbol];
+            if (next < 0) {
+                transitions[symbol] = 0;
+            } else {
+                transitions[symbol] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            stateOutputs.set(state, concat(stateOutputs.get(state), stateOutputs.get(failure[state])));
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int next = gotoTable.get(state)[symbol];
+                int fallback = transitions[failure[state] * ALPHABET + symbol];
+                if (next < 0) {
+                    transitions[state * ALPHABET + symbol] = fallback;
+                } else {
+                    transitions[state * ALPHABET + symbol] = next;
+                    failure[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+
+        return new AhoCorasick(transitions, stateOutputs.toArray(new int[0][]), lengths);
+    }
+
+    /**
+     * Reports every occurrence of every pattern in text[0, length).
+     */
+    void match(char[] text, int length, MatchHandler handler) {
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * ALPHABET + symbol(text[i])];
+            for (int pattern : outputs[state]) {
+                handler.onMatch(pattern, i);
+            }
+        }
+    }
+
+    int patternLength(int pattern) {
+        return patternLengths[pattern];
+    }
+
+    int stateCount() {
+        return outputs.length;
+    }
+
+    private static int symbol(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 26 + (c - '0');
+        }
+        if (c == ' ') {
+            return 36;
+        }
+        if (c == TriageText.CLAUSE_BREAK) {
+            return 37;
+        }
+        return OTHER;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] extended = Arrays.copyOf(values, values.length + 1);
+        extended[values.length] = value;
+        return extended;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        int[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
@@ -0,0 +1,152 @@
+package health.myvita.spring_ai_demo.spring_ai.triage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Red-flag phrases, their synonyms, negation cues and the advice shown for them.
+ *
+ * Parsed from a line-based text file:
+ * <pre>
+ * # comment
+ * synonym: cannot = cannot; cant; can not; unable to
+ * negation: no; not; without
+ * flag: breathing | Severe breathing difficulty | cannot breathe; short of breath
+ * tip: breathing | Sit upright and loosen tight clothing
+ * tip: * | Call your local emergency number now
+ * symptom: headache; nausea; short of breath
+ * </pre>
+ * Words of a flag phrase that name a synonym group are expanded to every variant of the group.
+ * Tips for "*" are shown for every red flag, after the flags' own tips. Symptoms are ordinary
+ * complaints, each phrase one symptom; they are counted, not triaged.
+ */
+final class RedFlagLexicon {
+
+    // Expansions per phrase; beyond this a phrase has too many synonym words to be a phrase
+    private static final int MAX_VARIANTS = 512;
+
+    /**
+     * @param id Short name, used in responses and metrics
+     * @param cause What the flag may indicate, shown as a possible cause
+     * @param phrases Phrases as written in the lexicon
+     */
+    record Flag(String id, String cause, List<String> phrases) {}
+
+    private final List<Flag> flags = new ArrayList<>();
+    private final Map<String, List<String>> synonyms = new LinkedHashMap<>();
+    private final Set<String> negations = new HashSet<>();
+    private final Map<String, List<String>> tips = new LinkedHashMap<>();
+    private final List<String> symptoms = new ArrayList<>();
+
+    private RedFlagLexicon() {}
+
+    static RedFlagLexicon parse(List<String> lines) {
+        RedFlagLexicon lexicon = new RedFlagLexicon();
+        for (int number = 1; number <= lines.size(); number++) {
+            String line = lines.get(number - 1).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Line " + number + ": expected <kind>: <value>");
+            }
+            String kind = line.substring(0, colon).strip();
+            String value = line.substring(colon + 1).strip();
+            switch (kind) {
+                case "synonym" -> lexicon.parseSynonym(value, number);
+                case "negation" -> {
+                    for (String cue : list(value)) {
+                        lexicon.negations.addAll(List.of(TriageText.words(TriageText.pattern(cue))));
+                    }
+                }
+                case "flag" -> {
+                    String[] parts = value.split("\\|", 3);
+                    if (parts.length != 3) {
+                        throw new IllegalArgumentException("Line " + number + ": expected flag: <id> | <cause> | <phrases>");
+                    }
+                    lexicon.flags.add(new Flag(parts[0].strip(), parts[1].strip(), list(parts[2])));
+                }
+                case "tip" -> {
+                    String[] parts = value.split("\\|", 2);
+                    if (parts.length != 2) {
+                        throw new IllegalArgumentException("Line " + number + ": expected tip: <id or *> | <tip>");
+                    }
+                    lexicon.tips.computeIfAbsent(parts[0].strip(), id -> new ArrayList<>()).add(parts[1].strip());
+                }
+                case "symptom" -> lexicon.symptoms.addAll(list(value));
+                default -> throw new IllegalArgumentException("Line " + number + ": unknown kind " + kind);
+            }
+        }
+        return lexicon;
+    }
+
+    private void parseSynonym(String value, int number) {
+        String[] parts = value.split("=", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Line " + number + ": expected synonym: <word> = <variants>");
+        }
+        String word = TriageText.pattern(parts[0]).strip();
+        List<String> variants = new ArrayList<>();
+        variants.add(word);
+        for (String variant : list(parts[1])) {
+            String normalized = TriageText.pattern(variant).strip();
+            if (!normalized.isEmpty() && !variants.contains(normalized)) {
+                variants.add(normalized);
+            }
+        }
+        synonyms.put(word, variants);
+    }
+
+    List<Flag> flags() {
+        return flags;
+    }
+
+    List<String> symptoms() {
+        return symptoms;
+    }
+
+    Set<String> negations() {
+        return negations;
+    }
+
+    /**
+     * Tips for the given flag, without the "*" tips.
+     */
+    List<String> tipsFor(String flagId) {
+        return tips.getOrDefault(flagId, List.of());
+    }
+
+    List<String> generalTips() {
+        return tips.getOrDefault("*", List.of());
+    }
+
+    /**
+     * Expands a phrase into the padded patterns for all synonym variants of its words.
+     */
+    List<String> patterns(String phrase) {
+        List<String> variants = List.of("");
+        for (String word : TriageText.words(TriageText.pattern(phrase))) {
+            List<String> alternatives = synonyms.getOrDefault(word, List.of(word));
+            List<String> extended = new ArrayList<>(variants.size() * alternatives.size());
+            for (String prefix : variants) {
+                for (String alternative : alternatives) {
+                    extended.add(prefix + " " + alternative);
+                }
+            }
+            if (extended.size() > MAX_VARIANTS) {
+                throw new IllegalArgumentException("Phrase \"" + phrase + "\" expands to more than " + MAX_VARIANTS + " variants");
+            }
+            variants = extended;
+        }
+        return variants.stream().map(variant -> variant + " ").toList();
+    }
+
+    private static List<String> list(String value) {
+        return List.of(value.split(";")).stream().map(String::strip).filter(item -> !item.isEmpty()).toList();
+    }
+}
@@ -0,0 +1,276 @@
+package health.myvita.spring_ai_demo.spring_ai.triage;
+
+import health.myvita.spring_ai_demo.spring_ai.config.TriageProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.HealthCoachResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Recognizes emergency symptoms in coaching messages without asking the model.
+ *
+ * The red-flag phrases of the lexicon, with every synonym variant, are compiled into one
+ * {@link AhoCorasick} automaton at startup, so a message is scanned once in linear time however
+ * large the lexicon is. An occurrence does not count when a negation cue ("no", "denies",
+ * "without", ...) is among the few words before it in the same clause; a clause ends at
+ * sentence punctuation, "but" or another lexicon match, so "no fever but I can't breathe" and
+ * "no energy and severe chest pain" still count.
+ *
+ * The same pass counts the lexicon's ordinary symptoms and the red flags that were only
+ * mentioned negated, which the model router uses to judge how involved a request is.
+ *
+ * Metrics: coach.triage.requests counted by result (red_flag, clear), and coach.triage.flags
+ * counted by flag.
+ */
+@Component
+public class RedFlagTriage {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedFlagTriage.class);
+
+    private static final String HIGH_URGENCY = "high";
+
+    // Per flag or symptom in match results
+    private static final byte NEGATED = 1;
+    private static final byte PRESENT = 2;
+
+    private final TriageProperties properties;
+    private final RedFlagLexicon lexicon;
+    private final AhoCorasick automaton;
+    // Per pattern id, the flag index, or flag count + symptom index
+    private final int[] patternOwners;
+
+    private final Counter redFlagRequests;
+    private final Counter clearRequests;
+    private final Counter[] flagCounters;
+
+    public RedFlagTriage(TriageProperties properties, ResourceLoader resourceLoader, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.lexicon = load(resourceLoader.getResource(properties.getLexicon()));
+
+        List<String> patterns = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        List<RedFlagLexicon.Flag> lexiconFlags = lexicon.flags();
+        for (int flag = 0; flag < lexiconFlags.size(); flag++) {
+            for (String phrase : lexiconFlags.get(flag).phrases()) {
+                for (String pattern : lexicon.patterns(phrase)) {
+                    patterns.add(pattern);
+                    owners.add(flag);
+                }
+            }
+        }
+        List<String> symptoms = lexicon.symptoms();
+        for (int symptom = 0; symptom < symptoms.size(); symptom++) {
+            for (String pattern : lexicon.patterns(symptoms.get(symptom))) {
+                patterns.add(pattern);
+                owners.add(lexiconFlags.size() + symptom);
+            }
+        }
+        this.automaton = AhoCorasick.build(patterns);
+        this.patternOwners = owners.stream().mapToInt(Integer::intValue).toArray();
+
+        this.redFlagRequests = meterRegistry.counter("coach.triage.requests", "result", "red_flag");
+        this.clearRequests = meterRegistry.counter("coach.triage.requests", "result", "clear");
+        this.flagCounters = new Counter[lexiconFlags.size()];
+        for (int flag = 0; flag < lexiconFlags.size(); flag++) {
+            flagCounters[flag] = meterRegistry.counter("coach.triage.flags", "flag", lexiconFlags.get(flag).id());
+        }
+
+        logger.info("Loaded {} red flags and {} symptoms ({} patterns, {} automaton states) from {}",
+                lexiconFlags.size(), symptoms.size(), patterns.size(), automaton.stateCount(), properties.getLexicon());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Whether the stream endpoint follows a triage answer with the model's advice.
+     */
+    public boolean isStreamEnrichment() {
+        return properties.isEnrichStream();
+    }
+
+    /**
+     * What a message mentions.
+     *
+     * @param redFlags Ids of the red flags present, in lexicon order
+     * @param negatedRedFlags Red flags only mentioned negated, e.g. "no chest pain"
+     * @param symptoms Distinct ordinary symptoms present
+     */
+    public record Scan(List<String> redFlags, int negatedRedFlags, int symptoms) {}
+
+    /**
+     * Scans a message for red flags and symptoms; also when triage is disabled.
+     */
+    public Scan scan(String message) {
+        if (message == null) {
+            return new Scan(List.of(), 0, 0);
+        }
+        byte[] mentions = match(message);
+        List<RedFlagLexicon.Flag> flags = lexicon.flags();
+        List<String> redFlags = new ArrayList<>();
+        int negated = 0;
+        for (int flag = 0; flag < flags.size(); flag++) {
+            if (mentions[flag] == PRESENT) {
+                redFlags.add(flags.get(flag).id());
+            } else if (mentions[flag] == NEGATED) {
+                negated++;
+            }
+        }
+        int symptoms = 0;
+        for (int owner = flags.size(); owner < mentions.length; owner++) {
+            if (mentions[owner] == PRESENT) {
+                symptoms++;
+            }
+        }
+        return new Scan(redFlags, negated, symptoms);
+    }
+
+    /**
+     * Checks a message for red flags.
+     *
+     * @param message The user's message
+     * @return High-urgency advice naming the red flags found, or empty if there are none
+     */
+    public Optional<HealthCoachResponse> assess(String message) {
+        return assess(scan(message));
+    }
+
+    /**
+     * Same as {@link #assess(String)}, for a message that has already been scanned.
+     */
+    public Optional<HealthCoachResponse> assess(Scan scan) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        if (scan.redFlags().isEmpty()) {
+            clearRequests.increment();
+            return Optional.empty();
+        }
+        redFlagRequests.increment();
+        logger.debug("Red flags in coaching message: {}", scan.redFlags());
+
+        List<String> causes = new ArrayList<>();
+        Set<String> tips = new LinkedHashSet<>();
+        List<RedFlagLexicon.Flag> flags = lexicon.flags();
+        for (int flag = 0; flag < flags.size(); flag++) {
+            if (scan.redFlags().contains(flags.get(flag).id())) {
+                causes.add(flags.get(flag).cause());
+                tips.addAll(lexicon.tipsFor(flags.get(flag).id()));
+                flagCounters[flag].increment();
+            }
+        }
+        tips.addAll(lexicon.generalTips());
+
+        String summary = "Your message mentions warning signs that can be a medical emergency: "
+                + String.join("; ", causes.stream().map(RedFlagTriage::lowerFirst).toList())
+                + ". Please get urgent in-person care now rather than waiting for online advice.";
+        HealthCoachResponse response = new HealthCoachResponse(summary, causes, List.copyOf(tips), HIGH_URGENCY);
+        response.setRedFlags(scan.redFlags());
+        return Optional.of(response);
+    }
+
+    /**
+     * Runs the automaton over the message.
+     *
+     * @return Per lexicon flag, then per symptom: 0 if not mentioned, NEGATED if only mentioned
+     *         negated, PRESENT otherwise
+     */
+    private byte[] match(String message) {
+        TriageText.Normalized text = TriageText.normalize(message);
+        char[] chars = text.chars();
+        byte[] mentions = new byte[lexicon.flags().size() + lexicon.symptoms().size()];
+        // Ends of the matches so far, in the order reported (non-decreasing)
+        int[][] ends = { new int[8] };
+        int[] endCount = { 0 };
+        automaton.match(chars, text.length(), (pattern, end) -> {
+            int owner = patternOwners[pattern];
+            // The pattern starts with the space before its first word
+            int start = end - automaton.patternLength(pattern) + 1;
+            if (mentions[owner] != PRESENT) {
+                mentions[owner] = isNegated(chars, start, previousMatchEnd(ends[0], endCount[0], start)) ? NEGATED : PRESENT;
+            }
+            if (endCount[0] == ends[0].length) {
+                ends[0] = Arrays.copyOf(ends[0], endCount[0] * 2);
+            }
+            ends[0][endCount[0]++] = end;
+        });
+        return mentions;
+    }
+
+    /**
+     * The end of the last earlier match that lies wholly before the given position, or -1.
+     */
+    private static int previousMatchEnd(int[] ends, int count, int start) {
+        for (int i = count - 1; i >= 0; i--) {
+            // Adjacent matches share the space between them
+            if (ends[i] <= start) {
+                return ends[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether a negation cue is among the words before the given position in the same clause.
+     *
+     * The scope also ends at an earlier lexicon match, so the cue of "no energy and severe chest
+     * pain" only negates "no energy".
+     *
+     * @param start Index of the space before the matched phrase
+     * @param boundary Index of the space after the previous lexicon match, or -1
+     */
+    private boolean isNegated(char[] chars, int start, int boundary) {
+        int end = start;
+        for (int words = 0; words < properties.getNegationWindow(); words++) {
+            // chars[end] is the space after the previous word; chars[0] is always a space
+            if (end <= 0 || end <= boundary) {
+                return false;
+            }
+            int begin = end - 1;
+            while (begin >= 0 && chars[begin] != ' ') {
+                begin--;
+            }
+            String word = new String(chars, begin + 1, end - begin - 1);
+            if (word.length() == 1 && word.charAt(0) == TriageText.CLAUSE_BREAK || word.equals("but")) {
+                return false;
+            }
+            if (lexicon.negations().contains(word)) {
+                return true;
+            }
+            end = begin;
+        }
+        return false;
+    }
+
+    private static RedFlagLexicon load(Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return RedFlagLexicon.parse(content.lines().toList());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read red-flag lexicon " + resource.getDescription(), e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid red-flag lexicon " + resource.getDescription() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String lowerFirst(String text) {
+        return text.isEmpty() ? text : Character.toLowerCase(text.charAt(0)) + text.substring(1);
+    }
+}
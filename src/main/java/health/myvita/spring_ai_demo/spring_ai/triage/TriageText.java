@@ -0,0 +1,79 @@
+package health.myvita.spring_ai_demo.spring_ai.triage;
+
+/**
+ * The normal form messages and lexicon phrases are matched in.
+ *
+ * Lower-case letters and digits, words separated by single spaces, and a space at both ends so
+ * a pattern " chest pain " only matches whole words. Apostrophes are dropped ("can't" becomes
+ * "cant"), sentence and clause punctuation becomes a standalone {@link #CLAUSE_BREAK} word, and
+ * any other character separates words.
+ */
+final class TriageText {
+
+    static final char CLAUSE_BREAK = '|';
+
+    private TriageText() {}
+
+    /**
+     * @param chars Normalized characters; only the first length are valid
+     * @param length Number of valid characters
+     */
+    record Normalized(char[] chars, int length) {
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+
+    static Normalized normalize(String text) {
+        // Worst case every character becomes " | "
+        char[] out = new char[text.length() * 3 + 2];
+        int length = 0;
+        out[length++] = ' ';
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out[length++] = Character.toLowerCase(c);
+            } else if (c == '\'' || c == '’') {
+                // Contractions join up: can't -> cant
+            } else if (isClausePunctuation(c)) {
+                if (out[length - 1] != ' ') {
+                    out[length++] = ' ';
+                }
+                if (length < 2 || out[length - 2] != CLAUSE_BREAK) {
+                    out[length++] = CLAUSE_BREAK;
+                    out[length++] = ' ';
+                }
+            } else if (out[length - 1] != ' ') {
+                out[length++] = ' ';
+            }
+        }
+        if (out[length - 1] != ' ') {
+            out[length++] = ' ';
+        }
+        return new Normalized(out, length);
+    }
+
+    /**
+     * Normalizes a lexicon phrase and pads it for whole-word matching.
+     */
+    static String pattern(String phrase) {
+        return normalize(phrase).toString();
+    }
+
+    /**
+     * Splits a normalized phrase into its words.
+     */
+    static String[] words(String normalized) {
+        String trimmed = normalized.trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split(" ");
+    }
+
+    static boolean isClausePunctuation(char c) {
+        return switch (c) {
+            case '.', '!', '?', ';', ':', ',', '\n', '(', ')' -> true;
+            default -> false;
+        };
+    }
+}
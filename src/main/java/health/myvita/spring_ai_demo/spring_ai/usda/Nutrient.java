@@ -0,0 +1,36 @@
+package health.myvita.spring_ai_demo.spring_ai.usda;
+
+/**
+ * Nutrients kept by the {@link NutrientDatabase}, with their FoodData Central nutrient ids.
+ *
+ * Amounts are per 100 g, in the unit FoodData Central uses for the id. Where a food has no value
+ * for the first id, the later ones are used in order (Foundation foods often report energy only
+ * through the Atwater factors).
+ */
+public enum Nutrient {
+
+    ENERGY_KCAL(1008, 2047, 2048),
+    PROTEIN_G(1003),
+    FAT_G(1004),
+    CARBOHYDRATE_G(1005),
+    FIBER_G(1079),
+    SODIUM_MG(1093);
+
+    private final int[] fdcNutrientIds;
+
+    Nutrient(int... fdcNutrientIds) {
+        this.fdcNutrientIds = fdcNutrientIds;
+    }
+
+    /**
+     * Position of the FoodData Central nutrient id in this nutrient's preference order, or -1.
+     */
+    int priorityOf(int fdcNutrientId) {
+        for (int i = 0; i < fdcNutrientIds.length; i++) {
+            if (fdcNutrientIds[i] == fdcNutrientId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,323 @@
+package health.myvita.spring_ai_demo.spring_ai.usda;
+
+import health.myvita.spring_ai_demo.spring_ai.config.NutrientDatabaseProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * In-process nutrient database built from a USDA FoodData Central CSV export.
+ *
+ * Foods are rows; each {@link Nutrient} is one float[] column of amounts per 100 g (NaN where
+ * FoodData Central has no value), so the whole table is a handful of primitive arrays instead
+ * of an object per food. Descriptions are matched fuzzily through a {@link TrigramIndex}.
+ *
+ * The export is loaded on a background thread at startup; until it is ready, or when it is
+ * disabled or missing, {@link #isLoaded()} is false and lookups find nothing.
+ */
+@Component
+public class NutrientDatabase {
+
+    private static final Logger logger = LoggerFactory.getLogger(NutrientDatabase.class);
+
+    static final String FOOD_FILE = "food.csv";
+    static final String FOOD_NUTRIENT_FILE = "food_nutrient.csv";
+
+    private static final Nutrient[] NUTRIENTS = Nutrient.values();
+
+    private final NutrientDatabaseProperties properties;
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile Table table;
+
+    public NutrientDatabase(NutrientDatabaseProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hits = meterRegistry.counter("food.nutrient.lookups", "result", "hit");
+        this.misses = meterRegistry.counter("food.nutrient.lookups", "result", "miss");
+        meterRegistry.gauge("food.nutrient.db.size", this, NutrientDatabase::size);
+
+        if (properties.isEnabled()) {
+            // food_nutrient.csv has millions of rows; do not hold up startup for it
+            Thread.ofVirtual().name("nutrient-db-loader").start(this::load);
+        }
+    }
+
+    /**
+     * Finds the food whose FoodData Central description best matches the given one.
+     *
+     * @param description Food description, ideally in FoodData Central style ("Rice, white, cooked")
+     * @return the match, or empty if the database is not loaded or nothing is similar enough
+     */
+    public Optional<FoodMatch> findFood(String description) {
+        Table current = table;
+        if (current == null || description == null || description.isBlank()) {
+            return Optional.empty();
+        }
+
+        TrigramIndex.Hit hit = current.index.best(description, properties.getMinSimilarity());
+        if (hit == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+
+        float[] per100Grams = new float[NUTRIENTS.length];
+        for (Nutrient nutrient : NUTRIENTS) {
+            per100Grams[nutrient.ordinal()] = current.columns[nutrient.ordinal()][hit.id()];
+        }
+        return Optional.of(new FoodMatch(current.fdcIds[hit.id()], current.descriptions[hit.id()], hit.score(), per100Grams));
+    }
+
+    public boolean isLoaded() {
+        return table != null;
+    }
+
+    /**
+     * Number of foods in the loaded database.
+     */
+    public int size() {
+        Table current = table;
+        return current != null ? current.fdcIds.length : 0;
+    }
+
+    private void load() {
+        Path directory = Paths.get(properties.getDirectory());
+        Path foodFile = directory.resolve(FOOD_FILE);
+        Path nutrientFile = directory.resolve(FOOD_NUTRIENT_FILE);
+        if (!Files.exists(foodFile) || !Files.exists(nutrientFile)) {
+            logger.info("No FoodData Central export found in {}", directory.toAbsolutePath());
+            return;
+        }
+
+        long started = System.nanoTime();
+        try {
+            Table loaded = readFoods(foodFile);
+            int amounts = readNutrients(nutrientFile, loaded);
+            table = loaded;
+            logger.info("Loaded {} foods with {} nutrient amounts from FoodData Central in {} ms",
+                    loaded.fdcIds.length, amounts, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load FoodData Central export from {}: {}", directory.toAbsolutePath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the foods of the configured data types, ordered by data type preference so that
+     * equally good matches resolve to the earlier data type.
+     */
+    private Table readFoods(Path foodFile) throws IOException {
+        List<String> dataTypes = properties.getDataTypes();
+        record Food(int fdcId, int dataTypeRank, String description) {}
+        List<Food> foods = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(foodFile, StandardCharsets.UTF_8)) {
+            CsvHeader header = CsvHeader.read(reader, foodFile);
+            int fdcIdColumn = header.column("fdc_id");
+            int dataTypeColumn = header.column("data_type");
+            int descriptionColumn = header.column("description");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> values = CsvHeader.split(line);
+                if (values.size() <= Math.max(fdcIdColumn, Math.max(dataTypeColumn, descriptionColumn))) {
+                    continue;
+                }
+                int rank = dataTypes.indexOf(values.get(dataTypeColumn));
+                String description = values.get(descriptionColumn);
+                if (rank >= 0 && !description.isBlank()) {
+                    foods.add(new Food(Integer.parseInt(values.get(fdcIdColumn)), rank, description));
+                }
+            }
+        }
+
+        foods.sort(Comparator.comparingInt(Food::dataTypeRank).thenComparingInt(Food::fdcId));
+        int[] fdcIds = new int[foods.size()];
+        String[] descriptions = new String[foods.size()];
+        for (int row = 0; row < foods.size(); row++) {
+            fdcIds[row] = foods.get(row).fdcId();
+            descriptions[row] = foods.get(row).description();
+        }
+        return new Table(fdcIds, descriptions);
+    }
+
+    /**
+     * Fills the nutrient columns from food_nutrient.csv, skipping rows for other foods or nutrients.
+     *
+     * @return number of amounts stored
+     */
+    private int readNutrients(Path nutrientFile, Table table) throws IOException {
+        // Which of a nutrient's FoodData Central ids each stored amount came from; lower is preferred
+        byte[][] sourcePriority = new byte[NUTRIENTS.length][table.fdcIds.length];
+        for (byte[] column : sourcePriority) {
+            Arrays.fill(column, Byte.MAX_VALUE);
+        }
+
+        int stored = 0;
+        try (BufferedReader reader = Files.newBufferedReader(nutrientFile, StandardCharsets.UTF_8)) {
+            CsvHeader header = CsvHeader.read(reader, nutrientFile);
+            int fdcIdColumn = header.column("fdc_id");
+            int nutrientIdColumn = header.column("nutrient_id");
+            int amountColumn = header.column("amount");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> values = CsvHeader.split(line);
+                if (values.size() <= Math.max(fdcIdColumn, Math.max(nutrientIdColumn, amountColumn))
+                        || values.get(amountColumn).isEmpty()) {
+                    continue;
+                }
+
+                int nutrientId = Integer.parseInt(values.get(nutrientIdColumn));
+                for (Nutrient nutrient : NUTRIENTS) {
+                    int priority = nutrient.priorityOf(nutrientId);
+                    if (priority < 0) {
+                        continue;
+                    }
+                    int row = table.rowOf(Integer.parseInt(values.get(fdcIdColumn)));
+                    if (row >= 0 && priority < sourcePriority[nutrient.ordinal()][row]) {
+                        if (sourcePriority[nutrient.ordinal()][row] == Byte.MAX_VALUE) {
+                            stored++;
+                        }
+                        sourcePriority[nutrient.ordinal()][row] = (byte) priority;
+                        table.columns[nutrient.ordinal()][row] = Float.parseFloat(values.get(amountColumn));
+                    }
+                }
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * A food found by description.
+     *
+     * @param fdcId FoodData Central id
+     * @param description FoodData Central description
+     * @param similarity Trigram similarity to the searched description, 0-1
+     * @param per100Grams Amount per 100 g, indexed by {@link Nutrient#ordinal()}; NaN if unknown
+     */
+    public record FoodMatch(int fdcId, String description, double similarity, float[] per100Grams) {
+
+        /**
+         * Amount of the nutrient in the given weight of the food; 0 if FoodData Central has no value.
+         */
+        public double amount(Nutrient nutrient, double grams) {
+            float per100 = per100Grams[nutrient.ordinal()];
+            return Float.isNaN(per100) ? 0 : per100 * grams / 100.0;
+        }
+    }
+
+    /**
+     * The loaded foods: row-aligned ids, descriptions and one column per nutrient.
+     */
+    private static final class Table {
+        final int[] fdcIds;
+        final String[] descriptions;
+        final float[][] columns;
+        final TrigramIndex index;
+
+        // fdcIds sorted, with the row each one is in, for the food_nutrient.csv join
+        private final int[] sortedFdcIds;
+        private final int[] sortedRows;
+
+        Table(int[] fdcIds, String[] descriptions) {
+            this.fdcIds = fdcIds;
+            this.descriptions = descriptions;
+            this.columns = new float[NUTRIENTS.length][fdcIds.length];
+            for (float[] column : columns) {
+                Arrays.fill(column, Float.NaN);
+            }
+            this.index = TrigramIndex.build(descriptions);
+
+            long[] idAndRow = new long[fdcIds.length];
+            for (int row = 0; row < fdcIds.length; row++) {
+                idAndRow[row] = ((long) fdcIds[row] << 32) | row;
+            }
+            Arrays.sort(idAndRow);
+            this.sortedFdcIds = new int[fdcIds.length];
+            this.sortedRows = new int[fdcIds.length];
+            for (int i = 0; i < idAndRow.length; i++) {
+                sortedFdcIds[i] = (int) (idAndRow[i] >>> 32);
+                sortedRows[i] = (int) idAndRow[i];
+            }
+        }
+
+        int rowOf(int fdcId) {
+            int position = Arrays.binarySearch(sortedFdcIds, fdcId);
+            return position >= 0 ? sortedRows[position] : -1;
+        }
+    }
+
+    /**
+     * Column lookup for the FoodData Central CSV files, which quote every field.
+     */
+    private static final class CsvHeader {
+        private final List<String> names;
+        private final Path file;
+
+        private CsvHeader(List<String> names, Path file) {
+            this.names = names;
+            this.file = file;
+        }
+
+        static CsvHeader read(BufferedReader reader, Path file) throws IOException {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new IOException("Empty file " + file.getFileName());
+            }
+            return new CsvHeader(split(headerLine), file);
+        }
+
+        int column(String name) throws IOException {
+            int index = names.indexOf(name);
+            if (index < 0) {
+                throw new IOException("Missing column " + name + " in " + file.getFileName());
+            }
+            return index;
+        }
+
+        static List<String> split(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            values.add(current.toString());
+            return values;
+        }
+    }
+}
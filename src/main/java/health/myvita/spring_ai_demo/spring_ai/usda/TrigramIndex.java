@@ -0,0 +1,135 @@
+package health.myvita.spring_ai_demo.spring_ai.usda;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fuzzy lookup of short texts by shared character trigrams.
+ *
+ * Texts are lower-cased, reduced to letters and digits separated by single spaces, padded with
+ * a space at both ends and cut into overlapping trigrams. Each distinct trigram maps to the
+ * sorted ids of the texts containing it. A query counts shared trigrams per candidate through
+ * those postings and scores candidates by the Dice coefficient 2 * shared / (query + candidate),
+ * so word order and small spelling differences cost little while extra words lower the score.
+ *
+ * Built once and read-only afterwards, so it is safe to share between threads.
+ */
+final class TrigramIndex {
+
+    private static final int[] NO_POSTINGS = new int[0];
+
+    private final Map<Long, int[]> postings;
+    // Distinct trigrams per text
+    private final int[] trigramCounts;
+
+    private TrigramIndex(Map<Long, int[]> postings, int[] trigramCounts) {
+        this.postings = postings;
+        this.trigramCounts = trigramCounts;
+    }
+
+    /**
+     * Indexes the texts; a text's position in the array is its id.
+     */
+    static TrigramIndex build(String[] texts) {
+        Map<Long, IdList> lists = new HashMap<>();
+        int[] counts = new int[texts.length];
+        for (int id = 0; id < texts.length; id++) {
+            long[] trigrams = trigrams(texts[id]);
+            counts[id] = trigrams.length;
+            for (long trigram : trigrams) {
+                lists.computeIfAbsent(trigram, t -> new IdList()).add(id);
+            }
+        }
+
+        Map<Long, int[]> postings = new HashMap<>(lists.size() * 2);
+        lists.forEach((trigram, ids) -> postings.put(trigram, ids.toArray()));
+        return new TrigramIndex(postings, counts);
+    }
+
+    /**
+     * Finds the text sharing the most trigrams with the query, relative to both lengths.
+     *
+     * @return the best id and its score, or null if no text reaches minScore
+     */
+    Hit best(String query, double minScore) {
+        long[] queryTrigrams = trigrams(query);
+        if (queryTrigrams.length == 0) {
+            return null;
+        }
+
+        int[] shared = new int[trigramCounts.length];
+        int[] candidates = new int[64];
+        int candidateCount = 0;
+        for (long trigram : queryTrigrams) {
+            for (int id : postings.getOrDefault(trigram, NO_POSTINGS)) {
+                if (shared[id]++ == 0) {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = id;
+                }
+            }
+        }
+
+        int bestId = -1;
+        double bestScore = minScore;
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates[i];
+            double score = 2.0 * shared[id] / (queryTrigrams.length + trigramCounts[id]);
+            // Ties go to the earlier text, i.e. the preferred data type
+            if (score > bestScore || (score == bestScore && (bestId < 0 || id < bestId))) {
+                bestId = id;
+                bestScore = score;
+            }
+        }
+        return bestId < 0 ? null : new Hit(bestId, bestScore);
+    }
+
+    int size() {
+        return trigramCounts.length;
+    }
+
+    /**
+     * Distinct trigrams of the normalized text, each packed as three 21-bit code points.
+     */
+    static long[] trigrams(String text) {
+        String normalized = " " + text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim() + " ";
+        int[] codePoints = normalized.codePoints().toArray();
+        if (codePoints.length < 3 || normalized.isBlank()) {
+            return new long[0];
+        }
+
+        long[] trigrams = new long[codePoints.length - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) codePoints[i] << 42) | ((long) codePoints[i + 1] << 21) | codePoints[i + 2];
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+
+    /**
+     * @param id Position of the matched text
+     * @param score Dice coefficient over trigrams, 0-1
+     */
+    record Hit(int id, double score) {}
+
+    /**
+     * Growable int array; ids arrive in increasing order, so postings come out sorted.
+     */
+    private static final class IdList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package health.myvita.spring_ai_demo.spring_ai.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks how free-text health conditions are counted and folded into cohorts.
+ */
+class UserProfileDtoTest {
+
+    @Test
+    void countsEmptyAnswersAsNoConditions() {
+        for (String answer : new String[] { "none", "n/a", "N/A", "None.", "" }) {
+            assertEquals(0, profile(answer).getHealthConditionCount(), answer);
+        }
+    }
+
+    @Test
+    void countsDistinctConditions() {
+        assertEquals(2, profile("Diabetic, high blood pressure and diabetes").getHealthConditionCount());
+    }
+
+    @Test
+    void putsEmptyAnswersInOneCohort() {
+        assertEquals(profile("none").getCohortKey(), profile("N/A").getCohortKey());
+        assertEquals(profile("none").getCohortKey(), profile(null).getCohortKey());
+    }
+
+    private static UserProfileDto profile(String healthConditions) {
+        UserProfileDto profile = new UserProfileDto();
+        profile.setAge(34);
+        profile.setHealthConditions(healthConditions);
+        return profile;
+    }
+}
@@ -0,0 +1,125 @@
+package health.myvita.spring_ai_demo.spring_ai.image;
+
+import health.myvita.spring_ai_demo.spring_ai.config.ImageNormalizationProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares heap allocation per upload for the previous in-memory path and the spooled path.
+ *
+ * The payloads are formats ImageIO cannot decode, so both paths send the upload unchanged and
+ * the difference is purely the copies made on the way. Each payload is first written to a file,
+ * standing in for a multipart part the container has already spooled to disk. The previous path
+ * read the part into a byte[], and Spring AI built the data URL with Base64.encodeToString and
+ * String.format. The new path streams the file into a single data URL buffer. Allocation is
+ * summed over all threads because normalization runs on the worker pool.
+ *
+ * Not part of the default test run (surefire only picks up *Test/*Tests classes); run it with:
+ *
+ *   ./mvnw test -Dtest=FoodImageUploadMemoryBenchmark
+ */
+class FoodImageUploadMemoryBenchmark {
+
+    private ImageNormalizer normalizer;
+    private Path part;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        normalizer = new ImageNormalizer(new ImageNormalizationProperties(), new SimpleMeterRegistry());
+        part = Files.createTempFile("benchmark-part-", ".img");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        normalizer.destroy();
+        Files.deleteIfExists(part);
+    }
+
+    @Test
+    void spooledPathProducesTheSameDataUrl() throws IOException {
+        byte[] payload = undecodablePayload(1024 * 1024 + 1);
+        Files.write(part, payload);
+        MimeType mimeType = MimeType.valueOf("image/webp");
+
+        ImageNormalizer.NormalizedImage image = normalizer.normalize(part, mimeType);
+        assertEquals(inMemoryDataUrl(payload, mimeType), image.toMedia().getData());
+    }
+
+    @Test
+    void compareAllocationPerUpload() throws IOException {
+        run("8 MB undecodable (webp)", undecodablePayload(8 * 1024 * 1024), MimeType.valueOf("image/webp"));
+        run("2 MB undecodable (webp)", undecodablePayload(2 * 1024 * 1024), MimeType.valueOf("image/webp"));
+    }
+
+    private void run(String label, byte[] payload, MimeType mimeType) throws IOException {
+        Files.write(part, payload);
+        System.out.printf("%s: %d KB%n", label, payload.length / 1024);
+        for (int round = 0; round < 3; round++) {
+            measure("  in-memory", () -> inMemoryDataUrl(Files.readAllBytes(part), mimeType));
+            measure("  spooled  ", () -> (String) normalizer.normalize(part, mimeType).toMedia().getData());
+        }
+    }
+
+    private void measure(String label, Upload upload) throws IOException {
+        int iterations = 20;
+        // Warm up before measuring
+        for (int i = 0; i < iterations / 4; i++) {
+            upload.dataUrl();
+        }
+
+        long allocatedBefore = allocatedByAllThreads();
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            upload.dataUrl();
+        }
+        long elapsed = System.nanoTime() - started;
+        long allocated = allocatedByAllThreads() - allocatedBefore;
+
+        System.out.printf("%s: %8.2f ms/op, %8d KB allocated/op%n",
+                label, elapsed / 1_000_000.0 / iterations, allocated / 1024 / iterations);
+    }
+
+    private static long allocatedByAllThreads() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // -1 for threads that ended between the two calls
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+
+    /**
+     * What Spring AI's OpenAI client does with byte[] media data.
+     */
+    private static String inMemoryDataUrl(byte[] data, MimeType mimeType) {
+        return String.format("data:%s;base64,%s", mimeType, Base64.getEncoder().encodeToString(data));
+    }
+
+    private static byte[] undecodablePayload(int size) {
+        byte[] payload = new byte[size];
+        new Random(42).nextBytes(payload);
+        // RIFF/WEBP header: ImageIO has no reader for it
+        System.arraycopy("RIFF\0\0\0\0WEBP".getBytes(), 0, payload, 0, 12);
+        return payload;
+    }
+
+    @FunctionalInterface
+    private interface Upload {
+        String dataUrl() throws IOException;
+    }
+}
@@ -0,0 +1,104 @@
+package health.myvita.spring_ai_demo.spring_ai.json;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks the repair of typical malformed model answers: the repaired text, the kinds of repair
+ * reported for it, and that Jackson accepts the result.
+ */
+class JsonRepairTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void leavesValidObjectsAlone() throws JsonProcessingException {
+        assertRepair("{\"a\": {\"b\": [1, -2.5e3, true, null]}, \"c\": \"x\\\"y\\u00e9\"}",
+                "{\"a\":{\"b\":[1,-2.5e3,true,null]},\"c\":\"x\\\"y\\u00e9\"}");
+        assertNull(JsonRepair.repair("no object here"));
+        assertNull(JsonRepair.repair(null));
+    }
+
+    @Test
+    void dropsProseAndCodeFences() throws JsonProcessingException {
+        assertRepair("Here is the analysis:\n```json\n{\"a\": 1}\n```\nLet me know if you need more.",
+                "{\"a\":1}", JsonRepair.Kind.LEADING_TEXT, JsonRepair.Kind.TRAILING_TEXT);
+        assertRepair("Sure! {\"a\": \"{not the end}\"}", "{\"a\":\"{not the end}\"}", JsonRepair.Kind.LEADING_TEXT);
+        assertRepair("  \n{\"a\": 1}\n\n", "{\"a\":1}");
+    }
+
+    @Test
+    void cutsTruncatedTextBackToTheLastCompleteValue() throws JsonProcessingException {
+        // Inside a string value
+        assertRepair("{\"a\": 1, \"b\": \"unfinish", "{\"a\":1}", JsonRepair.Kind.TRUNCATED);
+        // Inside a key
+        assertRepair("{\"a\": \"x\", \"lo", "{\"a\":\"x\"}", JsonRepair.Kind.TRUNCATED);
+        // Inside a number, which may have lost digits
+        assertRepair("{\"a\": \"x\", \"n\": 12", "{\"a\":\"x\"}", JsonRepair.Kind.TRUNCATED);
+        // After a colon
+        assertRepair("{\"a\": {\"b\": true, \"c\":", "{\"a\":{\"b\":true}}", JsonRepair.Kind.TRUNCATED);
+        // Scalar array elements are kept up to the last complete one
+        assertRepair("{\"tags\": [\"a\", \"b\", \"c", "{\"tags\":[\"a\",\"b\"]}", JsonRepair.Kind.TRUNCATED);
+    }
+
+    @Test
+    void dropsPartialArrayElements() throws JsonProcessingException {
+        assertRepair("{\"items\": [{\"name\": \"apple\", \"kcal\": 52}, {\"name\": \"banana\", \"kcal\": 8",
+                "{\"items\":[{\"name\":\"apple\",\"kcal\":52}]}", JsonRepair.Kind.TRUNCATED);
+        assertRepair("{\"items\": [{\"name\": \"apple\", \"tags\": [\"fruit\"]}, {\"name\": \"banana\", \"tags\": [\"fru",
+                "{\"items\":[{\"name\":\"apple\",\"tags\":[\"fruit\"]}]}", JsonRepair.Kind.TRUNCATED);
+        assertRepair("{\"total\": 3, \"items\": [{\"name\": \"ap", "{\"total\":3,\"items\":[]}", JsonRepair.Kind.TRUNCATED);
+    }
+
+    @Test
+    void convertsSingleQuotes() throws JsonProcessingException {
+        assertRepair("{'name': 'The \"best\" bar', 'note': 'it\\'s sweet'}",
+                "{\"name\":\"The \\\"best\\\" bar\",\"note\":\"it's sweet\"}", JsonRepair.Kind.SINGLE_QUOTES);
+        // Apostrophes inside double-quoted strings are not quotes
+        assertRepair("{\"note\": \"it's fine\"}", "{\"note\":\"it's fine\"}");
+    }
+
+    @Test
+    void dropsComments() throws JsonProcessingException {
+        assertRepair("{\n  // per serving\n  \"kcal\": 250, /* estimated */ \"protein\": 12 // grams\n}",
+                "{\"kcal\":250,\"protein\":12}", JsonRepair.Kind.COMMENTS);
+        assertRepair("{\"url\": \"https://example.org/*x*/\"}", "{\"url\":\"https://example.org/*x*/\"}");
+    }
+
+    @Test
+    void dropsExtraCommas() throws JsonProcessingException {
+        assertRepair("{\"a\": [1,, 2,], \"b\": 3,}", "{\"a\":[1,2],\"b\":3}", JsonRepair.Kind.TRAILING_COMMAS);
+        assertRepair("{\"a\": 1,\n}", "{\"a\":1}", JsonRepair.Kind.TRAILING_COMMAS);
+    }
+
+    @Test
+    void escapesRawControlCharacters() throws JsonProcessingException {
+        assertRepair("{\"text\": \"line one\nline two\tindented\r\"}",
+                "{\"text\":\"line one\\nline two\\tindented\\r\"}", JsonRepair.Kind.CONTROL_CHARACTERS);
+    }
+
+    @Test
+    void reportsEveryRepairApplied() throws JsonProcessingException {
+        assertRepair("Result:\n{'items': [{'name': 'tea', // hot\n 'note': 'a\nb',}, {'name': 'cof",
+                "{\"items\":[{\"name\":\"tea\",\"note\":\"a\\nb\"}]}",
+                JsonRepair.Kind.LEADING_TEXT, JsonRepair.Kind.SINGLE_QUOTES, JsonRepair.Kind.COMMENTS,
+                JsonRepair.Kind.CONTROL_CHARACTERS, JsonRepair.Kind.TRAILING_COMMAS, JsonRepair.Kind.TRUNCATED);
+    }
+
+    private void assertRepair(String text, String expected, JsonRepair.Kind... kinds) throws JsonProcessingException {
+        JsonRepair.Result result = JsonRepair.repair(text);
+        assertEquals(expected, result.json());
+        Set<JsonRepair.Kind> expectedKinds = EnumSet.noneOf(JsonRepair.Kind.class);
+        expectedKinds.addAll(Set.of(kinds));
+        assertEquals(expectedKinds, result.repairs());
+        objectMapper.readTree(result.json());
+    }
+}
@@ -0,0 +1,223 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import health.myvita.spring_ai_demo.spring_ai.config.LocalCatalogProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Imports small dumps into a temporary catalog directory and looks products up through the
+ * memory-mapped index: JSONL and CSV/TSV extraction, de-duplication of repeated barcodes, deltas
+ * overriding earlier versions, and compaction of the superseded records.
+ */
+class OpenFoodFactsDumpImporterTest {
+
+    // Enough products that the index sort goes through quicksort partitions, not just insertion sort
+    private static final int PRODUCTS = 500;
+
+    @TempDir
+    Path directory;
+
+    private LocalCatalogProperties properties;
+    private LocalProductCatalog catalog;
+    private OpenFoodFactsDumpImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LocalCatalogProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.resolve("catalog").toString());
+        catalog = new LocalProductCatalog(properties, new SimpleMeterRegistry());
+        importer = new OpenFoodFactsDumpImporter(properties, catalog, new OpenFoodFactsProductMapper(), new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalog.destroy();
+    }
+
+    @Test
+    void importsJsonlAndLooksUpBarcodes() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            lines.add(jsonProduct(barcode(i), "Product " + i, 100 + i));
+        }
+        Collections.shuffle(lines, new Random(7));
+        // A repeated barcode keeps the last version; bad lines are skipped
+        lines.add(jsonProduct(barcode(3), "Product 3, corrected", 42));
+        lines.add("{\"product_name\": \"No barcode\"}");
+        lines.add("not json");
+        lines.add("");
+        lines.add("{\"code\": \"00012345\", \"product\": {\"product_name\": \"Envelope\", \"brands\": \"Acme\"}}");
+
+        OpenFoodFactsDumpImporter.ImportResult result = importer.importDump(write("dump.jsonl", lines));
+
+        assertEquals(PRODUCTS + 2, result.imported());
+        assertEquals(2, result.skipped());
+        assertEquals(PRODUCTS + 1, result.catalogSize());
+        assertEquals(PRODUCTS + 1, catalog.size());
+        for (int i = 0; i < PRODUCTS; i += 37) {
+            BarcodeAnalysisResponse.ProductInfo product = catalog.lookup(barcode(i));
+            assertEquals(barcode(i), product.getBarcode());
+            assertEquals(i == 3 ? "Product 3, corrected" : "Product " + i, product.getName());
+        }
+        assertEquals(42.0, catalog.lookup(barcode(3)).getNutritionPer100g().getEnergyKcal());
+        assertEquals(100.0, catalog.lookup(barcode(0)).getNutritionPer100g().getEnergyKcal());
+        assertEquals(List.of("en:e330"), catalog.lookup(barcode(1)).getAdditives());
+        assertEquals(100.0 + PRODUCTS - 1, catalog.lookup(barcode(PRODUCTS - 1)).getNutritionPer100g().getEnergyKcal());
+
+        // Leading zeros are not significant
+        assertEquals("Envelope", catalog.lookup("12345").getName());
+        assertEquals("Acme", catalog.lookup("0000000012345").getBrand());
+
+        assertNull(catalog.lookup("1"));
+        assertNull(catalog.lookup("99999999999999"));
+        assertNull(catalog.lookup(String.valueOf(Long.parseLong(barcode(0)) - 1)));
+        assertNull(catalog.lookup("30123abc"));
+        assertNull(catalog.lookup(null));
+    }
+
+    @Test
+    void importsTabSeparatedExport() throws IOException {
+        List<String> lines = List.of(
+                "code\tproduct_name\tbrands\tnutriscore_grade\tnova_group\tadditives_tags\tenergy-kcal_100g\tsalt_100g",
+                "3017620422003\tNutella\tFerrero\te\t4.0\ten:e322,en:e322i\t539\t0.107",
+                "5449000000996\tCoca-Cola\tCoca-Cola\te\t\t\t42\tn/a",
+                "\tNo barcode\t\t\t\t\t\t");
+
+        OpenFoodFactsDumpImporter.ImportResult result = importer.importDump(write("export.tsv", lines));
+
+        assertEquals(2, result.imported());
+        assertEquals(1, result.skipped());
+        BarcodeAnalysisResponse.ProductInfo nutella = catalog.lookup("3017620422003");
+        assertEquals("Nutella", nutella.getName());
+        assertEquals("Ferrero", nutella.getBrand());
+        assertEquals("e", nutella.getQualityScores().getNutriscoreGrade());
+        assertEquals(4, nutella.getQualityScores().getNovaGroup());
+        assertEquals(List.of("en:e322", "en:e322i"), nutella.getAdditives());
+        assertEquals(539.0, nutella.getNutritionPer100g().getEnergyKcal());
+        assertEquals(0.107, nutella.getNutritionPer100g().getSaltG());
+        BarcodeAnalysisResponse.ProductInfo cola = catalog.lookup("5449000000996");
+        assertEquals(42.0, cola.getNutritionPer100g().getEnergyKcal());
+        assertNull(cola.getNutritionPer100g().getSaltG());
+        assertNull(cola.getQualityScores().getNovaGroup());
+    }
+
+    @Test
+    void importsQuotedCommaSeparatedExport() throws IOException {
+        List<String> lines = List.of(
+                "code,product_name,brands,ingredients_text",
+                "123456,\"Trail mix, salted\",\"The \"\"Nut\"\" Co\",\"peanuts, raisins\"");
+
+        importer.importDump(write("export.csv", lines));
+
+        BarcodeAnalysisResponse.ProductInfo product = catalog.lookup("123456");
+        assertEquals("Trail mix, salted", product.getName());
+        assertEquals("The \"Nut\" Co", product.getBrand());
+        assertEquals("peanuts, raisins", product.getIngredientsText());
+    }
+
+    @Test
+    void deltaOverridesEarlierVersion() throws IOException {
+        // Keep the superseded records, so this checks the index alone picks the new version
+        properties.setCompactionDeadRatio(1.0);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            lines.add(jsonProduct(barcode(i), "Product " + i, 100 + i));
+        }
+        importer.importDump(write("dump.jsonl", lines));
+        long importedBytes = Files.size(dataFile());
+
+        OpenFoodFactsDumpImporter.ImportResult result = importer.applyDelta(write("delta.jsonl", List.of(
+                jsonProduct(barcode(10), "Product 10, reformulated", 55),
+                jsonProduct("7000000000001", "New product", 12))));
+
+        assertEquals(2, result.imported());
+        assertEquals(PRODUCTS + 1, result.catalogSize());
+        assertEquals("Product 10, reformulated", catalog.lookup(barcode(10)).getName());
+        assertEquals(55.0, catalog.lookup(barcode(10)).getNutritionPer100g().getEnergyKcal());
+        assertEquals("New product", catalog.lookup("7000000000001").getName());
+        assertEquals("Product 11", catalog.lookup(barcode(11)).getName());
+        assertTrue(Files.size(dataFile()) > importedBytes);
+    }
+
+    @Test
+    void compactsOnceSupersededRecordsPileUp() throws IOException {
+        properties.setCompactionDeadRatio(0.25);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            lines.add(jsonProduct(barcode(i), "Product " + i, 100 + i));
+        }
+        importer.importDump(write("dump.jsonl", lines));
+        long importedBytes = Files.size(dataFile());
+
+        // A tenth of the file superseded: below the threshold, so the file only grows
+        List<String> smallDelta = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS / 10; i++) {
+            smallDelta.add(jsonProduct(barcode(i), "Product " + i, 100 + i));
+        }
+        importer.applyDelta(write("small.jsonl", smallDelta));
+        assertTrue(Files.size(dataFile()) > importedBytes);
+
+        // Another half superseded: past the threshold, so only the live records are kept
+        List<String> largeDelta = new ArrayList<>();
+        for (int i = PRODUCTS - 1; i >= PRODUCTS / 2; i--) {
+            largeDelta.add(jsonProduct(barcode(i), "Product " + i, 100 + i));
+        }
+        OpenFoodFactsDumpImporter.ImportResult result = importer.applyDelta(write("large.jsonl", largeDelta));
+
+        assertEquals(PRODUCTS, result.catalogSize());
+        assertEquals(importedBytes, Files.size(dataFile()));
+        assertTrue(Files.notExists(dataFile().resolveSibling(LocalProductCatalog.DATA_FILE + ".tmp")));
+        for (int i = 0; i < PRODUCTS; i++) {
+            BarcodeAnalysisResponse.ProductInfo product = catalog.lookup(barcode(i));
+            assertEquals("Product " + i, product.getName());
+            assertEquals(100.0 + i, product.getNutritionPer100g().getEnergyKcal());
+        }
+
+        // Later deltas append after the compacted records and still win
+        importer.applyDelta(write("after.jsonl", List.of(jsonProduct(barcode(0), "Product 0, again", 1))));
+        assertEquals("Product 0, again", catalog.lookup(barcode(0)).getName());
+        assertEquals("Product 1", catalog.lookup(barcode(1)).getName());
+    }
+
+    private static String barcode(int i) {
+        // Spread over the EAN-13 range so neighbouring products do not sort next to each other
+        return String.valueOf(3_000_000_000_000L + (i * 7_919L) % PRODUCTS * 1_000_003L + i);
+    }
+
+    private static String jsonProduct(String barcode, String name, int energyKcal) {
+        return "{\"code\": \"" + barcode + "\", \"product_name\": \"" + name + "\", \"brands\": \"Brand\", "
+                + "\"nova_group\": 3, \"additives_tags\": [\"en:e330\"], "
+                + "\"nutriments\": {\"energy-kcal_100g\": " + energyKcal + ", \"salt_100g\": 0.5}}";
+    }
+
+    private Path write(String name, List<String> lines) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, lines);
+        return file;
+    }
+
+    private Path dataFile() {
+        return Path.of(properties.getDirectory()).resolve(LocalProductCatalog.DATA_FILE);
+    }
+}
@@ -0,0 +1,202 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Compares the streaming product parser with the previous readTree + transformToProductInfo path.
+ *
+ * Captured API v2 responses are read from the directory in the "openfoodfacts.payloads" system
+ * property (one *.json file per product); a synthetic full-size document is always included.
+ * Not part of the default test run (surefire only picks up *Test/*Tests classes); run it with:
+ *
+ *   ./mvnw test -Dtest=OpenFoodFactsProductParserBenchmark -Dopenfoodfacts.payloads=/path/to/captures
+ */
+class OpenFoodFactsProductParserBenchmark {
+
+    private static final String BARCODE = "3017624010701";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OpenFoodFactsProductParser streamingParser = new OpenFoodFactsProductParser(objectMapper);
+    private final OpenFoodFactsProductMapper treeMapper = new OpenFoodFactsProductMapper();
+
+    @Test
+    void streamingParserMatchesReadTree() throws IOException {
+        for (byte[] payload : payloads()) {
+            String expected = objectMapper.writeValueAsString(parseWithTree(payload));
+            String actual = objectMapper.writeValueAsString(parseStreaming(payload));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void compareThroughputAndAllocation() throws IOException {
+        List<byte[]> payloads = payloads();
+        assertFalse(payloads.isEmpty());
+        long totalBytes = payloads.stream().mapToLong(p -> p.length).sum();
+        System.out.printf("%d payloads, %d KB total%n", payloads.size(), totalBytes / 1024);
+
+        for (int round = 0; round < 3; round++) {
+            run("readTree ", payloads, this::parseWithTree);
+            run("streaming", payloads, this::parseStreaming);
+        }
+    }
+
+    private void run(String label, List<byte[]> payloads, Parser parser) throws IOException {
+        int iterations = 2_000;
+        // Warm up before measuring
+        for (int i = 0; i < iterations / 4; i++) {
+            parser.parse(payloads.get(i % payloads.size()));
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parser.parse(payloads.get(i % payloads.size()));
+        }
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%s: %8.1f us/op, %8d KB allocated/op%n",
+                label, elapsed / 1_000.0 / iterations, allocated / 1024 / iterations);
+    }
+
+    /**
+     * The path BarcodeAnalysisService used before: whole body as a String, then a JsonNode tree.
+     */
+    private BarcodeAnalysisResponse.ProductInfo parseWithTree(byte[] payload) throws IOException {
+        String body = new String(payload, StandardCharsets.UTF_8);
+        JsonNode root = objectMapper.readTree(body);
+        if (root.path("status").asInt() != 1 || !root.has("product")) {
+            return null;
+        }
+        return treeMapper.transformToProductInfo(root.get("product"), BARCODE);
+    }
+
+    private BarcodeAnalysisResponse.ProductInfo parseStreaming(byte[] payload) throws IOException {
+        return streamingParser.parse(new ByteArrayInputStream(payload), BARCODE);
+    }
+
+    private List<byte[]> payloads() throws IOException {
+        List<byte[]> payloads = new ArrayList<>();
+        String directory = System.getProperty("openfoodfacts.payloads");
+        if (directory != null) {
+            try (Stream<Path> files = Files.list(Paths.get(directory))) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                    payloads.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        payloads.add(objectMapper.writeValueAsBytes(syntheticResponse()));
+        return payloads;
+    }
+
+    /**
+     * Builds a response shaped like a full API v2 document: per-language fields, image metadata,
+     * a nested ingredient tree and a large nutriments object, around 80 KB in total.
+     */
+    private ObjectNode syntheticResponse() {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("code", BARCODE);
+        ObjectNode product = root.putObject("product");
+        root.put("status", 1);
+        root.put("status_verbose", "product found");
+
+        product.put("product_name", "Nutella");
+        product.put("brands", "Ferrero");
+        product.put("categories", "Spreads, Sweet spreads, Hazelnut spreads, Chocolate spreads");
+        product.put("ingredients_text", "Sugar, palm oil, hazelnuts 13%, skimmed milk powder 8.7%, fat-reduced cocoa 7.4%, emulsifier: lecithins (soya), vanillin");
+        product.put("nutrition_grades", "e");
+        product.put("nova_group", 4);
+        product.put("ecoscore_grade", "d");
+
+        String[] languages = { "en", "fr", "de", "es", "it", "nl", "pt", "pl", "sv", "da", "fi", "cs", "hu", "ro", "el", "tr", "ru", "ja", "zh", "ar" };
+        for (String language : languages) {
+            product.put("product_name_" + language, "Nutella " + language);
+            product.put("ingredients_text_" + language, "Sugar, palm oil, hazelnuts, skimmed milk powder, cocoa, lecithins, vanillin (" + language + ") ".repeat(8));
+            product.put("generic_name_" + language, "Hazelnut spread with cocoa");
+        }
+
+        ObjectNode images = product.putObject("images");
+        for (int i = 1; i <= 60; i++) {
+            ObjectNode image = images.putObject(String.valueOf(i));
+            image.put("uploaded_t", 1_600_000_000 + i);
+            image.put("uploader", "contributor-" + i);
+            ObjectNode sizes = image.putObject("sizes");
+            for (String size : new String[] { "100", "400", "full" }) {
+                ObjectNode dimensions = sizes.putObject(size);
+                dimensions.put("w", 400 + i);
+                dimensions.put("h", 300 + i);
+            }
+        }
+
+        ArrayNode ingredients = product.putArray("ingredients");
+        for (int i = 0; i < 40; i++) {
+            ObjectNode ingredient = ingredients.addObject();
+            ingredient.put("id", "en:ingredient-" + i);
+            ingredient.put("text", "ingredient " + i);
+            ingredient.put("percent_estimate", 100.0 / (i + 2));
+            ingredient.put("vegan", i % 2 == 0 ? "yes" : "maybe");
+            ArrayNode children = ingredient.putArray("ingredients");
+            for (int j = 0; j < 5; j++) {
+                ObjectNode child = children.addObject();
+                child.put("id", "en:sub-ingredient-" + i + "-" + j);
+                child.put("text", "sub ingredient " + j);
+                child.put("percent_estimate", 1.0 / (j + 1));
+            }
+        }
+
+        ObjectNode nutriments = product.putObject("nutriments");
+        String[] nutrients = { "energy-kcal", "energy", "proteins", "carbohydrates", "sugars", "fat", "saturated-fat",
+                "fiber", "salt", "sodium", "calcium", "iron", "vitamin-a", "vitamin-c", "potassium", "cholesterol" };
+        for (int i = 0; i < nutrients.length; i++) {
+            String nutrient = nutrients[i];
+            nutriments.put(nutrient, 10.0 + i);
+            nutriments.put(nutrient + "_100g", 10.5 + i);
+            nutriments.put(nutrient + "_serving", 1.5 + i);
+            nutriments.put(nutrient + "_unit", "g");
+            nutriments.put(nutrient + "_value", 10.5 + i);
+        }
+
+        for (String tagField : new String[] { "additives_tags", "allergens_tags", "labels_tags", "categories_tags",
+                "countries_tags", "stores_tags", "states_tags", "ingredients_tags" }) {
+            ArrayNode tags = product.putArray(tagField);
+            for (int i = 0; i < 25; i++) {
+                tags.add("en:" + tagField.replace("_tags", "") + "-" + i);
+            }
+        }
+
+        // Filler similar to the long tail of rarely used fields in real documents
+        for (int i = 0; i < 800; i++) {
+            product.put("misc_field_" + i, "value-" + i + "-" + "x".repeat(i % 50));
+        }
+        return root;
+    }
+
+    @FunctionalInterface
+    private interface Parser {
+        BarcodeAnalysisResponse.ProductInfo parse(byte[] payload) throws IOException;
+    }
+}
@@ -0,0 +1,127 @@
+package health.myvita.spring_ai_demo.spring_ai.openfoodfacts;
+
+import health.myvita.spring_ai_demo.spring_ai.dto.BarcodeAnalysisResponse;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that products survive an encode/decode round trip, including missing values and
+ * strings long enough to need multi-byte varint lengths.
+ */
+class ProductRecordCodecTest {
+
+    @Test
+    void roundTripsAllFields() {
+        BarcodeAnalysisResponse.ProductInfo product = new BarcodeAnalysisResponse.ProductInfo();
+        product.setBarcode("3017620422003");
+        product.setName("Crème de marrons — 栗");
+        product.setBrand("Clément Faugier");
+        product.setCategories("Spreads, Sweet spreads");
+        product.setIngredientsText("chestnuts, sugar, glucose syrup");
+        BarcodeAnalysisResponse.NutritionPer100g nutrition = new BarcodeAnalysisResponse.NutritionPer100g();
+        nutrition.setEnergyKcal(269.0);
+        nutrition.setProteinsG(1.2);
+        nutrition.setCarbohydratesG(65.0);
+        nutrition.setSugarsG(50.5);
+        nutrition.setFatG(0.0);
+        nutrition.setSaturatedFatG(0.1);
+        nutrition.setFiberG(3.0);
+        nutrition.setSaltG(0.01);
+        nutrition.setSodiumMg(4.0);
+        product.setNutritionPer100g(nutrition);
+        BarcodeAnalysisResponse.QualityScores scores = new BarcodeAnalysisResponse.QualityScores();
+        scores.setNutriscoreGrade("e");
+        scores.setNovaGroup(4);
+        scores.setEcoscoreGrade("c");
+        product.setQualityScores(scores);
+        product.setAdditives(List.of("en:e330"));
+        product.setAllergens(List.of());
+        product.setLabels(List.of("en:vegetarian", "fr:fabriqué-en-france"));
+
+        BarcodeAnalysisResponse.ProductInfo decoded = roundTrip(product);
+
+        assertEquals("3017620422003", decoded.getBarcode());
+        assertEquals("Crème de marrons — 栗", decoded.getName());
+        assertEquals("Clément Faugier", decoded.getBrand());
+        assertEquals("Spreads, Sweet spreads", decoded.getCategories());
+        assertEquals("chestnuts, sugar, glucose syrup", decoded.getIngredientsText());
+        assertEquals(OpenFoodFactsProductMapper.PRODUCT_URL_BASE + "3017620422003", decoded.getOpenFoodFactsUrl());
+        BarcodeAnalysisResponse.NutritionPer100g n = decoded.getNutritionPer100g();
+        assertEquals(269.0, n.getEnergyKcal());
+        assertEquals(1.2, n.getProteinsG());
+        assertEquals(65.0, n.getCarbohydratesG());
+        assertEquals(50.5, n.getSugarsG());
+        assertEquals(0.0, n.getFatG());
+        assertEquals(0.1, n.getSaturatedFatG());
+        assertEquals(3.0, n.getFiberG());
+        assertEquals(0.01, n.getSaltG());
+        assertEquals(4.0, n.getSodiumMg());
+        assertEquals("e", decoded.getQualityScores().getNutriscoreGrade());
+        assertEquals(4, decoded.getQualityScores().getNovaGroup());
+        assertEquals("c", decoded.getQualityScores().getEcoscoreGrade());
+        assertEquals(List.of("en:e330"), decoded.getAdditives());
+        assertEquals(List.of(), decoded.getAllergens());
+        assertEquals(List.of("en:vegetarian", "fr:fabriqué-en-france"), decoded.getLabels());
+    }
+
+    @Test
+    void keepsMissingValuesMissing() {
+        BarcodeAnalysisResponse.ProductInfo product = new BarcodeAnalysisResponse.ProductInfo();
+        product.setBarcode("42");
+        product.setName("");
+
+        BarcodeAnalysisResponse.ProductInfo decoded = roundTrip(product);
+
+        assertEquals("42", decoded.getBarcode());
+        assertEquals("", decoded.getName());
+        assertNull(decoded.getBrand());
+        assertNull(decoded.getIngredientsText());
+        assertNull(decoded.getNutritionPer100g().getEnergyKcal());
+        assertNull(decoded.getNutritionPer100g().getSodiumMg());
+        assertNull(decoded.getQualityScores().getNutriscoreGrade());
+        assertNull(decoded.getQualityScores().getNovaGroup());
+        assertEquals(List.of(), decoded.getAdditives());
+        assertEquals(List.of(), decoded.getLabels());
+    }
+
+    @Test
+    void roundTripsMultiByteLengths() {
+        // 200 bytes needs a two-byte varint, 20000 a three-byte one
+        String twoBytes = "a".repeat(199);
+        String threeBytes = "é".repeat(10_000);
+        BarcodeAnalysisResponse.ProductInfo product = new BarcodeAnalysisResponse.ProductInfo();
+        product.setBarcode("1");
+        product.setName(twoBytes);
+        product.setIngredientsText(threeBytes);
+        product.setLabels(List.of(twoBytes, threeBytes));
+
+        BarcodeAnalysisResponse.ProductInfo decoded = roundTrip(product);
+
+        assertEquals(twoBytes, decoded.getName());
+        assertEquals(threeBytes, decoded.getIngredientsText());
+        assertEquals(List.of(twoBytes, threeBytes), decoded.getLabels());
+    }
+
+    @Test
+    void readsVarints() {
+        assertEquals(0, ProductRecordCodec.readVarint(ByteBuffer.wrap(new byte[] { 0 })));
+        assertEquals(127, ProductRecordCodec.readVarint(ByteBuffer.wrap(new byte[] { 0x7F })));
+        assertEquals(128, ProductRecordCodec.readVarint(ByteBuffer.wrap(new byte[] { (byte) 0x80, 0x01 })));
+        assertEquals(300, ProductRecordCodec.readVarint(ByteBuffer.wrap(new byte[] { (byte) 0xAC, 0x02 })));
+        assertEquals(Integer.MAX_VALUE, ProductRecordCodec.readVarint(
+                ByteBuffer.wrap(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 })));
+    }
+
+    private static BarcodeAnalysisResponse.ProductInfo roundTrip(BarcodeAnalysisResponse.ProductInfo product) {
+        ByteBuffer buffer = ByteBuffer.wrap(ProductRecordCodec.encode(product));
+        BarcodeAnalysisResponse.ProductInfo decoded = ProductRecordCodec.decode(buffer);
+        assertEquals(0, buffer.remaining());
+        return decoded;
+    }
+}
@@ -0,0 +1,61 @@
+package health.myvita.spring_ai_demo.spring_ai.triage;
+
+import health.myvita.spring_ai_demo.spring_ai.config.TriageProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures red-flag matcher throughput on long coaching messages; the matches themselves are
+ * checked by RedFlagTriageTest.
+ *
+ * Uses the lexicon shipped in src/main/resources. Not part of the default test run (surefire
+ * only picks up *Test/*Tests classes); run it with:
+ *
+ *   ./mvnw test -Dtest=RedFlagTriageBenchmark
+ */
+class RedFlagTriageBenchmark {
+
+    private static final String FILLER = "I have been sleeping badly for a few weeks, my diet is mostly pasta and coffee, "
+            + "and I get a dull ache in my lower back after long days at the desk. Yesterday I walked for an hour. ";
+
+    private final RedFlagTriage triage = new RedFlagTriage(new TriageProperties(), new DefaultResourceLoader(), new SimpleMeterRegistry());
+
+    @Test
+    void measureThroughput() {
+        for (int kilobytes : new int[] { 1, 8, 64 }) {
+            String clear = FILLER.repeat(kilobytes * 1024 / FILLER.length() + 1);
+            String flagged = clear + "Now I suddenly can't breathe.";
+            assertTrue(triage.assess(clear).isEmpty());
+            assertTrue(triage.assess(flagged).isPresent());
+
+            for (int round = 0; round < 3; round++) {
+                run(kilobytes + " KB clear  ", clear);
+                run(kilobytes + " KB flagged", flagged);
+            }
+        }
+    }
+
+    private void run(String label, String message) {
+        int iterations = Math.max(200, 20_000_000 / message.length());
+        // Warm up before measuring
+        for (int i = 0; i < iterations / 4; i++) {
+            triage.scan(message);
+        }
+
+        long started = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < iterations; i++) {
+            found += triage.scan(message).redFlags().size();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("%s: %8.1f us/op, %7.1f MB/s (%d flagged)%n",
+                label, elapsed / 1_000.0 / iterations, (double) message.length() * iterations / seconds / 1e6, found);
+    }
+}
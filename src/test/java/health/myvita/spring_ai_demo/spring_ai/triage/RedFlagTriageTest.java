@@ -0,0 +1,72 @@
+package health.myvita.spring_ai_demo.spring_ai.triage;
+
+import health.myvita.spring_ai_demo.spring_ai.config.TriageProperties;
+import health.myvita.spring_ai_demo.spring_ai.dto.HealthCoachResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the red-flag matches on typical coaching messages, using the lexicon shipped in
+ * src/main/resources.
+ */
+class RedFlagTriageTest {
+
+    private final RedFlagTriage triage = new RedFlagTriage(new TriageProperties(), new DefaultResourceLoader(), new SimpleMeterRegistry());
+
+    @Test
+    void recognizesRedFlags() {
+        assertFlags("I have crushing chest pain and my left arm feels weird", "cardiac");
+        assertFlags("I can't breathe properly since this morning", "breathing");
+        assertFlags("Struggling to breath!! lips turning blue", "breathing");
+        assertFlags("My dad's face is drooping and his speech is slurred", "stroke");
+        assertFlags("Honestly I want to die. I also have severe bleeding from a cut", "bleeding", "self-harm");
+        assertFlags("My son is having a seizure", "consciousness");
+        assertFlags("I think I overdosed on my sleeping pills", "overdose");
+
+        HealthCoachResponse response = triage.assess("I think I took too many pills").orElseThrow();
+        assertEquals("high", response.getUrgency());
+        assertEquals(List.of("overdose"), response.getRedFlags());
+        assertTrue(response.getTips().size() > 1);
+    }
+
+    @Test
+    void ignoresNegatedRedFlags() {
+        assertFlags("I don't have crushing chest pain, just tired");
+        assertFlags("Never passed out, no seizures. Just a headache.");
+        assertFlags("No chest pain, but I can't breathe", "breathing");
+    }
+
+    @Test
+    void endsNegationAtAnotherMatch() {
+        assertFlags("I have no energy and severe chest pain", "cardiac");
+        assertFlags("I feel tired and not short of breath at rest");
+    }
+
+    @Test
+    void ignoresHarmlessMentions() {
+        assertFlags("I feel tired after lunch");
+        assertFlags("I have a history of seizures, what should I eat?");
+        assertFlags("How do I avoid a vitamin D overdose?");
+        assertFlags("My toes are turning blue in the cold");
+    }
+
+    @Test
+    void countsSymptomsForRouting() {
+        RedFlagTriage.Scan scan = triage.scan("No chest pain, just a headache, nausea and some dizziness");
+        assertEquals(List.of(), scan.redFlags());
+        assertEquals(3, scan.symptoms());
+    }
+
+    private void assertFlags(String message, String... expected) {
+        List<String> actual = triage.assess(message).map(HealthCoachResponse::getRedFlags).orElse(List.of());
+        assertEquals(List.of(expected), actual, message);
+    }
+}